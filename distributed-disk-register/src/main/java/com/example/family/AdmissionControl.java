@@ -0,0 +1,277 @@
+package com.example.family;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Koordinatörün TCP istemcileri için kabul denetimi.
+ *
+ * İki katman vardır:
+ * - Hız sınırı: her bağlantının her komut türü için ayrı bir jeton kovası
+ *   (token bucket) ve SET değerleri için bir bayt kovası vardır. Kova boşsa
+ *   komut beklemeden RATE_LIMITED ile reddedilir.
+ * - Adil kuyruk: SET/GET/SCAN aynı anda en fazla ADMISSION_CONCURRENCY
+ *   tane çalışır. Yer yoksa bağlantılar ağırlıklı adil kuyrukta (start-time
+ *   fair queuing) bekler: her komutun maliyeti (değer boyutuna göre)
+ *   bağlantının ağırlığına bölünerek bir bitiş etiketi alır, boşalan yer en
+ *   küçük etiketliye verilir. Çok iş gönderen bağlantının etiketleri ileri
+ *   kayar, az gönderenler öne geçer. ADMISSION_MAX_WAIT_MS içinde yer
+ *   bulamayan ya da kuyruk doluyken gelen komut OVERLOADED alır.
+ *
+ * Bağlantı ağırlıkları ADMISSION_WEIGHTS=127.0.0.1=1,10.0.0.5=4 ile
+ * istemci adresine göre verilir; verilmeyenlerin ağırlığı 1'dir.
+ */
+public class AdmissionControl {
+
+   public enum Result {
+      ADMITTED,
+      RATE_LIMITED,
+      OVERLOADED
+   }
+
+   private final boolean enabled;
+   private final int concurrency;
+   private final int queueMax;
+   private final long maxWaitNanos;
+   private final long costUnitBytes;
+   private final double[] ratePerSec = new double[Command.Type.values().length];
+   private final double[] burst = new double[Command.Type.values().length];
+   private final double bytesPerSec;
+   private final double bytesBurst;
+   private final Map<String, Double> weights = new HashMap<>();
+
+   private final ReentrantLock lock = new ReentrantLock();
+   private final PriorityQueue<Waiter> waiters = new PriorityQueue<>(
+         (a, b) -> a.finish != b.finish ? Double.compare(a.finish, b.finish) : Long.compare(a.order, b.order));
+   private int running = 0;
+   private double virtualTime = 0;
+   private long nextOrder = 0;
+
+   private final AtomicLong admitted = new AtomicLong();
+   private final AtomicLong queued = new AtomicLong();
+   private final AtomicLong rateLimited = new AtomicLong();
+   private final AtomicLong overloaded = new AtomicLong();
+
+   public AdmissionControl(NodeConfig config) {
+      this.enabled = config.getBoolean("ADMISSION_ENABLED", true);
+      this.concurrency = Math.max(1, config.getInt("ADMISSION_CONCURRENCY", 32));
+      this.queueMax = Math.max(0, config.getInt("ADMISSION_QUEUE_MAX", 256));
+      this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(config.getLong("ADMISSION_MAX_WAIT_MS", 250));
+      this.costUnitBytes = Math.max(1, config.getLong("ADMISSION_COST_UNIT_BYTES", 64 * 1024));
+      for (Command.Type type : Command.Type.values()) {
+         double rate = config.getInt("RATE_" + type + "_PER_SEC", defaultRate(type));
+         ratePerSec[type.ordinal()] = rate;
+         burst[type.ordinal()] = config.getInt("RATE_" + type + "_BURST", (int) Math.max(1, rate * 2));
+      }
+      this.bytesPerSec = config.getLong("RATE_SET_BYTES_PER_SEC", 64L * 1024 * 1024);
+      this.bytesBurst = config.getLong("RATE_SET_BYTES_BURST", 128L * 1024 * 1024);
+
+      for (String entry : config.getString("ADMISSION_WEIGHTS", "").split(",")) {
+         int eq = entry.indexOf('=');
+         if (eq > 0) {
+            weights.put(entry.substring(0, eq).trim(), Double.parseDouble(entry.substring(eq + 1).trim()));
+         }
+      }
+   }
+
+   private static int defaultRate(Command.Type type) {
+      switch (type) {
+         case SET:
+            return 2_000;
+         case GET:
+            return 10_000;
+         case SCAN:
+            return 50;
+         case BROADCAST:
+            return 500;
+         default:
+            return 100;
+      }
+   }
+
+   /**
+    * Yeni bağlantı için kovaları ve adil kuyruk durumunu oluşturur.
+    * Dönen nesne sadece o bağlantının thread'inden kullanılır.
+    */
+   public Client register(String host) {
+      Client client = new Client(weights.getOrDefault(host, 1.0));
+      for (Command.Type type : Command.Type.values()) {
+         client.buckets[type.ordinal()] = new TokenBucket(ratePerSec[type.ordinal()], burst[type.ordinal()]);
+      }
+      client.bytes = new TokenBucket(bytesPerSec, bytesBurst);
+      return client;
+   }
+
+   /**
+    * Komutun çalışıp çalışamayacağına karar verir; gerekirse adil kuyrukta
+    * bekler. ADMITTED dönerse komut bitince release çağrılmalıdır.
+    */
+   public Result acquire(Client client, Command cmd) {
+      if (!enabled) {
+         return Result.ADMITTED;
+      }
+      int valueBytes = cmd.getType() == Command.Type.SET ? cmd.getValue().size() : 0;
+      if (!client.buckets[cmd.getType().ordinal()].tryTake(1)
+            || (valueBytes > 0 && !client.bytes.tryTake(valueBytes))) {
+         rateLimited.incrementAndGet();
+         return Result.RATE_LIMITED;
+      }
+      if (cmd.getType() == Command.Type.BROADCAST) {
+         // Broadcast sadece kendi kuyruğuna ekler, disk ve replikasyon yolunu kullanmaz
+         admitted.incrementAndGet();
+         return Result.ADMITTED;
+      }
+
+      double cost = 1 + (double) valueBytes / costUnitBytes;
+      lock.lock();
+      try {
+         double start = Math.max(virtualTime, client.lastFinish);
+         double finish = start + cost / client.weight;
+         if (running < concurrency && waiters.isEmpty()) {
+            running++;
+            virtualTime = start;
+            client.lastFinish = finish;
+            admitted.incrementAndGet();
+            return Result.ADMITTED;
+         }
+         if (waiters.size() >= queueMax) {
+            overloaded.incrementAndGet();
+            return Result.OVERLOADED;
+         }
+
+         Waiter waiter = new Waiter(start, finish, nextOrder++, lock.newCondition());
+         waiters.add(waiter);
+         queued.incrementAndGet();
+         long deadline = System.nanoTime() + maxWaitNanos;
+         while (!waiter.granted) {
+            long left = deadline - System.nanoTime();
+            if (left <= 0) {
+               waiters.remove(waiter);
+               overloaded.incrementAndGet();
+               return Result.OVERLOADED;
+            }
+            try {
+               waiter.wakeup.awaitNanos(left);
+            } catch (InterruptedException e) {
+               Thread.currentThread().interrupt();
+               if (!waiter.granted) {
+                  waiters.remove(waiter);
+                  overloaded.incrementAndGet();
+                  return Result.OVERLOADED;
+               }
+            }
+         }
+         client.lastFinish = finish;
+         admitted.incrementAndGet();
+         return Result.ADMITTED;
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Çalışan komutun yerini bırakır; bekleyen varsa yer doğrudan en küçük
+    * bitiş etiketli bekleyene devredilir.
+    */
+   public void release(Command cmd) {
+      if (!enabled || cmd.getType() == Command.Type.BROADCAST) {
+         return;
+      }
+      lock.lock();
+      try {
+         Waiter next = waiters.poll();
+         if (next == null) {
+            running--;
+            return;
+         }
+         // Sanal zaman hizmete giren komutun başlangıç etiketidir
+         virtualTime = Math.max(virtualTime, next.start);
+         next.granted = true;
+         next.wakeup.signal();
+      } finally {
+         lock.unlock();
+      }
+   }
+
+   /**
+    * Kabul sayaçlarını yazdırır.
+    */
+   public void printStatus() {
+      int waiting;
+      int busy;
+      lock.lock();
+      try {
+         waiting = waiters.size();
+         busy = running;
+      } finally {
+         lock.unlock();
+      }
+      System.out.println("   Admission: " + admitted.get() + " admitted (" + queued.get() + " queued), "
+            + rateLimited.get() + " rate limited, " + overloaded.get() + " overloaded; "
+            + busy + "/" + concurrency + " running, " + waiting + " waiting");
+   }
+
+   /**
+    * Bağlantı başına durum: kovalar ve adil kuyruktaki son bitiş etiketi.
+    */
+   public static class Client {
+      private final double weight;
+      private final TokenBucket[] buckets = new TokenBucket[Command.Type.values().length];
+      private TokenBucket bytes;
+      // acquire içinde lock altında okunur/yazılır
+      private double lastFinish = 0;
+
+      private Client(double weight) {
+         this.weight = weight > 0 ? weight : 1.0;
+      }
+   }
+
+   private static class TokenBucket {
+      private final double ratePerNano;
+      private final double capacity;
+      private double tokens;
+      private long lastRefill = System.nanoTime();
+
+      TokenBucket(double ratePerSec, double capacity) {
+         this.ratePerNano = ratePerSec / 1e9;
+         this.capacity = capacity;
+         this.tokens = capacity;
+      }
+
+      /**
+       * Kovadan n jeton almayı dener. Kovadan büyük istekler kova doluyken
+       * kabul edilir ve kovayı borca sokar; böylece tek büyük değer hiç
+       * geçemez hale gelmez ama sonraki istekler bekler.
+       */
+      boolean tryTake(double n) {
+         long now = System.nanoTime();
+         tokens = Math.min(capacity, tokens + (now - lastRefill) * ratePerNano);
+         lastRefill = now;
+         if (tokens < Math.min(n, capacity)) {
+            return false;
+         }
+         tokens -= n;
+         return true;
+      }
+   }
+
+   private static class Waiter {
+      final double start;
+      final double finish;
+      final long order;
+      final Condition wakeup;
+      boolean granted = false;
+
+      Waiter(double start, double finish, long order, Condition wakeup) {
+         this.start = start;
+         this.finish = finish;
+         this.order = order;
+         this.wakeup = wakeup;
+      }
+   }
+}
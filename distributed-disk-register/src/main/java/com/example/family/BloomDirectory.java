@@ -0,0 +1,169 @@
+package com.example.family;
+
+import family.BloomRequest;
+import family.NodeBloom;
+import family.NodeInfo;
+import family.ShardBloom;
+import family.StorageServiceGrpc;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Üyelerin duyurduğu Bloom filtrelerinin koordinatördeki kopyası.
+ *
+ * BLOOM_REFRESH_MS aralıkla her üyeye GetBloom sorulur; istekte elimizdeki
+ * parça sürümleri gider, üye sadece değişen parçaların filtrelerini döner.
+ * Cevap boyut sınırına sığmayan parçalar filtresiz gelir ve bir sonraki
+ * turda istenir; o arada bilinmiyor sayılır. GET, filtresi kaydı dışlayan
+ * üyeleri atlar.
+ *
+ * Filtre en fazla bir yenileme aralığı kadar geridedir: başka bir
+ * koordinatörün yeni yazdığı id bu süre içinde "yok" görünebilir ve GET
+ * NOT_FOUND dönebilir. Yenilenemeyen (BLOOM_MAX_AGE_MS'den eski) filtrelere
+ * güvenilmez, üye her zaman sorulur.
+ */
+public class BloomDirectory {
+
+   private final NodeInfo self;
+   private final NodeRegistry registry;
+   private final ReplicationManager replicationManager;
+   private final boolean enabled;
+   private final long refreshMs;
+   private final long maxAgeMs;
+   private final Map<NodeInfo, MemberBloom> blooms = new ConcurrentHashMap<>();
+   // Son yenilemesi başarısız olan üyeler; hata bir kez yazılır
+   private final Set<NodeInfo> failing = ConcurrentHashMap.newKeySet();
+   private ScheduledExecutorService refresher;
+
+   public BloomDirectory(NodeInfo self, NodeRegistry registry, ReplicationManager replicationManager,
+         NodeConfig config) {
+      this.self = self;
+      this.registry = registry;
+      this.replicationManager = replicationManager;
+      this.enabled = config.getBoolean("BLOOM_ENABLED", true);
+      this.refreshMs = Math.max(50, config.getLong("BLOOM_REFRESH_MS", 1000));
+      this.maxAgeMs = config.getLong("BLOOM_MAX_AGE_MS", refreshMs * 5);
+   }
+
+   public void start() {
+      if (!enabled) {
+         return;
+      }
+      refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "BloomRefresh");
+         t.setDaemon(true);
+         return t;
+      });
+      refresher.scheduleWithFixedDelay(() -> {
+         try {
+            refresh();
+         } catch (Exception e) {
+            System.err.println("Bloom refresh failed: " + e.getMessage());
+         }
+      }, 0, refreshMs, TimeUnit.MILLISECONDS);
+   }
+
+   public void stop() {
+      if (refresher != null) {
+         refresher.shutdownNow();
+      }
+   }
+
+   /**
+    * Üyede kayıt olabilir mi. Güncel filtre yoksa true (üye sorulmalı).
+    */
+   public boolean mightHave(NodeInfo member, int messageId) {
+      MemberBloom bloom = blooms.get(member);
+      if (bloom == null || System.currentTimeMillis() - bloom.receivedAt > maxAgeMs) {
+         return true;
+      }
+      BloomFilter shard = bloom.filters[MessageStore.shardIndex(messageId, bloom.filters.length)];
+      return shard == null || shard.mightContain(messageId);
+   }
+
+   private void refresh() {
+      List<NodeInfo> family = registry.snapshot();
+      blooms.keySet().retainAll(family);
+      failing.retainAll(family);
+
+      for (NodeInfo member : family) {
+         if (isSelf(member)) {
+            continue;
+         }
+         MemberBloom known = blooms.get(member);
+         BloomRequest.Builder request = BloomRequest.newBuilder();
+         if (known != null) {
+            for (long generation : known.generations) {
+               request.addKnownGenerations(generation);
+            }
+         }
+
+         UnaryCall<NodeBloom> call = new UnaryCall<>();
+         StorageServiceGrpc.newStub(replicationManager.channel(member))
+               .withDeadlineAfter(refreshMs, TimeUnit.MILLISECONDS)
+               .getBloom(request.build(), call);
+         call.whenComplete((result, error) -> {
+            if (error != null) {
+               // Eski filtre BLOOM_MAX_AGE_MS dolunca kendiliğinden geçersiz olur
+               if (failing.add(member)) {
+                  System.err.printf("Bloom refresh from %s:%d failed: %s%n",
+                        member.getHost(), member.getPort(), error.getMessage());
+               }
+               return;
+            }
+            if (failing.remove(member)) {
+               System.out.printf("Bloom refresh from %s:%d recovered%n", member.getHost(), member.getPort());
+            }
+            accept(member, known, result);
+         });
+      }
+   }
+
+   /**
+    * Değişen parçaları elimizdeki filtrelerin üzerine yazar. Parça sayısı
+    * değiştiyse eldekiler atılır, gelmeyen parçalar bilinmiyor sayılır.
+    */
+   private void accept(NodeInfo member, MemberBloom known, NodeBloom result) {
+      int count = result.getShardCount();
+      if (count <= 0) {
+         return;
+      }
+      long[] generations = new long[count];
+      BloomFilter[] filters = new BloomFilter[count];
+      if (known != null && known.filters.length == count) {
+         System.arraycopy(known.generations, 0, generations, 0, count);
+         System.arraycopy(known.filters, 0, filters, 0, count);
+      }
+      for (ShardBloom changed : result.getChangedList()) {
+         int shard = changed.getShard();
+         if (shard < 0 || shard >= count) {
+            continue;
+         }
+         BloomFilter filter = changed.hasFilter() ? BloomFilter.fromProto(changed.getFilter()) : null;
+         filters[shard] = filter;
+         generations[shard] = filter == null ? 0 : changed.getGeneration();
+      }
+      blooms.put(member, new MemberBloom(generations, filters));
+   }
+
+   private boolean isSelf(NodeInfo node) {
+      return node.getHost().equals(self.getHost()) && node.getPort() == self.getPort();
+   }
+
+   private static class MemberBloom {
+      final long[] generations;
+      final BloomFilter[] filters;
+      final long receivedAt = System.currentTimeMillis();
+
+      MemberBloom(long[] generations, BloomFilter[] filters) {
+         this.generations = generations;
+         this.filters = filters;
+      }
+   }
+}
@@ -0,0 +1,109 @@
+package com.example.family;
+
+import com.google.protobuf.ByteString;
+import family.BloomFilterData;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Mesaj id'leri için Bloom filtresi.
+ *
+ * "Yok" cevabı kesindir, "olabilir" cevabı yanlış pozitif olabilir.
+ * Silme desteklenmez; silinen id'ler filtre yeniden kurulana kadar
+ * "olabilir" görünür. Tek thread ekler, birden çok thread okuyabilir.
+ *
+ * Üye ve koordinatör aynı hash'leri kullanır; filtre protobuf ile taşınır.
+ */
+public class BloomFilter {
+
+   private final int bitCount;
+   private final int hashCount;
+   private final AtomicLongArray words;
+
+   private BloomFilter(int bitCount, int hashCount, AtomicLongArray words) {
+      this.bitCount = bitCount;
+      this.hashCount = hashCount;
+      this.words = words;
+   }
+
+   /**
+    * Verilen kayıt sayısı için anahtar başına bitsPerKey bitlik filtre.
+    * 10 bit ve 7 hash ile yanlış pozitif oranı ~%1'dir.
+    */
+   public static BloomFilter forCapacity(int expectedKeys, int bitsPerKey) {
+      long bits = Math.max(64L, (long) Math.max(1, expectedKeys) * Math.max(1, bitsPerKey));
+      int wordCount = (int) Math.min(Integer.MAX_VALUE / 64, (bits + 63) / 64);
+      int hashCount = Math.max(1, Math.min(16, (int) Math.round(bitsPerKey * Math.log(2))));
+      return new BloomFilter(wordCount * 64, hashCount, new AtomicLongArray(wordCount));
+   }
+
+   public void add(int id) {
+      long h1 = mix(id);
+      long h2 = mix(h1) | 1;
+      for (int i = 0; i < hashCount; i++) {
+         int bit = (int) Math.floorMod(h1 + i * h2, (long) bitCount);
+         int w = bit >>> 6;
+         long mask = 1L << bit;
+         long current = words.get(w);
+         if ((current & mask) == 0) {
+            words.set(w, current | mask);
+         }
+      }
+   }
+
+   public boolean mightContain(int id) {
+      long h1 = mix(id);
+      long h2 = mix(h1) | 1;
+      for (int i = 0; i < hashCount; i++) {
+         int bit = (int) Math.floorMod(h1 + i * h2, (long) bitCount);
+         if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   /** Bit dizisinin byte boyutu (protobuf'ta taşınan). */
+   public int sizeInBytes() {
+      return words.length() * 8;
+   }
+
+   public BloomFilterData toProto() {
+      ByteBuffer buffer = ByteBuffer.allocate(words.length() * 8).order(ByteOrder.LITTLE_ENDIAN);
+      for (int i = 0; i < words.length(); i++) {
+         buffer.putLong(words.get(i));
+      }
+      buffer.flip();
+      return BloomFilterData.newBuilder()
+            .setHashCount(hashCount)
+            .setBitCount(bitCount)
+            .setBits(ByteString.copyFrom(buffer))
+            .build();
+   }
+
+   /**
+    * Üyeden gelen filtreyi açar; bozuk veri için null döner.
+    */
+   public static BloomFilter fromProto(BloomFilterData data) {
+      int wordCount = data.getBits().size() / 8;
+      if (data.getHashCount() <= 0 || data.getBitCount() <= 0 || data.getBitCount() != wordCount * 64) {
+         return null;
+      }
+      ByteBuffer buffer = data.getBits().asReadOnlyByteBuffer().order(ByteOrder.LITTLE_ENDIAN);
+      AtomicLongArray words = new AtomicLongArray(wordCount);
+      for (int i = 0; i < wordCount; i++) {
+         words.set(i, buffer.getLong());
+      }
+      return new BloomFilter(data.getBitCount(), data.getHashCount(), words);
+   }
+
+   private static long mix(long x) {
+      // splitmix64 sonlandırıcısı
+      x += 0x9E3779B97F4A7C15L;
+      x = (x ^ (x >>> 30)) * 0xBF58476D1CE4E5B9L;
+      x = (x ^ (x >>> 27)) * 0x94D049BB133111EBL;
+      return x ^ (x >>> 31);
+   }
+}
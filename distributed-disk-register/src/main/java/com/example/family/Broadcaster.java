@@ -0,0 +1,367 @@
+package com.example.family;
+
+import family.ChatBatch;
+import family.ChatMessage;
+import family.Empty;
+import family.FamilyServiceGrpc;
+import family.NodeInfo;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Aileye broadcast: partiler halinde, ağaç üzerinden aktarılarak.
+ *
+ * Gönderilen mesajlar kuyrukta toplanır; BROADCAST_BATCH_MS dolunca ya da
+ * BROADCAST_BATCH_MAX mesaj birikince tek parti olur. Alıcılar (kendisi
+ * hariç aile) sıralanıp BROADCAST_FANOUT gruba bölünür; her grubun ilki
+ * partiyi kalıcı bir RelayChat akışıyla alır ve grubun kalanını kendi alt
+ * ağacı olarak aynı şekilde aktarır. Gönderenin maliyeti aile büyüdükçe
+ * sabit kalır (en fazla FANOUT akış), derinlik log_FANOUT(N) olur.
+ *
+ * Partiler tek bir thread'den çocuk başına sınırlı bir kuyruğa
+ * (BROADCAST_CHILD_QUEUE parti) eklenir; akış hazır oldukça (isReady)
+ * kuyruktan gönderilir, böylece yavaş bir çocuk belleği şişirmez ve diğer
+ * çocukları bekletmez. Aynı çocuğa giden partiler sırasını korur. Mesajlar
+ * gönderen başına seq taşır, alıcıda ChatInbox sırayı ve tekrarları yönetir.
+ *
+ * Akışı kopan çocuğun henüz gönderilmemiş partileri bir sonraki partide
+ * açılan yeni akışla tekrar gönderilir. Kuyruk doluyken gelen ya da
+ * aileden çıkan çocuğa kalan partiler kayıp sayılır. Aileden çıkan ya da
+ * BROADCAST_STREAM_IDLE_MS boyunca kullanılmayan (ağaçta artık çocuk
+ * olmayan) akışlar onCompleted ile kapatılır. Düşen aktarıcının alt ağacı,
+ * sağlık kontrolü onu aileden çıkarana kadar mesaj kaçırabilir.
+ */
+public class Broadcaster {
+
+   private final NodeInfo self;
+   private final NodeRegistry registry;
+   private final ReplicationManager replicationManager;
+   private final ChatInbox inbox;
+   private final int fanout;
+   private final int batchMax;
+   private final long batchMs;
+   private final int childQueue;
+   private final long streamIdleMs;
+   private final long epoch = System.currentTimeMillis();
+
+   private final BlockingQueue<Task> tasks;
+   private final Thread sender;
+   // Çocuk başına açık akış; sadece gönderici thread'i ekler ve çıkarır
+   private final Map<NodeInfo, ChildStream> streams = new ConcurrentHashMap<>();
+   private long lastPrune = System.currentTimeMillis();
+
+   private final AtomicLong nextSeq = new AtomicLong(1);
+   private final AtomicLong sentMessages = new AtomicLong();
+   private final AtomicLong sentBatches = new AtomicLong();
+   private final AtomicLong relayedBatches = new AtomicLong();
+   private final AtomicLong streamFailures = new AtomicLong();
+   private final AtomicLong resentBatches = new AtomicLong();
+   private final AtomicLong lostBatches = new AtomicLong();
+
+   public Broadcaster(NodeInfo self, NodeRegistry registry, ReplicationManager replicationManager,
+         ChatInbox inbox, NodeConfig config) {
+      this.self = self;
+      this.registry = registry;
+      this.replicationManager = replicationManager;
+      this.inbox = inbox;
+      this.fanout = Math.max(1, config.getInt("BROADCAST_FANOUT", 3));
+      this.batchMax = Math.max(1, config.getInt("BROADCAST_BATCH_MAX", 256));
+      this.batchMs = Math.max(1, config.getLong("BROADCAST_BATCH_MS", 20));
+      this.tasks = new ArrayBlockingQueue<>(config.getInt("BROADCAST_QUEUE_CAPACITY", 10_000));
+      this.childQueue = Math.max(1, config.getInt("BROADCAST_CHILD_QUEUE", 64));
+      this.streamIdleMs = Math.max(batchMs, config.getLong("BROADCAST_STREAM_IDLE_MS", 60_000));
+
+      sender = new Thread(this::runSender, "BroadcastSender");
+      sender.setDaemon(true);
+      sender.start();
+   }
+
+   /**
+    * Gönderici thread'i ve açık akışları kapatır.
+    */
+   public void stop() {
+      sender.interrupt();
+      for (ChildStream stream : streams.values()) {
+         stream.complete();
+      }
+      streams.clear();
+   }
+
+   /**
+    * Mesajı aileye gönderilmek üzere kuyruğa ekler. Kuyruk doluysa -1,
+    * değilse mesajın sıra numarasını döner.
+    */
+   public long broadcast(String text) {
+      // Sıra numarası kuyruğa ekleme sırasıyla verilir
+      synchronized (tasks) {
+         long seq = nextSeq.get();
+         ChatMessage message = ChatMessage.newBuilder()
+               .setText(text)
+               .setFromHost(self.getHost())
+               .setFromPort(self.getPort())
+               .setTimestamp(System.currentTimeMillis())
+               .setSeq(seq)
+               .setEpoch(epoch)
+               .build();
+         if (!tasks.offer(new Task(message, null))) {
+            return -1;
+         }
+         nextSeq.incrementAndGet();
+         return seq;
+      }
+   }
+
+   /**
+    * Üst düğümden gelen partiyi teslim eder ve alt ağaca aktarır.
+    */
+   public void onBatch(ChatBatch batch) {
+      for (ChatMessage m : batch.getMessagesList()) {
+         inbox.receive(m);
+      }
+      if (batch.getRelayToCount() > 0 && !tasks.offer(new Task(null, batch))) {
+         System.err.println("Broadcast queue full, dropping relay of " + batch.getMessagesCount() + " messages");
+      }
+   }
+
+   private void runSender() {
+      List<ChatMessage> pending = new ArrayList<>();
+      long batchStarted = 0;
+      while (true) {
+         try {
+            long wait = pending.isEmpty() ? batchMs : Math.max(0, batchStarted + batchMs - System.currentTimeMillis());
+            Task task = tasks.poll(wait, TimeUnit.MILLISECONDS);
+            if (task != null && task.relay != null) {
+               relay(task.relay);
+            } else if (task != null) {
+               if (pending.isEmpty()) {
+                  batchStarted = System.currentTimeMillis();
+               }
+               pending.add(task.message);
+            }
+            if (!pending.isEmpty()
+                  && (pending.size() >= batchMax || System.currentTimeMillis() - batchStarted >= batchMs)) {
+               sendOwn(pending);
+               pending = new ArrayList<>();
+            }
+            pruneStreams();
+         } catch (InterruptedException e) {
+            return;
+         } catch (Exception e) {
+            System.err.println("Broadcast sender error: " + e.getMessage());
+         }
+      }
+   }
+
+   private void sendOwn(List<ChatMessage> messages) {
+      List<NodeInfo> targets = new ArrayList<>();
+      for (NodeInfo n : registry.snapshot()) {
+         if (!isSelf(n)) {
+            targets.add(n);
+         }
+      }
+      targets.sort(Comparator.comparing(NodeInfo::getHost).thenComparingInt(NodeInfo::getPort));
+      fanOut(messages, targets);
+      sentMessages.addAndGet(messages.size());
+      sentBatches.incrementAndGet();
+   }
+
+   private void relay(ChatBatch batch) {
+      // Alt ağaçtan aileden çıkmış olanlar atlanır
+      List<NodeInfo> targets = new ArrayList<>();
+      for (NodeInfo n : batch.getRelayToList()) {
+         if (!isSelf(n) && registry.contains(n)) {
+            targets.add(n);
+         }
+      }
+      fanOut(batch.getMessagesList(), targets);
+      relayedBatches.incrementAndGet();
+   }
+
+   /**
+    * Hedefleri fanout ardışık gruba böler; her grubun ilki kalanını aktarır.
+    */
+   private void fanOut(List<ChatMessage> messages, List<NodeInfo> targets) {
+      int groups = Math.min(fanout, targets.size());
+      int start = 0;
+      for (int g = 0; g < groups; g++) {
+         int size = (targets.size() - start) / (groups - g);
+         List<NodeInfo> group = targets.subList(start, start + size);
+         start += size;
+
+         ChatBatch batch = ChatBatch.newBuilder()
+               .addAllMessages(messages)
+               .addAllRelayTo(group.subList(1, group.size()))
+               .build();
+         send(group.get(0), batch);
+      }
+   }
+
+   /**
+    * Partiyi çocuğun kuyruğuna ekler. Akış kopmuşsa yenisi açılır ve
+    * eskisinin gönderilemeyen partileri önce gönderilir.
+    */
+   private void send(NodeInfo child, ChatBatch batch) {
+      ChildStream stream = streams.get(child);
+      if (stream == null || stream.isClosed()) {
+         List<ChatBatch> carried = stream == null ? List.of() : stream.takeUnsent();
+         if (!carried.isEmpty()) {
+            resentBatches.addAndGet(carried.size());
+         }
+         stream = new ChildStream(child, carried);
+         streams.put(child, stream);
+      }
+      stream.enqueue(batch);
+   }
+
+   /**
+    * Aileden çıkan ya da uzun süredir parti gönderilmeyen çocukların
+    * akışlarını kapatır; saniyede en fazla bir kez bakılır.
+    */
+   private void pruneStreams() {
+      long now = System.currentTimeMillis();
+      if (now - lastPrune < 1000) {
+         return;
+      }
+      lastPrune = now;
+      for (Map.Entry<NodeInfo, ChildStream> e : streams.entrySet()) {
+         ChildStream stream = e.getValue();
+         if (!registry.contains(e.getKey()) || now - stream.lastUsed > streamIdleMs) {
+            streams.remove(e.getKey(), stream);
+            stream.complete();
+         }
+      }
+   }
+
+   /**
+    * Gönderim sayaçlarını yazdırır.
+    */
+   public void printStatus() {
+      System.out.println("   Broadcast: " + sentMessages.get() + " messages in " + sentBatches.get()
+            + " batches, " + relayedBatches.get() + " batches relayed, " + streams.size() + " streams, "
+            + streamFailures.get() + " stream failures, " + resentBatches.get() + " batches resent, "
+            + lostBatches.get() + " batches lost");
+   }
+
+   private boolean isSelf(NodeInfo node) {
+      return node.getHost().equals(self.getHost()) && node.getPort() == self.getPort();
+   }
+
+   /**
+    * Bir çocuğa açık RelayChat akışı ve gönderilmeyi bekleyen partileri.
+    * Kuyruğa gönderici thread'i ekler; gRPC akış hazır olduğunda
+    * (onReady) kuyruğu boşaltır.
+    */
+   private class ChildStream implements ClientResponseObserver<ChatBatch, Empty> {
+      private final NodeInfo child;
+      private final ArrayDeque<ChatBatch> queue = new ArrayDeque<>();
+      private ClientCallStreamObserver<ChatBatch> call;
+      private boolean closed = false;
+      volatile long lastUsed = System.currentTimeMillis();
+
+      ChildStream(NodeInfo child, List<ChatBatch> carried) {
+         this.child = child;
+         queue.addAll(carried);
+         FamilyServiceGrpc.newStub(replicationManager.channel(child)).relayChat(this);
+      }
+
+      @Override
+      public synchronized void beforeStart(ClientCallStreamObserver<ChatBatch> requestStream) {
+         this.call = requestStream;
+         requestStream.setOnReadyHandler(this::drain);
+      }
+
+      synchronized void enqueue(ChatBatch batch) {
+         lastUsed = System.currentTimeMillis();
+         if (closed) {
+            lostBatches.incrementAndGet();
+            return;
+         }
+         if (queue.size() >= childQueue) {
+            lostBatches.incrementAndGet();
+            return;
+         }
+         queue.add(batch);
+         drain();
+      }
+
+      synchronized void drain() {
+         while (!closed && call != null && call.isReady() && !queue.isEmpty()) {
+            try {
+               call.onNext(queue.poll());
+            } catch (RuntimeException e) {
+               fail();
+               return;
+            }
+         }
+      }
+
+      synchronized boolean isClosed() {
+         return closed;
+      }
+
+      /** Kopmuş akışın gönderilemeyen partilerini alır (yeni akış gönderir). */
+      synchronized List<ChatBatch> takeUnsent() {
+         List<ChatBatch> unsent = new ArrayList<>(queue);
+         queue.clear();
+         return unsent;
+      }
+
+      /** Akışı kapatır; gönderilemeyen partiler kayıp sayılır. */
+      synchronized void complete() {
+         lostBatches.addAndGet(queue.size());
+         queue.clear();
+         if (closed) {
+            return;
+         }
+         closed = true;
+         try {
+            call.onCompleted();
+         } catch (RuntimeException ignored) {
+         }
+      }
+
+      private void fail() {
+         if (!closed) {
+            closed = true;
+            streamFailures.incrementAndGet();
+         }
+      }
+
+      @Override
+      public void onNext(Empty value) {
+      }
+
+      @Override
+      public synchronized void onError(Throwable t) {
+         // Akış haritada kalır: kalan partiler bu çocuğa giden bir sonraki
+         // partide yeni akışla gider, çocuk aileden çıktıysa kayıp sayılır
+         fail();
+      }
+
+      @Override
+      public synchronized void onCompleted() {
+         closed = true;
+      }
+   }
+
+   private static class Task {
+      final ChatMessage message;
+      final ChatBatch relay;
+
+      Task(ChatMessage message, ChatBatch relay) {
+         this.message = message;
+         this.relay = relay;
+      }
+   }
+}
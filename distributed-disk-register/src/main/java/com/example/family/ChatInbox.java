@@ -0,0 +1,153 @@
+package com.example.family;
+
+import family.ChatMessage;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Gelen broadcast mesajlarını gönderen başına sırayla teslim eder.
+ *
+ * Her gönderenin mesajları seq sırasıyla yazdırılır: tekrar gelenler atılır,
+ * erken gelenler eksik olan gelene kadar bekletilir. Eksik mesaj
+ * CHAT_GAP_TIMEOUT_MS içinde gelmezse (ör. aktarıcı düğüm düştü) atlanır.
+ *
+ * Yazdırma ayrı bir thread'de yapılır; gRPC thread'i konsolu beklemez.
+ * Yazdırma kuyruğu doluysa mesaj sayılıp atılır.
+ */
+public class ChatInbox {
+
+   private final long gapTimeoutMs;
+   private final BlockingQueue<ChatMessage> printQueue;
+   private final Thread printer;
+   private final Map<String, OriginState> origins = new ConcurrentHashMap<>();
+
+   private final AtomicLong delivered = new AtomicLong();
+   private final AtomicLong duplicates = new AtomicLong();
+   private final AtomicLong skipped = new AtomicLong();
+   private final AtomicLong dropped = new AtomicLong();
+
+   public ChatInbox(NodeConfig config) {
+      this.gapTimeoutMs = config.getLong("CHAT_GAP_TIMEOUT_MS", 2_000);
+      this.printQueue = new ArrayBlockingQueue<>(config.getInt("CHAT_PRINT_QUEUE", 10_000));
+
+      printer = new Thread(this::runPrinter, "ChatPrinter");
+      printer.setDaemon(true);
+      printer.start();
+   }
+
+   public void stop() {
+      printer.interrupt();
+   }
+
+   /**
+    * Mesajı alır; sırası gelen mesajlar yazdırma kuyruğuna geçer.
+    */
+   public void receive(ChatMessage message) {
+      if (message.getSeq() <= 0) {
+         // Sıra numarası olmayan (tek çağrı ile gelen) mesaj doğrudan yazdırılır
+         print(message);
+         return;
+      }
+      OriginState state = origins.computeIfAbsent(
+            message.getFromHost() + ":" + message.getFromPort(), k -> new OriginState());
+      synchronized (state) {
+         if (message.getEpoch() != state.epoch) {
+            if (message.getEpoch() < state.epoch) {
+               duplicates.incrementAndGet(); // Gönderenin eski çalışmasından kalmış
+               return;
+            }
+            // Gönderen yeniden başlamış
+            state.epoch = message.getEpoch();
+            state.nextSeq = 1;
+            state.waiting.clear();
+         }
+         if (message.getSeq() < state.nextSeq || state.waiting.containsKey(message.getSeq())) {
+            duplicates.incrementAndGet();
+            return;
+         }
+         state.waiting.put(message.getSeq(), message);
+         if (message.getSeq() != state.nextSeq && state.gapSince == 0) {
+            state.gapSince = System.currentTimeMillis();
+         }
+         drain(state);
+      }
+   }
+
+   /**
+    * Sırası gelenleri teslim eder; bekleme süresi dolan boşluğu atlar.
+    */
+   private void drain(OriginState state) {
+      while (!state.waiting.isEmpty()) {
+         long first = state.waiting.firstKey();
+         if (first != state.nextSeq) {
+            if (System.currentTimeMillis() - state.gapSince < gapTimeoutMs) {
+               return;
+            }
+            skipped.addAndGet(first - state.nextSeq);
+            state.nextSeq = first;
+         }
+         print(state.waiting.pollFirstEntry().getValue());
+         state.nextSeq++;
+         state.gapSince = state.waiting.isEmpty() ? 0 : System.currentTimeMillis();
+      }
+   }
+
+   private void print(ChatMessage message) {
+      delivered.incrementAndGet();
+      if (!printQueue.offer(message)) {
+         dropped.incrementAndGet();
+      }
+   }
+
+   private void runPrinter() {
+      long sweepEvery = Math.max(100, gapTimeoutMs / 2);
+      long lastSweep = System.currentTimeMillis();
+      while (true) {
+         ChatMessage m;
+         try {
+            m = printQueue.poll(sweepEvery, TimeUnit.MILLISECONDS);
+         } catch (InterruptedException e) {
+            return;
+         }
+         // Yeni mesaj gelmese de süresi dolan boşluklar atlanır
+         if (System.currentTimeMillis() - lastSweep >= sweepEvery) {
+            for (OriginState state : origins.values()) {
+               synchronized (state) {
+                  drain(state);
+               }
+            }
+            lastSweep = System.currentTimeMillis();
+         }
+         if (m == null) {
+            continue;
+         }
+         System.out.println("💬 Incoming message:");
+         System.out.println("  From: " + m.getFromHost() + ":" + m.getFromPort()
+               + (m.getSeq() > 0 ? " #" + m.getSeq() : ""));
+         System.out.println("  Text: " + m.getText());
+         System.out.println("  Timestamp: " + m.getTimestamp());
+         System.out.println("--------------------------------------");
+      }
+   }
+
+   /**
+    * Teslim sayaçlarını yazdırır.
+    */
+   public void printStatus() {
+      System.out.println("   Chat inbox: " + delivered.get() + " delivered, " + duplicates.get()
+            + " duplicates, " + skipped.get() + " skipped, " + dropped.get() + " not printed");
+   }
+
+   private static class OriginState {
+      long epoch = 0;
+      long nextSeq = 1;
+      long gapSince = 0;
+      final TreeMap<Long, ChatMessage> waiting = new TreeMap<>();
+   }
+}
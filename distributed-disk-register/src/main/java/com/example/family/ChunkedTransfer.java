@@ -0,0 +1,242 @@
+package com.example.family;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import family.MessageId;
+import family.StorageServiceGrpc;
+import family.StoreResult;
+import family.StoredMessage;
+import family.ValueChunk;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Büyük değerlerin StorageService üzerinden parça parça aktarımı.
+ * Gönderen taraf gRPC akış kontrolüne (isReady) uyar, böylece istek başına
+ * bellek kullanımı değer boyutu ile değil parça boyutu ile sınırlı kalır.
+ */
+public class ChunkedTransfer {
+
+   private static final long STREAM_TIMEOUT_SECONDS = 60;
+
+   private ChunkedTransfer() {
+   }
+
+   /**
+    * Mesajı StoreStream ile parçalar halinde gönderir.
+    * Parçalar değerin kopyasız alt dilimleridir.
+    */
+   public static StoreResult storeStream(StorageServiceGrpc.StorageServiceStub stub, StoredMessage message,
+         int chunkBytes) throws Exception {
+      CompletableFuture<StoreResult> result = new CompletableFuture<>();
+      Object readyLock = new Object();
+
+      ClientResponseObserver<ValueChunk, StoreResult> responseObserver =
+            new ClientResponseObserver<ValueChunk, StoreResult>() {
+               @Override
+               public void beforeStart(ClientCallStreamObserver<ValueChunk> requestStream) {
+                  requestStream.setOnReadyHandler(() -> {
+                     synchronized (readyLock) {
+                        readyLock.notifyAll();
+                     }
+                  });
+               }
+
+               @Override
+               public void onNext(StoreResult value) {
+                  result.complete(value);
+               }
+
+               @Override
+               public void onError(Throwable t) {
+                  result.completeExceptionally(t);
+                  synchronized (readyLock) {
+                     readyLock.notifyAll();
+                  }
+               }
+
+               @Override
+               public void onCompleted() {
+               }
+            };
+
+      ClientCallStreamObserver<ValueChunk> requestStream =
+            (ClientCallStreamObserver<ValueChunk>) stub.storeStream(responseObserver);
+
+      StoredMessage header = message.toBuilder().clearValue().build();
+      ByteString value = message.getValue();
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(STREAM_TIMEOUT_SECONDS);
+
+      int offset = 0;
+      do {
+         // Alıcı hazır olana kadar bekle (akış kontrolü)
+         synchronized (readyLock) {
+            while (!requestStream.isReady() && !result.isDone()) {
+               long remainingMs = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+               if (remainingMs <= 0) {
+                  requestStream.cancel("stream timeout", null);
+                  throw new IOException("StoreStream timed out waiting for flow control");
+               }
+               readyLock.wait(Math.min(remainingMs, 100));
+            }
+         }
+         if (result.isDone()) {
+            // Alıcı erken cevap verdi ya da hata oluştu
+            break;
+         }
+
+         int end = Math.min(value.size(), offset + chunkBytes);
+         ValueChunk.Builder chunk = ValueChunk.newBuilder().setData(value.substring(offset, end));
+         if (offset == 0) {
+            chunk.setHeader(header);
+         }
+         requestStream.onNext(chunk.build());
+         offset = end;
+      } while (offset < value.size());
+
+      if (!result.isDone()) {
+         requestStream.onCompleted();
+      }
+      return result.get(STREAM_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+   }
+
+   /**
+    * RetrieveStream ile okumayı başlatır. Mesaj yoksa null döner.
+    * Dönen nesnenin içeriği parçalar geldikçe okunur.
+    */
+   public static RemoteValue retrieveStream(StorageServiceGrpc.StorageServiceBlockingStub stub, int messageId) {
+      Iterator<ValueChunk> chunks = stub.retrieveStream(MessageId.newBuilder().setId(messageId).build());
+      if (!chunks.hasNext()) {
+         return null;
+      }
+      ValueChunk first = chunks.next();
+      return new RemoteValue(first.getHeader(), new ChunkInputStream(first.getData(), chunks));
+   }
+
+   /**
+    * Kaydı diskten parça parça okuyup sunucu akışına yazar.
+    * Alıcı hazır olmadığında okumayı durdurur, hazır olunca devam eder.
+    * Kayıt yoksa hiç parça göndermeden akışı kapatır.
+    */
+   public static void sendRecord(MessageStore messageStore, int messageId,
+         StreamObserver<ValueChunk> responseObserver, int chunkBytes) throws IOException {
+      MessageStore.RecordReader reader = messageStore.openReader(messageId);
+      if (reader == null) {
+         responseObserver.onCompleted();
+         return;
+      }
+
+      ServerCallStreamObserver<ValueChunk> serverObserver = (ServerCallStreamObserver<ValueChunk>) responseObserver;
+      serverObserver.setOnCancelHandler(() -> closeQuietly(reader));
+      serverObserver.setOnReadyHandler(new Runnable() {
+         private boolean headerSent = false;
+         private boolean done = false;
+
+         @Override
+         public void run() {
+            try {
+               while (!done && serverObserver.isReady()) {
+                  byte[] data = reader.getContent().readNBytes(chunkBytes);
+                  if (headerSent && data.length == 0) {
+                     done = true;
+                     closeQuietly(reader);
+                     serverObserver.onCompleted();
+                     return;
+                  }
+                  ValueChunk.Builder chunk = ValueChunk.newBuilder()
+                        .setData(UnsafeByteOperations.unsafeWrap(data));
+                  if (!headerSent) {
+                     chunk.setHeader(reader.getHeader());
+                     headerSent = true;
+                  }
+                  serverObserver.onNext(chunk.build());
+               }
+            } catch (IOException e) {
+               done = true;
+               closeQuietly(reader);
+               serverObserver.onError(e);
+            }
+         }
+      });
+   }
+
+   private static void closeQuietly(MessageStore.RecordReader reader) {
+      try {
+         reader.close();
+      } catch (IOException ignored) {
+      }
+   }
+
+   /**
+    * Üyeden akışla okunan değer: başlık + kodlanmış içerik akışı.
+    */
+   public static class RemoteValue {
+
+      private final StoredMessage header;
+      private final InputStream content;
+
+      RemoteValue(StoredMessage header, InputStream content) {
+         this.header = header;
+         this.content = content;
+      }
+
+      public StoredMessage getHeader() {
+         return header;
+      }
+
+      public InputStream getContent() {
+         return content;
+      }
+   }
+
+   /**
+    * Gelen parçaları tek bir InputStream olarak sunar. Bir sonraki parça
+    * ancak mevcut parça tükenince istenir.
+    */
+   private static class ChunkInputStream extends InputStream {
+
+      private final Iterator<ValueChunk> chunks;
+      private InputStream current;
+
+      ChunkInputStream(ByteString first, Iterator<ValueChunk> chunks) {
+         this.chunks = chunks;
+         this.current = first.newInput();
+      }
+
+      @Override
+      public int read() throws IOException {
+         byte[] one = new byte[1];
+         int n = read(one, 0, 1);
+         return n < 0 ? -1 : one[0] & 0xFF;
+      }
+
+      @Override
+      public int read(byte[] b, int off, int len) throws IOException {
+         if (len == 0) {
+            return 0;
+         }
+         while (true) {
+            int n = current.read(b, off, len);
+            if (n > 0) {
+               return n;
+            }
+            try {
+               if (!chunks.hasNext()) {
+                  return -1;
+               }
+               current = chunks.next().getData().newInput();
+            } catch (RuntimeException e) {
+               throw new IOException("stream interrupted: " + e.getMessage(), e);
+            }
+         }
+      }
+   }
+}
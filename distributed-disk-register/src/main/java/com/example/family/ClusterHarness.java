@@ -0,0 +1,455 @@
+package com.example.family;
+
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Uçtan uca performans gerileme testi.
+ *
+ * Aynı JVM'de N düğümlük bir aile açar (her düğümün kendi gRPC portu, istemci
+ * portu ve veri/ipucu klasörü olur), tüm istemci portlarına HaToKuSeClient
+ * yükü verir ve istenirse yük sırasında üyeleri öldürür. Ölçülen verim ve
+ * gecikme yüzdeliklerinin turlar üzerinden ortancası kayıtlı temel değerlerle
+ * (baseline) karşılaştırılır; eşikten fazla kötüleşme varsa süreç 1 ile
+ * çıkar (mvn -Pperf verify kırılır).
+ *
+ * Temel değerler sadece ölçüldükleri makinede anlamlıdır: dosya
+ * perf/baseline-<makine adı>.properties'tir ve makinenin kimliğini (ad,
+ * işlemci sayısı, mimari, Java sürümü) taşır. Dosya yoksa ya da başka bir
+ * makinede yazılmışsa ölçüm hiç yapılmadan 2 ile çıkılır; dosya sadece
+ * --writeBaseline ile yazılır. Dosya ortancanın yanında turların en
+ * kötüsünü de tutar; eşik bu en kötü turdan hesaplanır, böylece gürültülü
+ * bir makinede eşik gürültü kadar genişler, sessiz makinede dar kalır.
+ *
+ * Kullanım:
+ *   --nodes=3 --seconds=30 --warmupSeconds=10 --connections=8 --kill=2@10 --runs=3
+ *   [--baseline=perf/baseline-host.properties] --maxRegression=0.25 [--writeBaseline]
+ *   --conf=KEY=VALUE  (tüm düğümlere ayar, tekrarlanabilir)
+ * Tanınmayan argümanlar (--setRatio=0.5 gibi) HaToKuSeClient'a geçer.
+ */
+public class ClusterHarness {
+
+   // Karşılaştırılan ölçüler; verim düşmemeli, gecikme ve hata oranı artmamalı
+   private static final List<String> HIGHER_IS_BETTER = List.of("throughput");
+   private static final List<String> LOWER_IS_BETTER = List.of(
+         "set.p50", "set.p95", "set.p99", "get.p50", "get.p95", "get.p99", "errorRate");
+
+   // Temel değer dosyasında turların en kötüsü "<ölçü>.worst" olarak durur
+   private static final String WORST_SUFFIX = ".worst";
+   private static final String HOST_KEY = "host";
+
+   private static final class Config {
+      int nodes = 3;
+      int basePort = 7555;
+      int clientPortBase = 8666;
+      int tolerance = 1;
+      int seconds = 30;
+      // Ölçümden önce atılan yük; JIT ısınmadan ilk tur hep yavaş görünür
+      int warmupSeconds = 10;
+      int connections = 8;
+      int runs = 1;
+      Path workDir = Paths.get("target", "cluster");
+      // Verilmezse perf/baseline-<makine adı>.properties
+      Path baseline;
+      double maxRegression = 0.25;
+      // Küçük gecikmelerde oransal eşik gürültüye takılmasın
+      long latencySlackUs = 2_000;
+      double errorRateSlack = 0.01;
+      boolean writeBaseline = false;
+      // Düğüm sırası → yük başladıktan kaç saniye sonra öldürüleceği
+      Map<Integer, Integer> kills = new TreeMap<>();
+      Map<String, String> conf = new LinkedHashMap<>();
+      List<String> clientArgs = new ArrayList<>();
+   }
+
+   public static void main(String[] args) throws Exception {
+      Config cfg = parseArgs(args);
+      Properties baseline = null;
+      if (!cfg.writeBaseline) {
+         if (!Files.exists(cfg.baseline)) {
+            System.err.println("Baseline not found: " + cfg.baseline
+                  + " (record one on this machine with --writeBaseline)");
+            System.exit(2);
+         }
+         baseline = load(cfg.baseline);
+         String recordedOn = baseline.getProperty(HOST_KEY);
+         if (!hostId().equals(recordedOn)) {
+            System.err.println("Baseline " + cfg.baseline + " was recorded on " + recordedOn
+                  + ", this is " + hostId() + "; record one here with --writeBaseline");
+            System.exit(2);
+         }
+      } else if (cfg.runs < 3) {
+         System.err.println("Recording a baseline from " + cfg.runs
+               + " run(s); use --runs=3 or more so the threshold reflects run-to-run noise");
+      }
+
+      PrintStream console = System.out;
+
+      deleteRecursively(cfg.workDir);
+      Files.createDirectories(cfg.workDir);
+      // Düğümlerin istek başına logları verimi bozmasın diye dosyaya gider
+      Path logFile = cfg.workDir.resolve("cluster.log");
+      PrintStream log = new PrintStream(new BufferedOutputStream(new FileOutputStream(logFile.toFile()), 1 << 16),
+            false, "UTF-8");
+      System.setOut(log);
+      System.setErr(log);
+
+      int exitCode;
+      try {
+         // Her tur yeni bir kümeyle koşar; tek turun gürültüsü yerine ortanca karşılaştırılır
+         List<Map<String, Double>> runs = new ArrayList<>();
+         for (int run = 0; run < cfg.runs; run++) {
+            console.printf("Run %d/%d, log: %s%n", run + 1, cfg.runs, logFile);
+            runs.add(runOnce(cfg, cfg.workDir.resolve("run-" + run), console));
+         }
+         Map<String, Double> metrics = median(runs);
+         store(cfg.workDir.resolve("results.properties"), metrics, null, "ClusterHarness results");
+
+         if (cfg.writeBaseline) {
+            Map<String, Double> recorded = new LinkedHashMap<>(metrics);
+            worst(runs).forEach((key, value) -> recorded.put(key + WORST_SUFFIX, value));
+            store(cfg.baseline, recorded, hostId(), "ClusterHarness baseline (" + describe(cfg) + ")");
+            console.println("Baseline written: " + cfg.baseline);
+            exitCode = 0;
+         } else {
+            exitCode = compare(cfg, baseline, metrics, console) ? 0 : 1;
+         }
+      } catch (Exception e) {
+         console.println("Cluster harness failed: " + e);
+         exitCode = 2;
+      } finally {
+         log.flush();
+         System.setOut(console);
+      }
+      // Düğümlerin daemon olmayan thread'leri (istemci havuzları) beklenmez
+      System.exit(exitCode);
+   }
+
+   /**
+    * Kümeyi açar, yükü verir, sıradaki üyeleri öldürür ve kümeyi kapatır.
+    */
+   private static Map<String, Double> runOnce(Config cfg, Path dir, PrintStream console) throws Exception {
+      List<NodeMain> nodes = new ArrayList<>();
+      Set<NodeMain> stopped = ConcurrentHashMap.newKeySet();
+      ScheduledThreadPoolExecutor killer = new ScheduledThreadPoolExecutor(1);
+      killer.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+      try {
+         NodeConfig base = new NodeConfig();
+         for (int i = 0; i < cfg.nodes; i++) {
+            NodeMain node = new NodeMain(base.with(nodeOverrides(cfg, dir, i)));
+            node.start();
+            nodes.add(node);
+         }
+         if (!awaitPort(cfg.clientPortBase, 30_000)) {
+            throw new IllegalStateException("no leader on TCP " + cfg.clientPortBase);
+         }
+         console.printf("Cluster of %d nodes up (gRPC %d.., TCP %d..)%n",
+               cfg.nodes, cfg.basePort, cfg.clientPortBase);
+         if (cfg.warmupSeconds > 0) {
+            HaToKuSeClient.run(clientArgs(cfg, cfg.warmupSeconds));
+         }
+
+         for (Map.Entry<Integer, Integer> kill : cfg.kills.entrySet()) {
+            NodeMain victim = nodes.get(kill.getKey());
+            killer.schedule(() -> {
+               console.printf("Killing node %d (%s:%d) at %ds%n", kill.getKey(),
+                     victim.getSelf().getHost(), victim.getSelf().getPort(), kill.getValue());
+               stopped.add(victim);
+               victim.stop();
+            }, kill.getValue(), TimeUnit.SECONDS);
+         }
+
+         HaToKuSeClient.Result result = HaToKuSeClient.run(clientArgs(cfg, cfg.seconds));
+         result.print(console);
+         return metrics(result);
+      } finally {
+         // Süren bir öldürme bitsin, süresi gelmeyenler iptal edilsin
+         killer.shutdown();
+         killer.awaitTermination(10, TimeUnit.SECONDS);
+         for (int i = nodes.size() - 1; i >= 0; i--) {
+            if (stopped.add(nodes.get(i))) {
+               nodes.get(i).stop();
+            }
+         }
+      }
+   }
+
+   /**
+    * i. düğümün ayarları: ardışık portlar, ayrı veri ve ipucu klasörü.
+    * Yedek lider ikinci düğümdür; 0. düğüm öldürülünce TCP portunu o devralır.
+    */
+   private static Map<String, String> nodeOverrides(Config cfg, Path runDir, int i) {
+      Path dir = runDir.resolve("node-" + i);
+      Map<String, String> overrides = new HashMap<>(cfg.conf);
+      overrides.put("START_PORT", String.valueOf(cfg.basePort));
+      overrides.put("PORT", String.valueOf(cfg.basePort + i));
+      overrides.put("LEADER_CLIENT_PORT", String.valueOf(cfg.clientPortBase));
+      overrides.put("CLIENT_PORT_BASE", String.valueOf(cfg.clientPortBase));
+      overrides.put("STANDBY_PORT", String.valueOf(cfg.nodes > 1 ? cfg.basePort + 1 : 0));
+      overrides.put("LEASE_VOTERS", voters(cfg));
+      overrides.put("DATA_DIRS", dir.resolve("messages").toString());
+      overrides.put("HINTS_DIR", dir.resolve("hints").toString());
+      overrides.put("TOLERANCE", String.valueOf(cfg.tolerance));
+      return overrides;
+   }
+
+   /** Kira seçmenleri: kümenin tüm düğümleri. */
+   private static String voters(Config cfg) {
+      StringBuilder voters = new StringBuilder();
+      for (int i = 0; i < cfg.nodes; i++) {
+         voters.append(i == 0 ? "" : ",").append("127.0.0.1:").append(cfg.basePort + i);
+      }
+      return voters.toString();
+   }
+
+   private static String[] clientArgs(Config cfg, int seconds) {
+      StringBuilder endpoints = new StringBuilder();
+      for (int i = 0; i < cfg.nodes; i++) {
+         endpoints.append(i == 0 ? "" : ",").append("127.0.0.1:").append(cfg.clientPortBase + i);
+      }
+      List<String> args = new ArrayList<>(List.of(
+            "--endpoints=" + endpoints,
+            "--connections=" + cfg.connections,
+            "--durationSeconds=" + seconds,
+            "--csv=none",
+            // Varsayılan yük küçük değerlerdir; 1 MB'lık değerler sonuçları oynatır
+            "--maxPayloadBytes=1024",
+            "--largeEveryN=0",
+            "--reconnectBackoffMs=100"));
+      // Sonra gelen argüman öncekini ezer
+      args.addAll(cfg.clientArgs);
+      return args.toArray(new String[0]);
+   }
+
+   private static Map<String, Double> metrics(HaToKuSeClient.Result result) {
+      Map<String, Double> metrics = new LinkedHashMap<>();
+      metrics.put("throughput", result.throughput());
+      metrics.put("errorRate", result.errorRate());
+      metrics.put("set.p50", (double) result.setLatency.percentile(50));
+      metrics.put("set.p95", (double) result.setLatency.percentile(95));
+      metrics.put("set.p99", (double) result.setLatency.percentile(99));
+      metrics.put("get.p50", (double) result.getLatency.percentile(50));
+      metrics.put("get.p95", (double) result.getLatency.percentile(95));
+      metrics.put("get.p99", (double) result.getLatency.percentile(99));
+      return metrics;
+   }
+
+   /** Turların ölçü ölçü ortancası. */
+   private static Map<String, Double> median(List<Map<String, Double>> runs) {
+      Map<String, Double> result = new LinkedHashMap<>();
+      for (String key : runs.get(0).keySet()) {
+         List<Double> values = new ArrayList<>();
+         for (Map<String, Double> run : runs) {
+            values.add(run.get(key));
+         }
+         values.sort(null);
+         int mid = values.size() / 2;
+         result.put(key, values.size() % 2 == 1 ? values.get(mid) : (values.get(mid - 1) + values.get(mid)) / 2);
+      }
+      return result;
+   }
+
+   /** Turların ölçü ölçü en kötüsü (verimde en düşük, diğerlerinde en yüksek). */
+   private static Map<String, Double> worst(List<Map<String, Double>> runs) {
+      Map<String, Double> result = new LinkedHashMap<>();
+      for (String key : runs.get(0).keySet()) {
+         boolean higherIsBetter = HIGHER_IS_BETTER.contains(key);
+         double worst = runs.get(0).get(key);
+         for (Map<String, Double> run : runs) {
+            worst = higherIsBetter ? Math.min(worst, run.get(key)) : Math.max(worst, run.get(key));
+         }
+         result.put(key, worst);
+      }
+      return result;
+   }
+
+   /**
+    * Her ölçüyü temel değerle karşılaştırır; hepsi eşik içindeyse true.
+    * Eşik, temel değer turlarının en kötüsünden hesaplanır.
+    */
+   private static boolean compare(Config cfg, Properties baseline, Map<String, Double> current,
+         PrintStream out) {
+      boolean ok = true;
+      out.printf("Comparing with %s (max regression %.0f%% beyond the worst baseline run)%n", cfg.baseline,
+            cfg.maxRegression * 100);
+      for (String key : current.keySet()) {
+         String recorded = baseline.getProperty(key);
+         double actual = current.get(key);
+         if (recorded == null) {
+            continue;
+         }
+         double expected = Double.parseDouble(recorded);
+         double worst = Double.parseDouble(baseline.getProperty(key + WORST_SUFFIX, recorded));
+         boolean regressed = false;
+         if (HIGHER_IS_BETTER.contains(key)) {
+            regressed = actual < Math.min(expected, worst) * (1 - cfg.maxRegression);
+         } else if (key.equals("errorRate")) {
+            regressed = actual > Math.max(expected, worst) + cfg.errorRateSlack;
+         } else if (LOWER_IS_BETTER.contains(key)) {
+            regressed = actual > Math.max(expected, worst) * (1 + cfg.maxRegression)
+                  && actual - expected > cfg.latencySlackUs;
+         }
+         out.printf(Locale.ROOT, "   %-10s baseline=%12.3f worst=%12.3f current=%12.3f %s%n", key, expected,
+               worst, actual, regressed ? "REGRESSED" : "ok");
+         ok &= !regressed;
+      }
+      out.println(ok ? "No performance regression" : "Performance regression beyond threshold");
+      return ok;
+   }
+
+   private static boolean awaitPort(int port, long timeoutMs) throws InterruptedException {
+      long deadline = System.currentTimeMillis() + timeoutMs;
+      while (System.currentTimeMillis() < deadline) {
+         try (Socket s = new Socket()) {
+            s.connect(new InetSocketAddress("127.0.0.1", port), 500);
+            return true;
+         } catch (IOException e) {
+            Thread.sleep(200);
+         }
+      }
+      return false;
+   }
+
+   private static String describe(Config cfg) {
+      return cfg.nodes + " nodes, median of " + cfg.runs + " runs of " + cfg.seconds + " s after "
+            + cfg.warmupSeconds + " s warmup, " + cfg.connections + " connections, kills=" + cfg.kills
+            + ", client args=" + cfg.clientArgs;
+   }
+
+   /**
+    * Bu makinenin kimliği; temel değer sadece aynı kimlikle karşılaştırılır.
+    */
+   private static String hostId() {
+      return hostName() + " (" + Runtime.getRuntime().availableProcessors() + " cpus, "
+            + System.getProperty("os.arch") + ", java " + System.getProperty("java.specification.version") + ")";
+   }
+
+   private static String hostName() {
+      String name;
+      try {
+         name = InetAddress.getLocalHost().getHostName();
+      } catch (IOException e) {
+         name = System.getenv().getOrDefault("HOSTNAME", "unknown");
+      }
+      return name.replaceAll("[^A-Za-z0-9._-]", "_");
+   }
+
+   private static void store(Path file, Map<String, Double> metrics, String host, String comment)
+         throws IOException {
+      if (file.getParent() != null) {
+         Files.createDirectories(file.getParent());
+      }
+      Properties props = new Properties();
+      if (host != null) {
+         props.setProperty(HOST_KEY, host);
+      }
+      for (Map.Entry<String, Double> e : metrics.entrySet()) {
+         props.setProperty(e.getKey(), String.format(Locale.ROOT, "%.3f", e.getValue()));
+      }
+      try (OutputStream out = Files.newOutputStream(file)) {
+         props.store(out, comment);
+      }
+   }
+
+   private static Properties load(Path file) throws IOException {
+      Properties props = new Properties();
+      try (InputStream in = Files.newInputStream(file)) {
+         props.load(in);
+      }
+      return props;
+   }
+
+   private static void deleteRecursively(Path dir) throws IOException {
+      if (!Files.exists(dir)) {
+         return;
+      }
+      try (Stream<Path> paths = Files.walk(dir)) {
+         for (Path p : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+            Files.delete(p);
+         }
+      }
+   }
+
+   private static Config parseArgs(String[] args) {
+      Config c = new Config();
+      for (String a : args) {
+         if (a.startsWith("--nodes="))
+            c.nodes = Integer.parseInt(a.substring("--nodes=".length()));
+         else if (a.startsWith("--basePort="))
+            c.basePort = Integer.parseInt(a.substring("--basePort=".length()));
+         else if (a.startsWith("--clientPortBase="))
+            c.clientPortBase = Integer.parseInt(a.substring("--clientPortBase=".length()));
+         else if (a.startsWith("--tolerance="))
+            c.tolerance = Integer.parseInt(a.substring("--tolerance=".length()));
+         else if (a.startsWith("--seconds="))
+            c.seconds = Integer.parseInt(a.substring("--seconds=".length()));
+         else if (a.startsWith("--warmupSeconds="))
+            c.warmupSeconds = Integer.parseInt(a.substring("--warmupSeconds=".length()));
+         else if (a.startsWith("--connections="))
+            c.connections = Integer.parseInt(a.substring("--connections=".length()));
+         else if (a.startsWith("--runs="))
+            c.runs = Integer.parseInt(a.substring("--runs=".length()));
+         else if (a.startsWith("--workDir="))
+            c.workDir = Paths.get(a.substring("--workDir=".length()));
+         else if (a.startsWith("--baseline="))
+            c.baseline = Paths.get(a.substring("--baseline=".length()));
+         else if (a.startsWith("--maxRegression="))
+            c.maxRegression = Double.parseDouble(a.substring("--maxRegression=".length()));
+         else if (a.startsWith("--latencySlackUs="))
+            c.latencySlackUs = Long.parseLong(a.substring("--latencySlackUs=".length()));
+         else if (a.equals("--writeBaseline"))
+            c.writeBaseline = true;
+         else if (a.startsWith("--kill="))
+            parseKills(a.substring("--kill=".length()), c.kills);
+         else if (a.startsWith("--conf=")) {
+            String kv = a.substring("--conf=".length());
+            int eq = kv.indexOf('=');
+            c.conf.put(kv.substring(0, eq).trim(), kv.substring(eq + 1).trim());
+         } else
+            c.clientArgs.add(a);
+      }
+      if (c.nodes < 1)
+         c.nodes = 1;
+      if (c.runs < 1)
+         c.runs = 1;
+      if (c.baseline == null)
+         c.baseline = Paths.get("perf", "baseline-" + hostName() + ".properties");
+      c.kills.keySet().removeIf(i -> i < 0 || i >= c.nodes);
+      return c;
+   }
+
+   /** "2@10,1@20": 2. düğüm 10. saniyede, 1. düğüm 20. saniyede. */
+   private static void parseKills(String spec, Map<Integer, Integer> kills) {
+      for (String part : spec.split(",")) {
+         String p = part.trim();
+         if (p.isEmpty())
+            continue;
+         int at = p.indexOf('@');
+         kills.put(Integer.parseInt(p.substring(0, at)), Integer.parseInt(p.substring(at + 1)));
+      }
+   }
+}
@@ -1,24 +1,39 @@
 package com.example.family;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+
 /**
- * Basit komut sınıfı - SET ve GET komutlarını temsil eder.
+ * Basit komut sınıfı - SET, GET, SCAN ve BROADCAST komutlarını temsil eder.
  */
 public class Command {
 
    public enum Type {
       SET,
       GET,
+      SCAN,
+      BROADCAST,
       UNKNOWN
    }
 
    private final Type type;
    private final int messageId;
-   private final String messageText; // Sadece SET için kullanılır
+   private final ByteString value; // SET değeri ya da BROADCAST metni
+   private final int rangeEnd;     // Sadece SCAN için: son id (dahil)
+   private final int limit;        // Sadece SCAN için: verilmediyse -1
+   private final int ttlSeconds;   // Sadece SET ... EX için: verilmediyse 0
+
+   public Command(Type type, int messageId, ByteString value) {
+      this(type, messageId, value, messageId, -1, 0);
+   }
 
-   public Command(Type type, int messageId, String messageText) {
+   public Command(Type type, int messageId, ByteString value, int rangeEnd, int limit, int ttlSeconds) {
       this.type = type;
       this.messageId = messageId;
-      this.messageText = messageText;
+      this.value = value;
+      this.rangeEnd = rangeEnd;
+      this.limit = limit;
+      this.ttlSeconds = ttlSeconds;
    }
 
    public Type getType() {
@@ -29,39 +44,189 @@ public class Command {
       return messageId;
    }
 
-   public String getMessageText() {
-      return messageText;
+   public ByteString getValue() {
+      return value;
+   }
+
+   public int getRangeEnd() {
+      return rangeEnd;
+   }
+
+   public int getLimit() {
+      return limit;
+   }
+
+   public int getTtlSeconds() {
+      return ttlSeconds;
    }
 
    /**
-    * String komutunu parse eder.
-    * Format: SET <id> <message> veya GET <id>
+    * Ham satırı parse eder.
+    * Format: SET <id> <message> [EX <seconds>], GET <id>, SCAN <from> <to> [limit]
+    * veya BROADCAST <text>
+    * Değerin son iki parçası "EX <pozitif sayı>" ise süre olarak alınır.
+    * SET değeri satır dizisinin üzerine kopyasız sarılır, String'e çevrilmez.
     */
-   public static Command parse(String line) {
-      if (line == null || line.trim().isEmpty()) {
+   public static Command parse(byte[] line) {
+      if (line == null) {
          return new Command(Type.UNKNOWN, -1, null);
       }
 
-      String[] parts = line.trim().split("\\s+", 3);
+      int end = line.length;
+      while (end > 0 && isSpace(line[end - 1])) {
+         end--;
+      }
+
+      // Komut
+      int cmdStart = skipSpaces(line, 0, end);
+      int cmdEnd = skipToken(line, cmdStart, end);
 
-      if (parts.length < 2) {
-         return new Command(Type.UNKNOWN, -1, null);
+      if (tokenEquals(line, cmdStart, cmdEnd, "BROADCAST")) {
+         int textStart = skipSpaces(line, cmdEnd, end);
+         if (textStart == end) {
+            return new Command(Type.UNKNOWN, -1, null);
+         }
+         return new Command(Type.BROADCAST, -1, UnsafeByteOperations.unsafeWrap(line, textStart, end - textStart));
       }
 
-      String cmd = parts[0].toUpperCase();
+      // ID
+      int idStart = skipSpaces(line, cmdEnd, end);
+      int idEnd = skipToken(line, idStart, end);
+      if (cmdStart == cmdEnd || idStart == idEnd) {
+         return new Command(Type.UNKNOWN, -1, null);
+      }
 
+      int id;
       try {
-         int id = Integer.parseInt(parts[1]);
-
-         if (cmd.equals("SET") && parts.length >= 3) {
-            return new Command(Type.SET, id, parts[2]);
-         } else if (cmd.equals("GET")) {
-            return new Command(Type.GET, id, null);
-         }
+         id = parseInt(line, idStart, idEnd);
       } catch (NumberFormatException e) {
          // ID parse edilemedi
+         return new Command(Type.UNKNOWN, -1, null);
+      }
+
+      int valueStart = skipSpaces(line, idEnd, end);
+
+      if (tokenEquals(line, cmdStart, cmdEnd, "SET") && valueStart < end) {
+         return parseSet(line, id, valueStart, end);
+      } else if (tokenEquals(line, cmdStart, cmdEnd, "GET")) {
+         return new Command(Type.GET, id, null);
+      } else if (tokenEquals(line, cmdStart, cmdEnd, "SCAN")) {
+         return parseScan(line, id, valueStart, end);
       }
 
       return new Command(Type.UNKNOWN, -1, null);
    }
+
+   /** SET <id> <message> [EX <seconds>]: id zaten okundu. */
+   private static Command parseSet(byte[] line, int id, int valueStart, int end) {
+      int ttl = 0;
+      int valueEnd = end;
+
+      // Sondan geriye: <seconds>, boşluk, EX, boşluk, değer
+      int secondsStart = end;
+      while (secondsStart > valueStart && !isSpace(line[secondsStart - 1])) {
+         secondsStart--;
+      }
+      int exEnd = secondsStart;
+      while (exEnd > valueStart && isSpace(line[exEnd - 1])) {
+         exEnd--;
+      }
+      int exStart = exEnd;
+      while (exStart > valueStart && !isSpace(line[exStart - 1])) {
+         exStart--;
+      }
+      int beforeEx = exStart;
+      while (beforeEx > valueStart && isSpace(line[beforeEx - 1])) {
+         beforeEx--;
+      }
+      if (beforeEx > valueStart && beforeEx < exStart && tokenEquals(line, exStart, exEnd, "EX")) {
+         try {
+            int seconds = parseInt(line, secondsStart, end);
+            if (seconds > 0) {
+               ttl = seconds;
+               valueEnd = beforeEx;
+            }
+         } catch (NumberFormatException ignored) {
+            // "EX" değerin parçası
+         }
+      }
+
+      return new Command(Type.SET, id, UnsafeByteOperations.unsafeWrap(line, valueStart, valueEnd - valueStart),
+            id, -1, ttl);
+   }
+
+   /** SCAN <from> <to> [limit]: from zaten okundu. */
+   private static Command parseScan(byte[] line, int from, int start, int end) {
+      int toEnd = skipToken(line, start, end);
+      int limitStart = skipSpaces(line, toEnd, end);
+      int limitEnd = skipToken(line, limitStart, end);
+      if (start == toEnd || skipSpaces(line, limitEnd, end) != end) {
+         return new Command(Type.UNKNOWN, -1, null);
+      }
+      try {
+         int to = parseInt(line, start, toEnd);
+         int limit = limitStart == limitEnd ? -1 : parseInt(line, limitStart, limitEnd);
+         if (to < from || (limitStart != limitEnd && limit < 1)) {
+            return new Command(Type.UNKNOWN, -1, null);
+         }
+         return new Command(Type.SCAN, from, null, to, limit, 0);
+      } catch (NumberFormatException e) {
+         return new Command(Type.UNKNOWN, -1, null);
+      }
+   }
+
+   private static boolean isSpace(byte b) {
+      return b == ' ' || b == '\t' || b == '\r' || b == '\n' || b == '\f' || b == 0x0B;
+   }
+
+   private static int skipSpaces(byte[] line, int from, int end) {
+      while (from < end && isSpace(line[from])) {
+         from++;
+      }
+      return from;
+   }
+
+   private static int skipToken(byte[] line, int from, int end) {
+      while (from < end && !isSpace(line[from])) {
+         from++;
+      }
+      return from;
+   }
+
+   /** Büyük/küçük harf duyarsız ASCII karşılaştırma. */
+   private static boolean tokenEquals(byte[] line, int start, int end, String keyword) {
+      if (end - start != keyword.length()) {
+         return false;
+      }
+      for (int i = 0; i < keyword.length(); i++) {
+         if (Character.toUpperCase((char) (line[start + i] & 0xFF)) != keyword.charAt(i)) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private static int parseInt(byte[] line, int start, int end) {
+      boolean negative = line[start] == '-';
+      int i = (negative || line[start] == '+') ? start + 1 : start;
+      if (i == end) {
+         throw new NumberFormatException();
+      }
+      long result = 0;
+      for (; i < end; i++) {
+         int digit = line[i] - '0';
+         if (digit < 0 || digit > 9) {
+            throw new NumberFormatException();
+         }
+         result = result * 10 + digit;
+         if (result > (long) Integer.MAX_VALUE + 1) {
+            throw new NumberFormatException();
+         }
+      }
+      result = negative ? -result : result;
+      if (result > Integer.MAX_VALUE || result < Integer.MIN_VALUE) {
+         throw new NumberFormatException();
+      }
+      return (int) result;
+   }
 }
@@ -0,0 +1,801 @@
+package com.example.family;
+
+import family.*;
+
+import io.grpc.Context;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * TCP text protokolünü (SET/GET) karşılayan koordinatör.
+ *
+ * Her düğüm kendi istemci portunda bir koordinatör çalıştırabilir. Mesajın
+ * hangi düğümlerde tutulacağı Placement ile id'den hesaplandığı için
+ * herhangi bir koordinatör herhangi bir id için SET/GET yapabilir.
+ * MessageRegistry, bu koordinatörün onayını aldığı yerlerin önbelleğidir.
+ */
+public class Coordinator {
+
+    private static final long STAT_DEADLINE_MS = 2_000;
+
+    private final NodeInfo self;
+    private final NodeRegistry registry;
+    private final MessageStore messageStore;
+    private final MessageRegistry messageRegistry;
+    private final ToleranceConfig toleranceConfig;
+    private final ValueCodec valueCodec;
+    private final ReplicationManager replicationManager;
+    private final HintedHandoff hintedHandoff;
+    private final VersionClock versionClock;
+    private final Placement placement = new Placement();
+    private final ReadRepair readRepair;
+    private final BloomDirectory blooms;
+    private final LoadTracker loadTracker;
+    private final Broadcaster broadcaster;
+    private final AdmissionControl admission;
+
+    // Aynı id'ye gelen SET'ler sürüm alma ve kuyruğa ekleme sırasında sıraya girer
+    private final KeyLocks keyLocks = new KeyLocks(256);
+
+    private final long replicationAckTimeoutMs;
+    private final int maxClientConnections;
+    private final int getExtraCandidates;
+    private final int loadSlack;
+    private final int scanDefaultLimit;
+    private final int scanMaxLimit;
+
+    // İstemci portu → dinleyen soket; lider portu liderlikle açılıp kapanır
+    private final Map<Integer, ServerSocket> listeners = new ConcurrentHashMap<>();
+    // Açık istemci bağlantıları; düğüm durdurulurken kapatılır
+    private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+    private ThreadPoolExecutor clientPool;
+
+    public Coordinator(NodeInfo self, NodeRegistry registry, MessageStore messageStore,
+            MessageRegistry messageRegistry, ToleranceConfig toleranceConfig, ValueCodec valueCodec,
+            ReplicationManager replicationManager, HintedHandoff hintedHandoff, VersionClock versionClock,
+            LoadTracker loadTracker, Broadcaster broadcaster, AdmissionControl admission, NodeConfig config) {
+        this.self = self;
+        this.registry = registry;
+        this.messageStore = messageStore;
+        this.messageRegistry = messageRegistry;
+        this.toleranceConfig = toleranceConfig;
+        this.valueCodec = valueCodec;
+        this.replicationManager = replicationManager;
+        this.hintedHandoff = hintedHandoff;
+        this.versionClock = versionClock;
+        this.loadTracker = loadTracker;
+        this.broadcaster = broadcaster;
+        this.admission = admission;
+        this.replicationAckTimeoutMs = config.getLong("REPLICATION_ACK_TIMEOUT_MS", 10_000);
+        this.maxClientConnections = config.getInt("MAX_CLIENT_CONNECTIONS", 256);
+        this.getExtraCandidates = config.getInt("PLACEMENT_GET_EXTRA", 2);
+        // GET'in baktığı fazlalıktan büyük olamaz, yoksa kayıt okunamaz
+        this.loadSlack = Math.max(0, Math.min(getExtraCandidates, config.getInt("PLACEMENT_LOAD_SLACK", 1)));
+        this.scanDefaultLimit = config.getInt("SCAN_DEFAULT_LIMIT", 1000);
+        this.scanMaxLimit = config.getInt("SCAN_MAX_LIMIT", 100_000);
+        this.readRepair = new ReadRepair(self, registry, messageStore, messageRegistry, toleranceConfig,
+                replicationManager, placement, config);
+        this.blooms = new BloomDirectory(self, registry, replicationManager, config);
+    }
+
+    /**
+     * Verilen TCP portunda istemci dinlemeye başlar. Port zaten dinleniyorsa
+     * bir şey yapmaz; açılamazsa false döner.
+     */
+    public synchronized boolean startTextListener(int clientPort) {
+        if (listeners.containsKey(clientPort)) {
+            return true;
+        }
+        if (clientPool == null) {
+            // Bağlantı thread'leri sınırlı; sınır dolunca yeni istemci BUSY alır
+            clientPool = new ThreadPoolExecutor(0, maxClientConnections,
+                    60, TimeUnit.SECONDS, new SynchronousQueue<>());
+            blooms.start();
+        }
+
+        ServerSocket serverSocket;
+        try {
+            serverSocket = new ServerSocket(clientPort);
+        } catch (IOException e) {
+            System.err.println("Error in text listener on port " + clientPort + ": " + e.getMessage());
+            return false;
+        }
+        listeners.put(clientPort, serverSocket);
+
+        new Thread(() -> {
+            System.out.printf("Coordinator listening for text on TCP %s:%d%n", self.getHost(), clientPort);
+            try {
+                while (true) {
+                    Socket client = serverSocket.accept();
+                    try {
+                        clientPool.execute(() -> handleClientTextConnection(client));
+                    } catch (RejectedExecutionException e) {
+                        rejectClient(client);
+                    }
+                }
+
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) {
+                    System.out.printf("Coordinator stopped listening on TCP %s:%d%n", self.getHost(), clientPort);
+                } else {
+                    System.err.println("Error in text listener on port " + clientPort + ": " + e.getMessage());
+                }
+            } finally {
+                listeners.remove(clientPort, serverSocket);
+                try {
+                    serverSocket.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }, "TextListener-" + clientPort).start();
+        return true;
+    }
+
+    /**
+     * Portu dinlemeyi bırakır; açık bağlantılar işlenmeye devam eder.
+     */
+    public void stopTextListener(int clientPort) {
+        ServerSocket serverSocket = listeners.remove(clientPort);
+        if (serverSocket != null) {
+            try {
+                serverSocket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Tüm portları ve açık istemci bağlantılarını kapatır, arka plan
+     * işlerini durdurur.
+     */
+    public synchronized void stop() {
+        for (Integer clientPort : new ArrayList<>(listeners.keySet())) {
+            stopTextListener(clientPort);
+        }
+        for (Socket client : clients) {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+        if (clientPool != null) {
+            clientPool.shutdownNow();
+        }
+        blooms.stop();
+        readRepair.stop();
+    }
+
+    private void rejectClient(Socket client) {
+        System.out.println("Too many TCP clients, rejecting: " + client.getRemoteSocketAddress());
+        try (OutputStream out = client.getOutputStream()) {
+            writeLine(out, "BUSY");
+        } catch (IOException ignored) {
+        } finally {
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void handleClientTextConnection(Socket client) {
+        System.out.println("New TCP client connected: " + client.getRemoteSocketAddress());
+        clients.add(client);
+        try (OutputStream writer = new BufferedOutputStream(client.getOutputStream())) {
+            LineReader reader = new LineReader(client.getInputStream());
+            AdmissionControl.Client admissionState = admission.register(client.getInetAddress().getHostAddress());
+
+            byte[] line;
+            while ((line = reader.readLine()) != null) {
+                if (isBlank(line))
+                    continue;
+
+                // Komutun aşamaları ve üyelere giden RPC'ler aynı iz numarasını taşır
+                Context traced = Tracing.withTraceId(Tracing.newTraceId());
+                Context previous = traced.attach();
+                try {
+                    process(line, admissionState, writer);
+                } finally {
+                    traced.detach(previous);
+                }
+            }
+
+        } catch (IOException e) {
+            System.err.println("TCP client handler error: " + e.getMessage());
+        } finally {
+            clients.remove(client);
+            try {
+                client.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    private void process(byte[] line, AdmissionControl.Client admissionState, OutputStream writer)
+            throws IOException {
+        Tracing.RequestEvent request = new Tracing.RequestEvent();
+        request.begin();
+        Tracing.StageEvent stage = Tracing.stageBegin();
+        Command cmd = Command.parse(line);
+        Tracing.stageEnd(stage, "parse", cmd.getMessageId());
+        System.out.println("📝 Received from TCP: " + cmd.getType() + " id=" + cmd.getMessageId());
+
+        try {
+            // Hız sınırını aşan ya da adil kuyrukta yer bulamayan komut beklemeden reddedilir
+            if (cmd.getType() != Command.Type.UNKNOWN) {
+                stage = Tracing.stageBegin();
+                AdmissionControl.Result admitted = admission.acquire(admissionState, cmd);
+                Tracing.stageEnd(stage, "admission", cmd.getMessageId());
+                if (admitted != AdmissionControl.Result.ADMITTED) {
+                    writeLine(writer, admitted.name());
+                    return;
+                }
+            }
+
+            try {
+                execute(cmd, line, writer);
+            } finally {
+                if (cmd.getType() != Command.Type.UNKNOWN) {
+                    admission.release(cmd);
+                }
+            }
+        } finally {
+            request.end();
+            if (request.shouldCommit()) {
+                request.traceId = Tracing.currentTraceId();
+                request.command = cmd.getType().name();
+                request.messageId = cmd.getMessageId();
+                request.valueBytes = cmd.getValue() == null ? 0 : cmd.getValue().size();
+                request.commit();
+            }
+        }
+    }
+
+    private void execute(Command cmd, byte[] line, OutputStream writer) throws IOException {
+        switch (cmd.getType()) {
+            case SET:
+                handleSet(cmd, writer);
+                break;
+
+            case GET:
+                handleGet(cmd, writer);
+                break;
+
+            case SCAN:
+                handleScan(cmd, writer);
+                break;
+
+            case BROADCAST:
+                handleBroadcast(cmd, writer);
+                break;
+
+            case UNKNOWN:
+            default:
+                writeLine(writer, "ERROR: Unknown command. Use SET <id> <message> [EX <seconds>], GET <id>,"
+                        + " SCAN <from> <to> [limit] or BROADCAST <text>");
+                System.out.println("❓ Unknown command: "
+                        + new String(line, 0, Math.min(line.length, 64), StandardCharsets.US_ASCII));
+                break;
+        }
+    }
+
+    private static boolean isBlank(byte[] line) {
+        for (byte b : line) {
+            if (!Character.isWhitespace(b))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Durum yanıtını (OK, NOT_FOUND, ERROR...) istemciye yazar.
+     */
+    static void writeLine(OutputStream writer, String response) throws IOException {
+        writer.write(response.getBytes(StandardCharsets.US_ASCII));
+        writer.write('\n');
+        writer.flush();
+    }
+
+    /**
+     * Kodlanmış değer akışını çözerek parça parça sokete yazar.
+     */
+    private static void writeDecoded(OutputStream writer, StoredMessage header, InputStream encoded)
+            throws IOException {
+        try (InputStream in = ValueCodec.decodingStream(header.getCodec(), encoded)) {
+            in.transferTo(writer);
+        }
+        writer.write('\n');
+        writer.flush();
+    }
+
+    private boolean isSelf(NodeInfo node) {
+        return node.getHost().equals(self.getHost()) && node.getPort() == self.getPort();
+    }
+
+    /**
+     * SET komutu işleme
+     * 1. Yerleşim tolerance + 1 düğüm seçer (bu düğüm de olabilir); yüklü
+     *    düğümler, kaydın eski bir sürümünü tutmuyorlarsa atlanabilir
+     * 2. Uzak düğümlere kuyruk üzerinden gRPC ile gönderir, yerel kopyayı paralel yazar
+     * 3. Hangi düğümlerde saklandığını kaydeder
+     *
+     * Aynı id için sürüm alma ve kuyruklara ekleme id kilidi altında yapılır;
+     * üye kuyrukları FIFO olduğundan her replika yazımları sürüm sırasıyla alır.
+     * Onay beklemesi kilit dışındadır.
+     */
+    private void handleSet(Command cmd, OutputStream writer) throws IOException {
+        int messageId = cmd.getMessageId();
+        // Değer kilit dışında bir kez kodlanır; disk ve replikalar kodlanmış hali alır
+        Tracing.StageEvent stage = Tracing.stageBegin();
+        StoredMessage encodedValue = valueCodec.encode(messageId, cmd.getValue());
+        Tracing.stageEnd(stage, "encode", messageId);
+        int copies = toleranceConfig.getTolerance() + 1;
+
+        List<NodeInfo> holders;
+        boolean localHolder;
+        Map<NodeInfo, CompletableFuture<Boolean>> pending = new LinkedHashMap<>();
+        List<NodeInfo> queueFull = new ArrayList<>();
+        LocalCopy localCopy = null;
+
+        // Kilit bekleme, yerleşim, kuyruklara ekleme ve (yerleşimdeyse) yerel yazım
+        stage = Tracing.stageBegin();
+        ReentrantLock keyLock = keyLocks.lockFor(messageId);
+        keyLock.lock();
+        try {
+            StoredMessage.Builder versioned = encodedValue.toBuilder().setVersion(versionClock.next());
+            if (cmd.getTtlSeconds() > 0) {
+                // Bitiş zamanı değerle birlikte replikalara gider
+                versioned.setExpiresAt(System.currentTimeMillis() + cmd.getTtlSeconds() * 1000L);
+            }
+            StoredMessage encoded = versioned.build();
+
+            // Yerleşim: tüm aile içinden tolerance + 1 düğüm
+            List<NodeInfo> family = registry.snapshot();
+            holders = placement.replicasFor(messageId, family, copies, loadSlack,
+                    n -> loadTracker.isOverloaded(n, family) && !mayHoldCopy(n, messageId));
+            localHolder = holders.stream().anyMatch(this::isSelf);
+            List<NodeInfo> remoteHolders = new ArrayList<>();
+            for (NodeInfo n : holders) {
+                if (!isSelf(n)) {
+                    remoteHolders.add(n);
+                }
+            }
+
+            // Uzak düğümlerin kuyruklarına ekle; gönderim her üyenin kendi thread'inde yapılır
+            for (NodeInfo member : remoteHolders) {
+                CompletableFuture<Boolean> future = replicationManager.forMember(member).offer(encoded);
+                if (future != null) {
+                    pending.put(member, future);
+                } else {
+                    queueFull.add(member);
+                }
+            }
+
+            // Üye var ama hiçbir kuyruk kabul etmediyse yerel kopya da yazılmaz
+            if (remoteHolders.isEmpty() || !pending.isEmpty()) {
+                // Yerel kopya: bu düğüm yerleşimdeyse replikasyonla paralel yazılır.
+                // Değilse, ipucu gerektiğinde değerin kaynağı olsun diye ilk hatada yazılır.
+                localCopy = new LocalCopy(encoded, localHolder);
+                messageRegistry.registerMessage(messageId, List.of(), encoded.getExpiresAt());
+                if (localHolder) {
+                    localCopy.ensure();
+                }
+            }
+        } finally {
+            keyLock.unlock();
+            Tracing.stageEnd(stage, "place", messageId);
+        }
+
+        // Hiçbir kuyruk kabul etmediyse istemciyi yavaşlat
+        if (localCopy == null) {
+            writeLine(writer, "BUSY");
+            System.out.println("SET rejected: id=" + messageId + ", replication queues full");
+            return;
+        }
+
+        // Kuyruğu dolu olan üyeler ipucu ile sonradan tamamlanır
+        for (NodeInfo member : queueFull) {
+            localCopy.hintFor(member);
+        }
+
+        // OK kararı: en az iki kopya (aile tek düğümse bir) kalıcı olduğunda
+        int neededRemoteAcks = Math.max(0, Math.min(2, holders.size()) - (localHolder ? 1 : 0));
+        stage = Tracing.stageBegin();
+        boolean acked = awaitAcks(messageId, pending, neededRemoteAcks, localCopy);
+        Tracing.stageEnd(stage, "await-acks", messageId);
+
+        stage = Tracing.stageBegin();
+        if (acked) {
+            writeLine(writer, "OK");
+            System.out.println("SET successful: id=" + messageId +
+                    ", queued to " + pending.size() + " members" + (localHolder ? " + local" : ""));
+        } else {
+            writeLine(writer, "ERROR: Could not replicate to enough members");
+            System.out.println("SET failed: id=" + messageId + ", replication failed");
+        }
+        Tracing.stageEnd(stage, "reply", messageId);
+    }
+
+    /**
+     * Replika onaylarını bekler; needed kadar başarılı onayda true döner.
+     * Her başarılı onay (sonradan gelenler dahil) registry'ye işlenir,
+     * başarısız olanlar ipucu olarak kaydedilir.
+     */
+    private boolean awaitAcks(int messageId, Map<NodeInfo, CompletableFuture<Boolean>> pending, int needed,
+            LocalCopy localCopy) {
+        if (needed <= 0) {
+            registerCallbacks(messageId, pending, new CompletableFuture<>(), 0, localCopy);
+            return true;
+        }
+        if (pending.size() < needed) {
+            // Kuyruğu dolu üyeler ipucuyla tamamlanacak; OK daha az kopyayla verilir
+            System.err.println("SET id=" + messageId + ": degraded write, " + pending.size() + " of "
+                    + needed + " required replicas reachable, the rest are hinted");
+            needed = Math.max(1, pending.size());
+        }
+
+        CompletableFuture<Boolean> acked = new CompletableFuture<>();
+        registerCallbacks(messageId, pending, acked, needed, localCopy);
+
+        try {
+            return acked.get(replicationAckTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            System.err.println("SET id=" + messageId + ": not enough replicas acknowledged within "
+                    + replicationAckTimeoutMs + "ms");
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    private void registerCallbacks(int messageId, Map<NodeInfo, CompletableFuture<Boolean>> pending,
+            CompletableFuture<Boolean> acked, int needed, LocalCopy localCopy) {
+        AtomicInteger successes = new AtomicInteger();
+        AtomicInteger remaining = new AtomicInteger(pending.size());
+
+        for (Map.Entry<NodeInfo, CompletableFuture<Boolean>> entry : pending.entrySet()) {
+            NodeInfo member = entry.getKey();
+            entry.getValue().whenComplete((ok, error) -> {
+                if (Boolean.TRUE.equals(ok)) {
+                    messageRegistry.addLocation(messageId, member);
+                    if (successes.incrementAndGet() >= needed) {
+                        acked.complete(true);
+                    }
+                } else {
+                    localCopy.hintFor(member);
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    acked.complete(successes.get() >= needed);
+                }
+            });
+        }
+    }
+
+    /**
+     * Yerel kopyanın en fazla bir kez yazılmasını sağlar. Bu düğüm
+     * yerleşimde değilse kopya yedektir; ipuçları teslim edilince silinir.
+     */
+    private class LocalCopy {
+        private final StoredMessage message;
+        private final boolean holder;
+        private final AtomicBoolean written = new AtomicBoolean(false);
+
+        LocalCopy(StoredMessage message, boolean holder) {
+            this.message = message;
+            this.holder = holder;
+        }
+
+        /** Üyeye yazılamayan değeri yerel kopyadan ipucuyla tamamlatır. */
+        void hintFor(NodeInfo member) {
+            ensure();
+            if (holder) {
+                hintedHandoff.addHint(member, message.getId());
+            } else {
+                hintedHandoff.addFallbackHint(member, message.getId(), message.getVersion());
+            }
+        }
+
+        void ensure() {
+            if (written.compareAndSet(false, true)) {
+                // STALE: diskte daha yeni sürüm var, yine de değer burada
+                if (messageStore.set(message) != MessageStore.WriteResult.FAILED) {
+                    messageRegistry.addLocation(message.getId(), self);
+                }
+            }
+        }
+    }
+
+    /**
+     * GET komutu işleme
+     * 1. Önce kendi diskinde ara (yerleşim dışındaysa, yerleşimde daha yeni
+     *    sürüm yoksa)
+     * 2. Yoksa onaylı yerlerden, sonra yerleşimin gösterdiği düğümlerden gRPC ile al
+     * 3. Belirli oranda, replikaları arka planda karşılaştırıp onar
+     */
+    private void handleGet(Command cmd, OutputStream writer) throws IOException {
+        int messageId = cmd.getMessageId();
+        readRepair.maybeRepair(messageId);
+
+        // Yerel kopya yedekse ve yerleşimde daha yenisi varsa oradan okunur
+        NodeInfo newer = newerPlacementCopy(messageId);
+        if (newer != null && streamFromMember(newer, messageId, writer)) {
+            System.out.println("GET successful (from " + newer.getHost() + ":" + newer.getPort()
+                    + ", newer than local copy): id=" + messageId);
+            return;
+        }
+
+        // Önce kendi diskinde ara (değer parça parça çözülüp sokete akar)
+        Tracing.StageEvent stage = Tracing.stageBegin();
+        try (MessageStore.RecordReader reader = messageStore.openReader(messageId)) {
+            if (reader != null) {
+                writeDecoded(writer, reader.getHeader(), reader.getContent());
+                Tracing.stageEnd(stage, "local-read", messageId);
+                System.out.println("GET successful (local): id=" + messageId);
+                return;
+            }
+        }
+        Tracing.stageEnd(stage, "local-miss", messageId);
+
+        for (NodeInfo member : readCandidates(messageId)) {
+            // Üyeden okuma ve istemciye akıtma (RetrieveStream)
+            stage = Tracing.stageBegin();
+            boolean found = streamFromMember(member, messageId, writer);
+            Tracing.stageEnd(stage, "remote-read", messageId);
+            if (found) {
+                System.out.println(
+                        "GET successful (from " + member.getHost() + ":" + member.getPort() + "): id=" + messageId);
+                return;
+            }
+        }
+
+        stage = Tracing.stageBegin();
+        writeLine(writer, "NOT_FOUND");
+        Tracing.stageEnd(stage, "reply", messageId);
+        System.out.println("GET failed: id=" + messageId + " not found");
+    }
+
+    /**
+     * Okuma adayları: önce bu koordinatörün onay aldığı yerler, sonra
+     * yerleşimin sırası (üyelik değişimlerine karşı birkaç fazlası ile).
+     * Kendisi ve aileden çıkarılmış üyeler atlanır. Yerleşimden gelen
+     * adaylardan güncel Bloom filtresi kaydı dışlayanlar da atlanır; filtresi
+     * olmayan, eskimiş ya da boyut sınırı yüzünden gelmemiş üye sorulur.
+     * Tüm filtreler "yok" derse liste boştur ve GET diske gitmeden
+     * NOT_FOUND döner.
+     */
+    private List<NodeInfo> readCandidates(int messageId) {
+        List<NodeInfo> family = registry.snapshot();
+        int copies = toleranceConfig.getTolerance() + 1;
+        List<NodeInfo> ranked = placement.replicasFor(messageId, family, copies + getExtraCandidates);
+
+        Set<NodeInfo> candidates = new LinkedHashSet<>(messageRegistry.getMembers(messageId));
+        for (NodeInfo n : ranked) {
+            if (candidates.contains(n) || blooms.mightHave(n, messageId)) {
+                candidates.add(n);
+            }
+        }
+
+        List<NodeInfo> result = new ArrayList<>();
+        for (NodeInfo n : candidates) {
+            if (!isSelf(n) && registry.contains(n)) {
+                result.add(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bu düğüm kaydın yerleşiminde değilse yerel kopya bir SET'in yedeğidir
+     * ve o zamandan beri eskimiş olabilir. Yerleşimdeki düğümlere Stat
+     * sorulur, yerel sürümden yeni sürümü tutan düğüm döner. Yerel kopya
+     * yoksa, bu düğüm yerleşimdeyse ya da daha yenisi yoksa null.
+     */
+    private NodeInfo newerPlacementCopy(int messageId) {
+        long local;
+        try {
+            local = messageStore.versionOf(messageId);
+        } catch (IOException e) {
+            return null;
+        }
+        if (local < 0) {
+            return null;
+        }
+        List<NodeInfo> window = placement.replicasFor(messageId, registry.snapshot(),
+                toleranceConfig.getTolerance() + 1 + loadSlack);
+        if (window.stream().anyMatch(this::isSelf)) {
+            return null;
+        }
+
+        NodeInfo newest = null;
+        long newestVersion = local;
+        for (NodeInfo n : window) {
+            try {
+                RecordStat stat = stat(n, messageId);
+                if (stat.getFound() && stat.getVersion() > newestVersion) {
+                    newest = n;
+                    newestVersion = stat.getVersion();
+                }
+            } catch (RuntimeException e) {
+                // Ulaşılamayan düğüm karşılaştırmaya katılmaz
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Düğümde kaydın bir sürümü olabilir mi. Olabilecek düğüm yüklü olsa da
+     * atlanmaz; yoksa eski sürüm orada kalır ve okunabilir. Bloom filtresi
+     * geride olabildiğinden "yok" cevabına güvenilmez, düğüme Stat sorulur;
+     * cevap alınamazsa kopya olabilir sayılır. Stat sadece yüklü düğümler
+     * için, atlanmadan önce yapılır.
+     */
+    private boolean mayHoldCopy(NodeInfo node, int messageId) {
+        if (isSelf(node)) {
+            try {
+                return messageStore.versionOf(messageId) >= 0;
+            } catch (IOException e) {
+                return true;
+            }
+        }
+        if (messageRegistry.getMembers(messageId).contains(node) || blooms.mightHave(node, messageId)) {
+            return true;
+        }
+        try {
+            return stat(node, messageId).getFound();
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    private RecordStat stat(NodeInfo node, int messageId) {
+        return StorageServiceGrpc.newBlockingStub(replicationManager.channel(node))
+                .withDeadlineAfter(STAT_DEADLINE_MS, TimeUnit.MILLISECONDS)
+                .stat(MessageId.newBuilder().setId(messageId).build());
+    }
+
+    /**
+     * BROADCAST komutu işleme: metin aileye ağaç üzerinden gönderilmek
+     * üzere kuyruğa girer. Cevap "OK <seq>", kuyruk doluysa BUSY.
+     */
+    private void handleBroadcast(Command cmd, OutputStream writer) throws IOException {
+        long seq = broadcaster.broadcast(cmd.getValue().toStringUtf8());
+        writeLine(writer, seq < 0 ? "BUSY" : "OK " + seq);
+    }
+
+    /**
+     * SCAN komutu işleme
+     * Kendi kayıtları ile tüm üyelerin Scan akışları id sırasına göre
+     * birleştirilir. Aynı id birden fazla replikadan gelirse en yüksek sürüm
+     * yazılır. Her satır "<id> <değer>", sonda "END <adet>".
+     * Limit dolunca üye akışları iptal edilir.
+     */
+    private void handleScan(Command cmd, OutputStream writer) throws IOException {
+        int from = cmd.getMessageId();
+        int to = cmd.getRangeEnd();
+        int limit = cmd.getLimit() < 0 ? scanDefaultLimit : Math.min(cmd.getLimit(), scanMaxLimit);
+        ScanRequest request = ScanRequest.newBuilder().setFrom(from).setTo(to).setLimit(limit).build();
+
+        Context.CancellableContext scanContext = Context.current().withCancellation();
+        Context previous = scanContext.attach();
+        int written = 0;
+        try {
+            List<Iterator<StoredMessage>> sources = new ArrayList<>();
+            sources.add(messageStore.scan(from, to));
+            for (NodeInfo member : registry.snapshot()) {
+                if (!isSelf(member)) {
+                    sources.add(scanMember(member, request));
+                }
+            }
+
+            SortedMerge<StoredMessage> merged =
+                    new SortedMerge<>(sources, Comparator.comparingInt(StoredMessage::getId));
+            StoredMessage pendingRecord = merged.hasNext() ? merged.next() : null;
+            while (pendingRecord != null && written < limit) {
+                // Aynı id'nin replikaları ardışık gelir; en yeni sürüm kalır
+                StoredMessage newest = pendingRecord;
+                pendingRecord = null;
+                while (merged.hasNext()) {
+                    StoredMessage candidate = merged.next();
+                    if (candidate.getId() != newest.getId()) {
+                        pendingRecord = candidate;
+                        break;
+                    }
+                    if (candidate.getVersion() > newest.getVersion()) {
+                        newest = candidate;
+                    }
+                }
+
+                writer.write(Integer.toString(newest.getId()).getBytes(StandardCharsets.US_ASCII));
+                writer.write(' ');
+                ValueCodec.decode(newest).writeTo(writer);
+                writer.write('\n');
+                written++;
+            }
+            writeLine(writer, "END " + written);
+        } finally {
+            scanContext.detach(previous);
+            scanContext.cancel(null);
+        }
+        System.out.println("SCAN [" + from + ", " + to + "]: " + written + " records");
+    }
+
+    /**
+     * Üyenin Scan akışı. Üye ulaşılamazsa ya da akış koparsa o üyenin
+     * kalan kayıtları atlanır (diğer replikalar tamamlar).
+     */
+    private Iterator<StoredMessage> scanMember(NodeInfo member, ScanRequest request) {
+        Iterator<StoredMessage> stream = StorageServiceGrpc.newBlockingStub(replicationManager.channel(member))
+                .scan(request);
+        return new Iterator<StoredMessage>() {
+            private boolean failed = false;
+
+            @Override
+            public boolean hasNext() {
+                if (failed) {
+                    return false;
+                }
+                try {
+                    return stream.hasNext();
+                } catch (RuntimeException e) {
+                    failed = true;
+                    System.err.printf("Scan from %s:%d failed: %s%n",
+                            member.getHost(), member.getPort(), e.getMessage());
+                    return false;
+                }
+            }
+
+            @Override
+            public StoredMessage next() {
+                return stream.next();
+            }
+        };
+    }
+
+    /**
+     * Bir üyeden RetrieveStream ile mesajı alıp parça parça istemciye yazar.
+     * Üye ulaşılamazsa veya mesaj yoksa false döner; yazım başladıktan sonra
+     * akış koparsa istemci bağlantısı kapatılır (IOException).
+     */
+    private boolean streamFromMember(NodeInfo member, int messageId, OutputStream writer)
+            throws IOException {
+        // Üyenin kalıcı kanalı kullanılır
+        StorageServiceGrpc.StorageServiceBlockingStub stub =
+                StorageServiceGrpc.newBlockingStub(replicationManager.channel(member));
+
+        ChunkedTransfer.RemoteValue remote;
+        try {
+            remote = ChunkedTransfer.retrieveStream(stub, messageId);
+        } catch (Exception e) {
+            System.err.printf("Failed to retrieve from %s:%d: %s%n",
+                    member.getHost(), member.getPort(), e.getMessage());
+            return false;
+        }
+        if (remote == null) {
+            return false;
+        }
+
+        writeDecoded(writer, remote.getHeader(), remote.getContent());
+        return true;
+    }
+}
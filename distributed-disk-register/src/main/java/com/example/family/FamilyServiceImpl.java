@@ -4,17 +4,33 @@ import family.Empty;
 import family.FamilyServiceGrpc;
 import family.FamilyView;
 import family.NodeInfo;
+import family.ChatBatch;
 import family.ChatMessage;
+import family.LeaseReply;
+import family.LeaseRequest;
+import family.LocationBatch;
+import io.grpc.Status;
 import io.grpc.stub.StreamObserver;
 
 public class FamilyServiceImpl extends FamilyServiceGrpc.FamilyServiceImplBase {
 
     private final NodeRegistry registry;
     private final NodeInfo self;
+    private final LoadTracker loadTracker;
+    private final Broadcaster broadcaster;
+    private final ChatInbox inbox;
+    private final LeaderLease lease;
+    private final LocationMirror locationMirror;
 
-    public FamilyServiceImpl(NodeRegistry registry, NodeInfo self) {
+    public FamilyServiceImpl(NodeRegistry registry, NodeInfo self, LoadTracker loadTracker,
+            Broadcaster broadcaster, ChatInbox inbox, LeaderLease lease, LocationMirror locationMirror) {
         this.registry = registry;
         this.self = self;
+        this.loadTracker = loadTracker;
+        this.broadcaster = broadcaster;
+        this.inbox = inbox;
+        this.lease = lease;
+        this.locationMirror = locationMirror;
         this.registry.add(self);
     }
 
@@ -22,8 +38,10 @@ public class FamilyServiceImpl extends FamilyServiceGrpc.FamilyServiceImplBase {
     public void join(NodeInfo request, StreamObserver<FamilyView> responseObserver) {
         registry.add(request);
 
+        // Yük bilgisi mevcut trafiğe eklenir, ayrı bir çağrı gerekmez
         FamilyView view = FamilyView.newBuilder()
                 .addAllMembers(registry.snapshot())
+                .setLoad(loadTracker.localLoad())
                 .build();
 
         responseObserver.onNext(view);
@@ -34,6 +52,7 @@ public class FamilyServiceImpl extends FamilyServiceGrpc.FamilyServiceImplBase {
     public void getFamily(Empty request, StreamObserver<FamilyView> responseObserver) {
         FamilyView view = FamilyView.newBuilder()
                 .addAllMembers(registry.snapshot())
+                .setLoad(loadTracker.localLoad())
                 .build();
 
         responseObserver.onNext(view);
@@ -43,13 +62,50 @@ public class FamilyServiceImpl extends FamilyServiceGrpc.FamilyServiceImplBase {
     // Diğer düğümlerden broadcast mesajı geldiğinde
     @Override
     public void receiveChat(ChatMessage request, StreamObserver<Empty> responseObserver) {
-        System.out.println("💬 Incoming message:");
-        System.out.println("  From: " + request.getFromHost() + ":" + request.getFromPort());
-        System.out.println("  Text: " + request.getText());
-        System.out.println("  Timestamp: " + request.getTimestamp());
-        System.out.println("--------------------------------------");
+        // Yazdırma ChatInbox'ın thread'inde yapılır, cevap beklemez
+        inbox.receive(request);
 
         responseObserver.onNext(Empty.newBuilder().build());
         responseObserver.onCompleted();
     }
+
+    // Üst düğümden gelen broadcast partileri (kalıcı akış)
+    @Override
+    public StreamObserver<ChatBatch> relayChat(StreamObserver<Empty> responseObserver) {
+        return new StreamObserver<ChatBatch>() {
+            @Override
+            public void onNext(ChatBatch batch) {
+                broadcaster.onBatch(batch);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                // Gönderen akışı kapattı ya da düştü; bir sonraki partide yenisini açar
+            }
+
+            @Override
+            public void onCompleted() {
+                responseObserver.onNext(Empty.newBuilder().build());
+                responseObserver.onCompleted();
+            }
+        };
+    }
+
+    // Adaylık ya da liderin kira yenilemesi
+    @Override
+    public void acquireLease(LeaseRequest request, StreamObserver<LeaseReply> responseObserver) {
+        responseObserver.onNext(lease.onRequest(request));
+        responseObserver.onCompleted();
+    }
+
+    // Yedek lider konum kaydını izler; sadece lider akış verir
+    @Override
+    public void followLocations(NodeInfo request, StreamObserver<LocationBatch> responseObserver) {
+        if (!lease.isLeader()) {
+            responseObserver.onError(Status.FAILED_PRECONDITION
+                    .withDescription("not the leader").asRuntimeException());
+            return;
+        }
+        locationMirror.serve(request, responseObserver);
+    }
 }
@@ -0,0 +1,191 @@
+package com.example.family;
+
+import family.FamilyServiceGrpc;
+import family.StorageServiceGrpc;
+import io.grpc.BindableService;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerBuilder;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Düğümün gRPC sunucusunu kurar.
+ *
+ * GRPC_TUNED=true iken (varsayılan):
+ * - Netty'nin kabul ve G/Ç thread'leri ayrı, boyutu ayarlanabilir gruplardır;
+ *   bunlar sadece ağ işi yapar.
+ * - Çağrılar iki sabit boyutlu havuza ayrılır: "control" (FamilyService,
+ *   Stat, GetBloom gibi küçük çağrılar) ve "storage" (Store, Retrieve,
+ *   akışlar; disk G/Ç burada yapılır). Büyük yazımlar ping'lerin önünü tıkamaz.
+ * - Yük, yeni çağrı kabul edilirken kesilir: gideceği havuzda
+ *   GRPC_*_QUEUE kadar iş bekliyorsa çağrı, havuzun kuyruğuna girmeden
+ *   ağ thread'inde RESOURCE_EXHAUSTED ile kapanır.
+ *   Kabul edilmiş çağrıların (akışların) sonraki işleri hiç reddedilmez;
+ *   yarıda kalan bir akış, onu başlatan çağrıdan daha pahalıdır.
+ * - Akış kontrolü penceresi, en büyük gelen mesaj ve keepalive ayarlanabilir.
+ *
+ * GRPC_TUNED=false eski davranıştır (ServerBuilder varsayılanları, tek
+ * sınırsız havuz); karşılaştırma için tutulur.
+ */
+public class GrpcServerFactory {
+
+   // Disk işi yapmayan, hızlı cevaplanan StorageService çağrıları
+   private static final Set<String> CONTROL_METHODS = Set.of(
+         StorageServiceGrpc.getStatMethod().getFullMethodName(),
+         StorageServiceGrpc.getGetBloomMethod().getFullMethodName());
+
+   // Reddedilecek çağrının başlığındaki işaret; değeri havuzun adıdır
+   private static final Metadata.Key<String> SHED_KEY =
+         Metadata.Key.of("x-family-shed", Metadata.ASCII_STRING_MARSHALLER);
+
+   private static final Executor DIRECT = Runnable::run;
+
+   private GrpcServerFactory() {
+   }
+
+   public static Server start(int port, NodeConfig config, BindableService... services) throws IOException {
+      if (!config.getBoolean("GRPC_TUNED", true)) {
+         ServerBuilder<?> builder = ServerBuilder.forPort(port).intercept(Tracing.serverInterceptor());
+         for (BindableService s : services) {
+            builder.addService(s);
+         }
+         return builder.build().start();
+      }
+
+      int cores = Runtime.getRuntime().availableProcessors();
+      int workerThreads = config.getInt("GRPC_WORKER_THREADS", 0);
+      EventLoopGroup boss = new NioEventLoopGroup(1, new DefaultThreadFactory("grpc-boss", true));
+      EventLoopGroup workers = new NioEventLoopGroup(workerThreads > 0 ? workerThreads : cores,
+            new DefaultThreadFactory("grpc-worker", true));
+
+      ThreadPoolExecutor control = fixedPool("grpc-control", config.getInt("GRPC_CONTROL_THREADS", 2));
+      ThreadPoolExecutor storage = fixedPool("grpc-storage", config.getInt("GRPC_STORAGE_THREADS", cores * 2));
+      LoadShedder shedder = new LoadShedder(control, config.getInt("GRPC_CONTROL_QUEUE", 1024),
+            storage, config.getInt("GRPC_STORAGE_QUEUE", 1024));
+
+      NettyServerBuilder builder = NettyServerBuilder.forPort(port)
+            .bossEventLoopGroup(boss)
+            .workerEventLoopGroup(workers)
+            .channelType(NioServerSocketChannel.class)
+            // Metot araması ve havuz seçimi ağ thread'inde yapılır; dolu
+            // havuzun kuyruğunu beklemez
+            .executor(DIRECT)
+            .callExecutor(shedder)
+            .flowControlWindow(config.getInt("GRPC_FLOW_CONTROL_WINDOW", 1024 * 1024))
+            .maxInboundMessageSize(config.getInt("GRPC_MAX_INBOUND_BYTES", 16 * 1024 * 1024))
+            .keepAliveTime(config.getLong("GRPC_KEEPALIVE_MS", 30_000), TimeUnit.MILLISECONDS)
+            .keepAliveTimeout(config.getLong("GRPC_KEEPALIVE_TIMEOUT_MS", 10_000), TimeUnit.MILLISECONDS)
+            .permitKeepAliveTime(config.getLong("GRPC_PERMIT_KEEPALIVE_MS", 10_000), TimeUnit.MILLISECONDS)
+            .permitKeepAliveWithoutCalls(true)
+            // Liderden gelen iz numarası üyedeki olaylara taşınır
+            .intercept(Tracing.serverInterceptor())
+            // Son eklenen önce çalışır: reddedilen çağrı izlenmez
+            .intercept(shedder);
+      for (BindableService s : services) {
+         builder.addService(s);
+      }
+
+      Server server = builder.build().start();
+      // Sunucu kapanınca ağ grupları ve havuzlar da kapanır (aynı JVM'de
+      // birden fazla düğüm açılıp kapatılabilsin)
+      Thread cleanup = new Thread(() -> {
+         try {
+            server.awaitTermination();
+         } catch (InterruptedException e) {
+            return;
+         }
+         boss.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+         workers.shutdownGracefully(0, 1, TimeUnit.SECONDS);
+         control.shutdownNow();
+         storage.shutdownNow();
+      }, "grpc-cleanup-" + port);
+      cleanup.setDaemon(true);
+      cleanup.start();
+      System.out.printf("gRPC execution: %d event loop threads, control pool %d, storage pool %d%n",
+            workerThreads > 0 ? workerThreads : cores, config.getInt("GRPC_CONTROL_THREADS", 2),
+            config.getInt("GRPC_STORAGE_THREADS", cores * 2));
+      return server;
+   }
+
+   private static boolean isControl(MethodDescriptor<?, ?> method) {
+      return FamilyServiceGrpc.SERVICE_NAME.equals(method.getServiceName())
+            || CONTROL_METHODS.contains(method.getFullMethodName());
+   }
+
+   /**
+    * Sabit boyutlu havuz. Kuyruğu sınırsızdır: başlamış bir çağrının
+    * mesaj ve onReady işleri reddedilemez. Sınır LoadShedder'dadır.
+    */
+   private static ThreadPoolExecutor fixedPool(String name, int threads) {
+      AtomicInteger counter = new AtomicInteger();
+      return new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(), r -> {
+               Thread t = new Thread(r, name + "-" + counter.incrementAndGet());
+               t.setDaemon(true);
+               return t;
+            });
+   }
+
+   /**
+    * Çağrının havuzunu seçer; havuzda sınır kadar iş bekliyorsa çağrıyı
+    * işaretleyip doğrudan yürütücüye verir ve interceptor onu hemen
+    * RESOURCE_EXHAUSTED ile kapatır. İstemci bunu diğer hatalar gibi ele
+    * alır (replikasyon ipucuna düşer, GET sıradaki replikaya geçer).
+    */
+   private static class LoadShedder implements ServerCallExecutorSupplier, ServerInterceptor {
+      private final ThreadPoolExecutor control;
+      private final int controlLimit;
+      private final ThreadPoolExecutor storage;
+      private final int storageLimit;
+
+      LoadShedder(ThreadPoolExecutor control, int controlLimit, ThreadPoolExecutor storage, int storageLimit) {
+         this.control = control;
+         this.controlLimit = controlLimit;
+         this.storage = storage;
+         this.storageLimit = storageLimit;
+      }
+
+      @Override
+      public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata headers) {
+         // İstemcinin gönderdiği işarete güvenilmez
+         headers.discardAll(SHED_KEY);
+         boolean isControl = isControl(call.getMethodDescriptor());
+         ThreadPoolExecutor pool = isControl ? control : storage;
+         if (pool.getQueue().size() >= (isControl ? controlLimit : storageLimit)) {
+            headers.put(SHED_KEY, isControl ? "control" : "storage");
+            return DIRECT;
+         }
+         return pool;
+      }
+
+      @Override
+      public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+            Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+         String busyPool = headers.get(SHED_KEY);
+         if (busyPool != null) {
+            call.close(Status.RESOURCE_EXHAUSTED.withDescription(busyPool + " pool busy"), new Metadata());
+            return new ServerCall.Listener<ReqT>() {
+            };
+         }
+         return next.startCall(call, headers);
+      }
+   }
+}
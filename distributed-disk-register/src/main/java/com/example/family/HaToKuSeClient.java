@@ -7,14 +7,21 @@ import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Locale;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
 
 /**
  * HaToKuSe TCP Client (text protocol)
  *
- * Sends SET/GET commands over a persistent TCP connection.
+ * Sends SET/GET commands over persistent TCP connections.
  * Measures per-request round-trip time (from send to response read).
+ * With --connections=N, N worker threads each hold one connection,
+ * spread round-robin across --endpoints (every node can coordinate).
+ * run() returns throughput and latency percentiles so the same workload can
+ * be driven from ClusterHarness.
  *
  * Protocol examples:
  * SET 34 ISTANBUL\n
@@ -30,7 +37,11 @@ public class HaToKuSeClient {
    private static final class Config {
       String host = "127.0.0.1";
       int port = 6666;
+      // Any node can coordinate; --endpoints=h:p,h:p spreads connections over them
+      List<InetSocketAddress> endpoints = new ArrayList<>();
+      int connections = 1;
       int durationMinutes = 30;
+      int durationSeconds = 0; // > 0 overrides durationMinutes
 
       // Workload
       double setRatio = 0.80; // 0..1
@@ -43,7 +54,7 @@ public class HaToKuSeClient {
       int largePayloadBytes = 1_000_000; // 1MB
       int largeEveryN = 200; // every N SETs send a large payload
 
-      // Output
+      // Output (--csv=none disables the per-request CSV)
       String csvPath = "hatokuse_client_metrics.csv";
       boolean printEach = false;
 
@@ -55,40 +66,125 @@ public class HaToKuSeClient {
    }
 
    public static void main(String[] args) throws Exception {
+      Result result = run(args);
+      result.print(System.out);
+   }
+
+   /**
+    * Runs the workload until the configured duration ends and returns the totals.
+    */
+   public static Result run(String[] args) throws Exception {
       Config cfg = parseArgs(args);
 
-      long endAt = System.nanoTime() + (long) cfg.durationMinutes * 60L * 1_000_000_000L;
-      Random rnd = new Random();
+      long durationSeconds = cfg.durationSeconds > 0 ? cfg.durationSeconds : cfg.durationMinutes * 60L;
+      long startedAt = System.nanoTime();
+      long endAt = startedAt + TimeUnit.SECONDS.toNanos(durationSeconds);
 
       System.out.println("HaToKuSeClient starting...");
-      System.out.printf("Target: %s:%d | duration=%d min | setRatio=%.2f | keySpace=%d%n",
-            cfg.host, cfg.port, cfg.durationMinutes, cfg.setRatio, cfg.keySpace);
+      System.out.printf("Targets: %s | connections=%d | duration=%d s | setRatio=%.2f | keySpace=%d%n",
+            cfg.endpoints, cfg.connections, durationSeconds, cfg.setRatio, cfg.keySpace);
       System.out.printf("Payload: min=%dB max=%dB | large=%dB every %d SETs%n",
             cfg.minPayloadBytes, cfg.maxPayloadBytes, cfg.largePayloadBytes, cfg.largeEveryN);
-      System.out.printf("CSV: %s%n", cfg.csvPath);
+      System.out.printf("CSV: %s%n", cfg.csvPath == null ? "disabled" : cfg.csvPath);
 
       // CSV header
-      try (PrintWriter csv = new PrintWriter(
-            new OutputStreamWriter(new FileOutputStream(cfg.csvPath, false), StandardCharsets.UTF_8))) {
-         csv.println("ts,op,key,payload_bytes,ok,rtt_ms,response");
+      if (cfg.csvPath != null) {
+         try (PrintWriter csv = new PrintWriter(
+               new OutputStreamWriter(new FileOutputStream(cfg.csvPath, false), StandardCharsets.UTF_8))) {
+            csv.println("ts,op,key,payload_bytes,ok,rtt_ms,response");
+         }
       }
 
-      long opCount = 0;
-      long setCount = 0;
-      long okCount = 0;
-      long errCount = 0;
+      // One connection per worker thread; workers are spread across endpoints
+      Stats stats = new Stats();
+      List<Thread> workers = new ArrayList<>();
+      for (int i = 0; i < cfg.connections; i++) {
+         int workerIndex = i;
+         Thread t = new Thread(() -> {
+            try {
+               runWorker(cfg, workerIndex, endAt, stats);
+            } catch (Exception e) {
+               System.err.printf("worker %d stopped: %s%n", workerIndex, safeMsg(e.getMessage()));
+            }
+         }, "client-" + i);
+         t.start();
+         workers.add(t);
+      }
+      for (Thread t : workers) {
+         t.join();
+      }
 
-      // Simple stats
-      long rttSum = 0;
-      long rttMin = Long.MAX_VALUE;
-      long rttMax = Long.MIN_VALUE;
+      System.out.println("\nDone.");
+      stats.printTotals();
+      if (cfg.csvPath != null) {
+         System.out.printf("CSV written: %s%n", cfg.csvPath);
+      }
+      return stats.result((System.nanoTime() - startedAt) / 1e9);
+   }
 
+   /**
+    * Totals of one run. Latency percentiles cover successful requests only;
+    * rejected or failed requests are counted in errors.
+    */
+   public static final class Result {
+      public final long ops;
+      public final long errors;
+      public final double seconds;
+      public final LatencyHistogram setLatency;
+      public final LatencyHistogram getLatency;
+
+      Result(long ops, long errors, double seconds, LatencyHistogram setLatency, LatencyHistogram getLatency) {
+         this.ops = ops;
+         this.errors = errors;
+         this.seconds = seconds;
+         this.setLatency = setLatency;
+         this.getLatency = getLatency;
+      }
+
+      /** Successful requests per second. */
+      public double throughput() {
+         return seconds <= 0 ? 0 : (ops - errors) / seconds;
+      }
+
+      public double errorRate() {
+         return ops == 0 ? 0 : (double) errors / ops;
+      }
+
+      public void print(PrintStream out) {
+         out.printf("Throughput: %.1f ok ops/s over %.1f s (%d ops, %d errors)%n",
+               throughput(), seconds, ops, errors);
+         printLatency(out, "SET", setLatency);
+         printLatency(out, "GET", getLatency);
+      }
+
+      private static void printLatency(PrintStream out, String op, LatencyHistogram h) {
+         out.printf("%s latency(us): p50=%d p95=%d p99=%d max=%d (n=%d)%n", op,
+               h.percentile(50), h.percentile(95), h.percentile(99), h.max(), h.count());
+      }
+   }
+
+   private static void runWorker(Config cfg, int workerIndex, long endAt, Stats stats) throws Exception {
+      Random rnd = new Random();
+      long setCount = 0;
+
+      // Worker i starts at endpoint i and moves to the next one on reconnect
+      int endpointIndex = workerIndex % cfg.endpoints.size();
       Connection conn = null;
       try {
-         conn = Connection.connect(cfg);
-
          while (System.nanoTime() < endAt) {
-            opCount++;
+            if (conn == null) {
+               try {
+                  conn = Connection.connect(cfg, cfg.endpoints.get(endpointIndex));
+               } catch (IOException e) {
+                  // Endpoint is down (e.g. a killed member); try the next one
+                  if (!cfg.reconnectOnFailure) {
+                     throw e;
+                  }
+                  endpointIndex = (endpointIndex + 1) % cfg.endpoints.size();
+                  Thread.sleep(cfg.reconnectBackoffMs);
+                  continue;
+               }
+            }
 
             boolean doSet = rnd.nextDouble() < cfg.setRatio;
             int key = rnd.nextInt(Math.max(1, cfg.keySpace));
@@ -121,17 +217,11 @@ public class HaToKuSeClient {
 
             try {
                response = conn.sendAndReadLine(request);
-               long rttMs = (System.nanoTime() - startNs) / 1_000_000L;
-
-               ok = response != null && response.startsWith("OK");
-               if (ok)
-                  okCount++;
-               else
-                  errCount++;
+               long rttNs = System.nanoTime() - startNs;
+               long rttMs = rttNs / 1_000_000L;
 
-               rttSum += rttMs;
-               rttMin = Math.min(rttMin, rttMs);
-               rttMax = Math.max(rttMax, rttMs);
+               ok = isOk(doSet, response);
+               stats.record(doSet, ok, rttNs);
 
                appendCsv(cfg.csvPath, ts, op, key, payloadBytes, ok, rttMs, response);
 
@@ -142,8 +232,9 @@ public class HaToKuSeClient {
 
             } catch (IOException e) {
                // Record as ERROR and optionally reconnect
-               long rttMs = (System.nanoTime() - startNs) / 1_000_000L;
-               errCount++;
+               long rttNs = System.nanoTime() - startNs;
+               long rttMs = rttNs / 1_000_000L;
+               stats.record(doSet, false, rttNs);
                String err = "ERROR " + e.getClass().getSimpleName() + ":" + safeMsg(e.getMessage());
                appendCsv(cfg.csvPath, ts, op, key, payloadBytes, false, rttMs, err);
                if (cfg.printEach) {
@@ -153,8 +244,9 @@ public class HaToKuSeClient {
 
                if (cfg.reconnectOnFailure) {
                   closeQuietly(conn);
+                  conn = null;
                   Thread.sleep(cfg.reconnectBackoffMs);
-                  conn = Connection.connect(cfg);
+                  endpointIndex = (endpointIndex + 1) % cfg.endpoints.size();
                } else {
                   throw e;
                }
@@ -163,33 +255,86 @@ public class HaToKuSeClient {
             if (cfg.sleepMsBetweenOps > 0) {
                Thread.sleep(cfg.sleepMsBetweenOps);
             }
-
-            // Periodic summary every 1000 ops
-            if (opCount % 1000 == 0) {
-               long avg = (opCount == 0) ? 0 : (rttSum / Math.max(1, (okCount + errCount)));
-               System.out.printf("ops=%d (SET=%d) OK=%d ERROR=%d | rtt(ms) min=%d avg=%d max=%d%n",
-                     opCount, setCount, okCount, errCount,
-                     (rttMin == Long.MAX_VALUE ? 0 : rttMin), avg,
-                     (rttMax == Long.MIN_VALUE ? 0 : rttMax));
-            }
          }
 
       } finally {
          closeQuietly(conn);
       }
+   }
 
-      long total = okCount + errCount;
-      long avg = total == 0 ? 0 : (rttSum / total);
+   /**
+    * SET succeeds with OK; GET returns the value itself or NOT_FOUND.
+    * Rejections (BUSY, RATE_LIMITED, OVERLOADED) and ERROR count as failures.
+    */
+   private static boolean isOk(boolean isSet, String response) {
+      if (response == null) {
+         return false;
+      }
+      if (isSet) {
+         return response.startsWith("OK");
+      }
+      return !(response.startsWith("ERROR") || response.equals("BUSY")
+            || response.equals("RATE_LIMITED") || response.equals("OVERLOADED"));
+   }
 
-      System.out.println("\nDone.");
-      System.out.printf("Total ops=%d | SET=%d | OK=%d | ERROR=%d%n", opCount, setCount, okCount, errCount);
-      System.out.printf("RTT(ms): min=%d avg=%d max=%d%n",
-            (rttMin == Long.MAX_VALUE ? 0 : rttMin), avg, (rttMax == Long.MIN_VALUE ? 0 : rttMax));
-      System.out.printf("CSV written: %s%n", cfg.csvPath);
+   /** Counters shared by all worker threads. */
+   private static final class Stats {
+      private long opCount = 0;
+      private long setCount = 0;
+      private long okCount = 0;
+      private long errCount = 0;
+
+      // Simple stats
+      private long rttSum = 0;
+      private long rttMin = Long.MAX_VALUE;
+      private long rttMax = Long.MIN_VALUE;
+
+      // Successful requests only, in microseconds
+      private final LatencyHistogram setLatency = new LatencyHistogram();
+      private final LatencyHistogram getLatency = new LatencyHistogram();
+
+      synchronized void record(boolean isSet, boolean ok, long rttNs) {
+         long rttMs = rttNs / 1_000_000L;
+         if (ok) {
+            (isSet ? setLatency : getLatency).record(rttNs / 1_000L);
+         }
+         opCount++;
+         if (isSet)
+            setCount++;
+         if (ok)
+            okCount++;
+         else
+            errCount++;
+
+         rttSum += rttMs;
+         rttMin = Math.min(rttMin, rttMs);
+         rttMax = Math.max(rttMax, rttMs);
+
+         // Periodic summary every 1000 ops
+         if (opCount % 1000 == 0) {
+            System.out.printf("ops=%d (SET=%d) OK=%d ERROR=%d | rtt(ms) min=%d avg=%d max=%d%n",
+                  opCount, setCount, okCount, errCount,
+                  (rttMin == Long.MAX_VALUE ? 0 : rttMin), rttSum / opCount,
+                  (rttMax == Long.MIN_VALUE ? 0 : rttMax));
+         }
+      }
+
+      synchronized void printTotals() {
+         long avg = opCount == 0 ? 0 : (rttSum / opCount);
+         System.out.printf("Total ops=%d | SET=%d | OK=%d | ERROR=%d%n", opCount, setCount, okCount, errCount);
+         System.out.printf("RTT(ms): min=%d avg=%d max=%d%n",
+               (rttMin == Long.MAX_VALUE ? 0 : rttMin), avg, (rttMax == Long.MIN_VALUE ? 0 : rttMax));
+      }
+
+      synchronized Result result(double seconds) {
+         return new Result(opCount, errCount, seconds, setLatency, getLatency);
+      }
    }
 
-   private static void appendCsv(String csvPath, String ts, String op, int key, int payloadBytes,
+   private static synchronized void appendCsv(String csvPath, String ts, String op, int key, int payloadBytes,
          boolean ok, long rttMs, String response) {
+      if (csvPath == null)
+         return;
       // Append per line (simple + safe). If you want max throughput, keep an open
       // writer.
       try (PrintWriter csv = new PrintWriter(
@@ -263,9 +408,9 @@ public class HaToKuSeClient {
          this.in = in;
       }
 
-      static Connection connect(Config cfg) throws IOException {
+      static Connection connect(Config cfg, InetSocketAddress endpoint) throws IOException {
          Socket s = new Socket();
-         s.connect(new InetSocketAddress(cfg.host, cfg.port), cfg.connectTimeoutMs);
+         s.connect(endpoint, cfg.connectTimeoutMs);
          s.setSoTimeout(cfg.readTimeoutMs);
          BufferedWriter out = new BufferedWriter(new OutputStreamWriter(s.getOutputStream(), StandardCharsets.UTF_8));
          BufferedReader in = new BufferedReader(new InputStreamReader(s.getInputStream(), StandardCharsets.UTF_8));
@@ -303,6 +448,12 @@ public class HaToKuSeClient {
             c.host = a.substring("--host=".length());
          else if (a.startsWith("--port="))
             c.port = Integer.parseInt(a.substring("--port=".length()));
+         else if (a.startsWith("--endpoints="))
+            c.endpoints = parseEndpoints(a.substring("--endpoints=".length()));
+         else if (a.startsWith("--connections="))
+            c.connections = Integer.parseInt(a.substring("--connections=".length()));
+         else if (a.startsWith("--durationSeconds="))
+            c.durationSeconds = Integer.parseInt(a.substring("--durationSeconds=".length()));
          else if (a.startsWith("--durationMinutes="))
             c.durationMinutes = Integer.parseInt(a.substring("--durationMinutes=".length()));
          else if (a.startsWith("--setRatio="))
@@ -320,7 +471,7 @@ public class HaToKuSeClient {
          else if (a.startsWith("--largeEveryN="))
             c.largeEveryN = Integer.parseInt(a.substring("--largeEveryN=".length()));
          else if (a.startsWith("--csv="))
-            c.csvPath = a.substring("--csv=".length());
+            c.csvPath = a.substring("--csv=".length()).equals("none") ? null : a.substring("--csv=".length());
          else if (a.equals("--printEach"))
             c.printEach = true;
          else if (a.startsWith("--connectTimeoutMs="))
@@ -341,6 +492,22 @@ public class HaToKuSeClient {
          c.durationMinutes = 1;
       if (c.keySpace < 1)
          c.keySpace = 1;
+      if (c.connections < 1)
+         c.connections = 1;
+      if (c.endpoints.isEmpty())
+         c.endpoints = List.of(new InetSocketAddress(c.host, c.port));
       return c;
    }
+
+   private static List<InetSocketAddress> parseEndpoints(String spec) {
+      List<InetSocketAddress> list = new ArrayList<>();
+      for (String part : spec.split(",")) {
+         String p = part.trim();
+         if (p.isEmpty())
+            continue;
+         int colon = p.lastIndexOf(':');
+         list.add(new InetSocketAddress(p.substring(0, colon), Integer.parseInt(p.substring(colon + 1))));
+      }
+      return list;
+   }
 }
\ No newline at end of file
@@ -0,0 +1,324 @@
+package com.example.family;
+
+import family.NodeInfo;
+import family.StoredMessage;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Seçilen bir replikaya yazılamayan mesajlar için ipucu (hint) kaydı.
+ *
+ * Başarısız her replika yazımı, üyeye ait hints/<host>_<port>.hints
+ * dosyasının sonuna (id, zaman) olarak eklenir. Değerin kendisi liderin
+ * diskinde olduğundan ipucu sadece id tutar. Üye tekrar ailede göründüğünde
+ * ipuçları gruplar halinde üyenin replikasyon kuyruğuna verilir ve her
+ * onayda MessageRegistry güncellenir. Tamamı işlenen dosya silinir.
+ *
+ * Bu düğüm kaydın yerleşiminde değilse, kopyası sadece ipucunun kaynağı
+ * olsun diye yazılmıştır (yedek kopya). O kaydın bu düğümde bekleyen
+ * ipuçlarının hepsi teslim edilince yedek kopya silinir; aksi halde
+ * düğüm yerleşim dışında eski bir değer tutmaya devam ederdi. Yedek kopya
+ * bilgisi bellekte tutulur; yeniden başlatmada kalan kopyalar silinmez,
+ * koordinatör onları okumadan önce yerleşimdeki sürümlerle karşılaştırır.
+ */
+public class HintedHandoff {
+
+   private static final int HINT_RECORD_BYTES = Integer.BYTES + Long.BYTES;
+   private static final String SUFFIX = ".hints";
+
+   private final Path hintsDir;
+   private final MessageStore messageStore;
+   private final MessageRegistry messageRegistry;
+   private final NodeRegistry nodeRegistry;
+   private final ReplicationManager replicationManager;
+   private final int batchSize;
+   private final long ackTimeoutMs;
+   private final Map<String, HintFile> files = new ConcurrentHashMap<>();
+   // id → teslimi beklenen yedek kopya
+   private final Map<Integer, Fallback> fallbacks = new ConcurrentHashMap<>();
+   private final NodeInfo self;
+   private ScheduledExecutorService scheduler;
+
+   public HintedHandoff(NodeInfo self, NodeConfig config, MessageStore messageStore,
+         MessageRegistry messageRegistry, NodeRegistry nodeRegistry, ReplicationManager replicationManager) {
+      this.self = self;
+      this.hintsDir = Paths.get(config.getString("HINTS_DIR", "hints"));
+      this.messageStore = messageStore;
+      this.messageRegistry = messageRegistry;
+      this.nodeRegistry = nodeRegistry;
+      this.replicationManager = replicationManager;
+      this.batchSize = config.getInt("HINT_REPLAY_BATCH", 256);
+      this.ackTimeoutMs = config.getLong("REPLICATION_ACK_TIMEOUT_MS", 10_000);
+
+      try {
+         Files.createDirectories(hintsDir);
+         loadExistingFiles();
+      } catch (IOException e) {
+         System.err.println("Failed to open hints directory: " + e.getMessage());
+      }
+   }
+
+   /**
+    * Üyeye yazılamayan mesaj için ipucu ekler.
+    */
+   public void addHint(NodeInfo member, int messageId) {
+      try {
+         fileFor(member).append(messageId);
+         System.out.printf("Hint stored: id=%d for %s:%d%n", messageId, member.getHost(), member.getPort());
+      } catch (IOException e) {
+         System.err.println("Failed to store hint for id=" + messageId + ": " + e.getMessage());
+      }
+   }
+
+   /**
+    * Yedek kopyanın kaynağı olduğu ipucunu ekler. Kaydın bu düğümdeki tüm
+    * ipuçları teslim edilince version sürümündeki yerel kopya silinir.
+    */
+   public void addFallbackHint(NodeInfo member, int messageId, long version) {
+      String key = fileFor(member).key;
+      fallbacks.compute(messageId, (id, fallback) -> {
+         Fallback updated = fallback == null ? new Fallback() : fallback;
+         updated.version = Math.max(updated.version, version);
+         updated.members.add(key);
+         return updated;
+      });
+      addHint(member, messageId);
+   }
+
+   /**
+    * Periyodik olarak ipuçlarını ulaşılabilir üyelere gönderir.
+    */
+   public void start(long intervalMs) {
+      scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "HintReplayer");
+         t.setDaemon(true);
+         return t;
+      });
+      scheduler.scheduleWithFixedDelay(this::replayAll, intervalMs, intervalMs, TimeUnit.MILLISECONDS);
+   }
+
+   public void stop() {
+      if (scheduler != null) {
+         scheduler.shutdownNow();
+      }
+   }
+
+   public int pendingHints() {
+      int total = 0;
+      for (HintFile file : files.values()) {
+         total += file.pending();
+      }
+      return total;
+   }
+
+   private void replayAll() {
+      for (HintFile file : files.values()) {
+         // Sadece ailede görünen (sağlık kontrolünden geçen) üyelere gönder
+         if (file.pending() == 0 || !nodeRegistry.contains(file.member)) {
+            continue;
+         }
+         try {
+            while (replayBatch(file)) {
+               // Dosya bitene ya da bir gönderim başarısız olana kadar devam
+            }
+         } catch (Exception e) {
+            System.err.println("Hint replay failed for " + file.key + ": " + e.getMessage());
+         }
+      }
+   }
+
+   /**
+    * Bir grup ipucunu gönderir. Tüm grup başarılıysa ve dosyada ipucu
+    * kaldıysa true döner.
+    */
+   private boolean replayBatch(HintFile file) throws IOException {
+      List<Integer> ids = file.readBatch(batchSize);
+      if (ids.isEmpty()) {
+         return false;
+      }
+
+      MemberReplicator replicator = replicationManager.forMember(file.member);
+      List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+      List<Boolean> hasValue = new ArrayList<>();
+      for (int id : ids) {
+         StoredMessage message = messageStore.get(id);
+         CompletableFuture<Boolean> future = message == null
+               ? CompletableFuture.completedFuture(true) // Değer artık yok, ipucu düşer
+               : replicator.offer(message);
+         if (future == null) {
+            break; // Kuyruk dolu, kalanlar bir sonraki turda
+         }
+         futures.add(future);
+         hasValue.add(message != null);
+      }
+
+      // Baştan itibaren başarılı olan ipuçları tüketilir
+      int landed = 0;
+      for (CompletableFuture<Boolean> future : futures) {
+         boolean ok;
+         try {
+            ok = future.get(ackTimeoutMs, TimeUnit.MILLISECONDS);
+         } catch (Exception e) {
+            ok = false;
+         }
+         if (!ok) {
+            break;
+         }
+         if (hasValue.get(landed)) {
+            messageRegistry.addLocation(ids.get(landed), file.member);
+         }
+         delivered(ids.get(landed), file.key);
+         landed++;
+      }
+
+      boolean more = file.consume(landed);
+      if (landed > 0) {
+         System.out.printf("Hinted handoff: %d hints delivered to %s%n", landed, file.key);
+      }
+      return landed == ids.size() && more;
+   }
+
+   /**
+    * Yedek kopyanın bu üyeye ipucu teslim edildi; bekleyen üye kalmadıysa
+    * yerel kopya, bu arada daha yeni bir sürümle değişmediyse silinir.
+    */
+   private void delivered(int messageId, String memberKey) {
+      Fallback[] done = new Fallback[1];
+      fallbacks.computeIfPresent(messageId, (id, fallback) -> {
+         fallback.members.remove(memberKey);
+         if (fallback.members.isEmpty()) {
+            done[0] = fallback;
+            return null;
+         }
+         return fallback;
+      });
+      if (done[0] != null && messageStore.deleteIfVersion(messageId, done[0].version)) {
+         messageRegistry.removeLocation(messageId, self);
+         System.out.println("Fallback copy dropped: id=" + messageId + " (all hints delivered)");
+      }
+   }
+
+   private HintFile fileFor(NodeInfo member) {
+      String key = member.getHost() + "_" + member.getPort();
+      return files.computeIfAbsent(key, k -> new HintFile(k, member, hintsDir.resolve(k + SUFFIX)));
+   }
+
+   private void loadExistingFiles() throws IOException {
+      try (Stream<Path> list = Files.list(hintsDir)) {
+         list.filter(p -> p.getFileName().toString().endsWith(SUFFIX)).forEach(p -> {
+            String key = p.getFileName().toString();
+            key = key.substring(0, key.length() - SUFFIX.length());
+            int sep = key.lastIndexOf('_');
+            if (sep <= 0) {
+               return;
+            }
+            try {
+               NodeInfo member = NodeInfo.newBuilder()
+                     .setHost(key.substring(0, sep))
+                     .setPort(Integer.parseInt(key.substring(sep + 1)))
+                     .build();
+               HintFile file = fileFor(member);
+               System.out.println("Loaded " + file.pending() + " hints for " + key);
+            } catch (NumberFormatException ignored) {
+            }
+         });
+      }
+   }
+
+   private static class Fallback {
+      long version = -1;
+      final Set<String> members = new HashSet<>();
+   }
+
+   /**
+    * Bir üyenin ipucu dosyası. Yazmalar sona eklenir, okuma konumu bellekte
+    * tutulur; yeniden başlatmada dosya baştan gönderilir (Store idempotent).
+    */
+   private static class HintFile {
+
+      final String key;
+      final NodeInfo member;
+      final Path path;
+      private long readOffset = 0;
+
+      HintFile(String key, NodeInfo member, Path path) {
+         this.key = key;
+         this.member = member;
+         this.path = path;
+      }
+
+      synchronized void append(int messageId) throws IOException {
+         ByteBuffer record = ByteBuffer.allocate(HINT_RECORD_BYTES)
+               .putInt(messageId)
+               .putLong(System.currentTimeMillis());
+         record.flip();
+         try (FileChannel channel = FileChannel.open(path,
+               StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            while (record.hasRemaining()) {
+               channel.write(record);
+            }
+         }
+      }
+
+      synchronized int pending() {
+         try {
+            return Files.exists(path) ? (int) ((Files.size(path) - readOffset) / HINT_RECORD_BYTES) : 0;
+         } catch (IOException e) {
+            return 0;
+         }
+      }
+
+      synchronized List<Integer> readBatch(int max) throws IOException {
+         List<Integer> ids = new ArrayList<>();
+         if (!Files.exists(path)) {
+            return ids;
+         }
+         try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long available = (channel.size() - readOffset) / HINT_RECORD_BYTES;
+            int count = (int) Math.min(max, available);
+            if (count <= 0) {
+               return ids;
+            }
+            ByteBuffer buffer = ByteBuffer.allocate(count * HINT_RECORD_BYTES);
+            while (buffer.hasRemaining() && channel.read(buffer, readOffset + buffer.position()) > 0) {
+               // tamamen oku
+            }
+            buffer.flip();
+            for (int i = 0; i < count; i++) {
+               ids.add(buffer.getInt());
+               buffer.getLong(); // oluşturulma zamanı
+            }
+         }
+         return ids;
+      }
+
+      /**
+       * İlk n ipucunu tüketilmiş sayar. Dosya bittiyse siler.
+       * Dosyada ipucu kaldıysa true döner.
+       */
+      synchronized boolean consume(int n) throws IOException {
+         readOffset += (long) n * HINT_RECORD_BYTES;
+         long size = Files.exists(path) ? Files.size(path) : 0;
+         if (readOffset >= size) {
+            Files.deleteIfExists(path);
+            readOffset = 0;
+            return false;
+         }
+         return true;
+      }
+   }
+}
@@ -0,0 +1,32 @@
+package com.example.family;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Mesaj id'sine göre şeritli (striped) kilitler.
+ * Aynı id'ye yapılan yazımlar sıraya girer, farklı id'ler ancak aynı
+ * şeride düşerlerse birbirini bekler.
+ */
+public class KeyLocks {
+
+   private final ReentrantLock[] stripes;
+   private final int mask;
+
+   /**
+    * @param stripes şerit sayısı; ikinin kuvvetine yuvarlanır
+    */
+   public KeyLocks(int stripes) {
+      int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+      this.stripes = new ReentrantLock[size];
+      this.mask = size - 1;
+      for (int i = 0; i < size; i++) {
+         this.stripes[i] = new ReentrantLock();
+      }
+   }
+
+   public ReentrantLock lockFor(int messageId) {
+      // Ardışık id'ler farklı şeritlere dağılsın
+      int h = messageId * 0x9E3779B9;
+      return stripes[(h ^ (h >>> 16)) & mask];
+   }
+}
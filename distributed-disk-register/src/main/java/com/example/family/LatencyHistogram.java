@@ -0,0 +1,89 @@
+package com.example.family;
+
+/**
+ * Gecikme dağılımı (mikrosaniye), sabit bellekli log-doğrusal kovalar.
+ *
+ * Her ikinin kuvveti aralığı 16 kovaya bölünür; yüzdelik değerler en fazla
+ * ~%6 yukarı yuvarlanır. Kayıt sayısından bağımsız olarak 8 KB yer tutar,
+ * uzun yük testlerinde her isteğin süresini saklamaya gerek kalmaz.
+ */
+public class LatencyHistogram {
+
+   private static final int SUB_BITS = 4;
+   private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+   private final long[] counts = new long[64 * SUB_BUCKETS];
+   private long count = 0;
+   private long max = 0;
+
+   public synchronized void record(long micros) {
+      long v = Math.max(0, micros);
+      counts[index(v)]++;
+      count++;
+      max = Math.max(max, v);
+   }
+
+   /** Diğer dağılımı bu dağılıma ekler. */
+   public void add(LatencyHistogram other) {
+      long[] otherCounts;
+      long otherCount;
+      long otherMax;
+      synchronized (other) {
+         otherCounts = other.counts.clone();
+         otherCount = other.count;
+         otherMax = other.max;
+      }
+      synchronized (this) {
+         for (int i = 0; i < counts.length; i++) {
+            counts[i] += otherCounts[i];
+         }
+         count += otherCount;
+         max = Math.max(max, otherMax);
+      }
+   }
+
+   public synchronized long count() {
+      return count;
+   }
+
+   public synchronized long max() {
+      return max;
+   }
+
+   /**
+    * p (0..100) yüzdeliğindeki gecikme; kayıt yoksa 0.
+    */
+   public synchronized long percentile(double p) {
+      if (count == 0) {
+         return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(count * Math.min(100, Math.max(0, p)) / 100.0));
+      long seen = 0;
+      for (int i = 0; i < counts.length; i++) {
+         seen += counts[i];
+         if (seen >= rank) {
+            return Math.min(upperBound(i), max);
+         }
+      }
+      return max;
+   }
+
+   private static int index(long v) {
+      if (v < SUB_BUCKETS) {
+         return (int) v;
+      }
+      int exp = 63 - Long.numberOfLeadingZeros(v);
+      int shift = exp - SUB_BITS;
+      int sub = (int) (v >>> shift) - SUB_BUCKETS;
+      return (shift + 1) * SUB_BUCKETS + sub;
+   }
+
+   private static long upperBound(int index) {
+      if (index < SUB_BUCKETS) {
+         return index;
+      }
+      int shift = index / SUB_BUCKETS - 1;
+      long lower = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+      return lower + (1L << shift) - 1;
+   }
+}
@@ -0,0 +1,326 @@
+package com.example.family;
+
+import family.FamilyServiceGrpc;
+import family.LeaseReply;
+import family.LeaseRequest;
+import family.NodeInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Kira (lease) tabanlı lider seçimi.
+ *
+ * Her üye en fazla bir adaya, bir term için LEASE_MS süreli onay verir;
+ * süre dolmadan başka bir adaya onay vermez. Seçmenlerden (LEASE_VOTERS)
+ * çoğunluk onayı alan aday lider olur ve LEASE_RENEW_MS aralıklarla aynı term ile yeniler.
+ * Çoğunluğu kaybeden lider, kendi kirası dolunca kendiliğinden çekilir;
+ * daha yüksek term gören lider hemen çekilir. Böylece iki lider aynı anda
+ * çoğunluk kirası tutamaz.
+ *
+ * Sadece aday düğümler (5555 ve STANDBY_PORT) seçime girer. Yedek, liderin
+ * yenilemeleri kesilip kirası dolunca yeni term ile aday olur.
+ *
+ * Çoğunluk, sağlık kontrolünün budadığı canlı aile üzerinden değil sabit
+ * seçmen kümesi üzerinden hesaplanır. Bölünmede iki taraf da karşı tarafı
+ * aileden çıkarsa bile en fazla biri çoğunluğa ulaşır. Tek başına kalan
+ * düğüm, seçmen kümesi sadece kendisi değilse lider olamaz.
+ *
+ * Süreler yerel monoton saatle ölçülür; düğümler arası saat farkı önemsizdir.
+ */
+public class LeaderLease {
+
+   /**
+    * Liderlik değişikliklerini alan taraf.
+    */
+   public interface Listener {
+      /**
+       * Lider seçilince ve her başarılı yenilemeden sonra çağrılır; tekrar
+       * çağrılmaya dayanıklı olmalıdır (ör. portu henüz açamadıysa yeniden dener).
+       */
+      void leading();
+
+      /**
+       * Liderlik kaybedilince çağrılır.
+       */
+      void deposed();
+   }
+
+   private final NodeInfo self;
+   private final List<NodeInfo> voters;
+   private final boolean selfVotes;
+   private final ReplicationManager replicationManager;
+   private final long leaseMs;
+   private final long renewMs;
+
+   // Bu üyenin verdiği onay (kendine verdiği dahil); monitor altında
+   private long term = 0;
+   private NodeInfo holder = null;
+   private long grantedUntil = 0;
+
+   // Bu üye liderse kirasının geçerli olduğu son an
+   private boolean leading = false;
+   private long leadingUntil = 0;
+
+   private Listener listener;
+   private ScheduledExecutorService scheduler;
+   private long campaignNotBefore;
+
+   public LeaderLease(NodeInfo self, ReplicationManager replicationManager, NodeConfig config) {
+      this.self = self;
+      this.voters = parseVoters(config);
+      this.selfVotes = voters.stream().anyMatch(v -> sameNode(v, self));
+      this.replicationManager = replicationManager;
+      this.leaseMs = Math.max(100, config.getLong("LEASE_MS", 3_000));
+      this.renewMs = Math.max(10, Math.min(leaseMs / 2, config.getLong("LEASE_RENEW_MS", 1_000)));
+   }
+
+   /**
+    * Kira döngüsünü başlatır. Aday olmayan üye sadece onay verir.
+    *
+    * @param startupDelayMs ilk adaylık için bekleme; yeni açılan yedek,
+    *                       mevcut liderin yenilemesini görmeden aday olmasın
+    */
+   public void start(boolean candidate, long startupDelayMs, Listener listener) {
+      this.listener = listener;
+      this.campaignNotBefore = now() + startupDelayMs;
+      scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "LeaderLease");
+         t.setDaemon(true);
+         return t;
+      });
+      scheduler.scheduleWithFixedDelay(() -> {
+         try {
+            if (isLeader()) {
+               renew();
+            } else if (candidate && now() >= campaignNotBefore && leaseFree()) {
+               campaign();
+            }
+         } catch (Exception e) {
+            System.err.println("Lease tick failed: " + e.getMessage());
+         }
+      }, 0, renewMs, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Kira döngüsünü durdurur; kira yenilenmez ve süresi dolunca diğer
+    * adaylar devralır.
+    */
+   public void stop() {
+      if (scheduler != null) {
+         scheduler.shutdownNow();
+      }
+      synchronized (this) {
+         leading = false;
+      }
+   }
+
+   /**
+    * Başka bir üyenin AcquireLease isteği (adaylık ya da yenileme).
+    */
+   public LeaseReply onRequest(LeaseRequest request) {
+      boolean deposed = false;
+      LeaseReply reply;
+      synchronized (this) {
+         long now = now();
+         NodeInfo candidate = request.getCandidate();
+         boolean sameHolder = holder != null && sameNode(holder, candidate);
+         boolean free = holder == null || now >= grantedUntil || sameHolder;
+         boolean grant = (request.getTerm() > term && free) || (request.getTerm() == term && sameHolder);
+         if (grant) {
+            if (leading && !sameNode(self, candidate)) {
+               leading = false;
+               deposed = true;
+            }
+            term = request.getTerm();
+            holder = candidate;
+            grantedUntil = now + Math.min(request.getDurationMs(), leaseMs * 2);
+         }
+         reply = reply(grant);
+      }
+      if (deposed) {
+         System.out.printf("👑 Lease term %d went to %s:%d, stepping down%n", request.getTerm(),
+               request.getCandidate().getHost(), request.getCandidate().getPort());
+         listener.deposed();
+      }
+      return reply;
+   }
+
+   public synchronized boolean isLeader() {
+      return leading && now() < leadingUntil;
+   }
+
+   /**
+    * Geçerli kirası olan lider; bilinmiyorsa ya da kira dolduysa null.
+    */
+   public synchronized NodeInfo currentLeader() {
+      return holder != null && now() < grantedUntil ? holder : null;
+   }
+
+   public synchronized long term() {
+      return term;
+   }
+
+   private synchronized boolean leaseFree() {
+      return holder == null || now() >= grantedUntil;
+   }
+
+   private void campaign() {
+      long started = now();
+      LeaseRequest request;
+      synchronized (this) {
+         if (!leaseFree()) {
+            return;
+         }
+         // Önce kendi onayını verir
+         term++;
+         holder = self;
+         grantedUntil = started + leaseMs;
+         request = LeaseRequest.newBuilder().setCandidate(self).setTerm(term).setDurationMs(leaseMs).build();
+      }
+
+      int votes = (selfVotes ? 1 : 0) + collectGrants(request);
+      boolean won;
+      synchronized (this) {
+         won = votes >= majority() && term == request.getTerm() && holder != null && sameNode(holder, self);
+         if (won) {
+            leading = true;
+            leadingUntil = started + leaseMs - leaseMs / 10;
+         } else if (holder != null && sameNode(holder, self)) {
+            // Kaybedildi; kendine verilen onay bırakılır ki başka aday bekletilmesin
+            grantedUntil = 0;
+            campaignNotBefore = now() + renewMs + (long) (Math.random() * renewMs);
+         }
+      }
+      if (won) {
+         System.out.printf("👑 Elected leader for term %d with %d/%d votes%n", request.getTerm(), votes,
+               voters.size());
+         listener.leading();
+      }
+   }
+
+   private void renew() {
+      long started = now();
+      LeaseRequest request;
+      synchronized (this) {
+         grantedUntil = started + leaseMs;
+         request = LeaseRequest.newBuilder().setCandidate(self).setTerm(term).setDurationMs(leaseMs).build();
+      }
+
+      int votes = (selfVotes ? 1 : 0) + collectGrants(request);
+      boolean deposed = false;
+      synchronized (this) {
+         if (!leading) {
+            return;
+         }
+         if (term != request.getTerm() || !sameNode(holder, self)) {
+            // Yenileme sırasında daha yüksek term görüldü
+            leading = false;
+            deposed = true;
+         } else if (votes >= majority()) {
+            leadingUntil = started + leaseMs - leaseMs / 10;
+         } else if (now() >= leadingUntil) {
+            leading = false;
+            deposed = true;
+         }
+      }
+      if (deposed) {
+         System.out.println("👑 Lost the leader lease, stepping down");
+         listener.deposed();
+      } else {
+         listener.leading();
+      }
+   }
+
+   /**
+    * İsteği diğer seçmenlere paralel gönderir, onay sayısını döner. Daha yüksek
+    * term ile başka bir sahip bildiren cevap yerel duruma alınır.
+    */
+   private int collectGrants(LeaseRequest request) {
+      List<UnaryCall<LeaseReply>> replies = new ArrayList<>();
+      for (NodeInfo n : voters) {
+         if (!sameNode(n, self)) {
+            UnaryCall<LeaseReply> call = new UnaryCall<>();
+            FamilyServiceGrpc.newStub(replicationManager.channel(n))
+                  .withDeadlineAfter(renewMs, TimeUnit.MILLISECONDS)
+                  .acquireLease(request, call);
+            replies.add(call);
+         }
+      }
+
+      int granted = 0;
+      for (UnaryCall<LeaseReply> future : replies) {
+         try {
+            LeaseReply reply = future.get();
+            if (reply.getGranted()) {
+               granted++;
+            } else {
+               adopt(reply);
+            }
+         } catch (Exception ignored) {
+            // Cevap vermeyen üye onay vermemiş sayılır
+         }
+      }
+      return granted;
+   }
+
+   private synchronized void adopt(LeaseReply reply) {
+      if (reply.getTerm() >= term && reply.hasHolder() && !sameNode(reply.getHolder(), self)) {
+         term = reply.getTerm();
+         holder = reply.getHolder();
+         grantedUntil = now() + leaseMs;
+      }
+   }
+
+   private int majority() {
+      return voters.size() / 2 + 1;
+   }
+
+   /**
+    * LEASE_VOTERS (host:port,...) ya da boşsa HOST üzerinde START_PORT'tan
+    * başlayan üç port.
+    */
+   private static List<NodeInfo> parseVoters(NodeConfig config) {
+      List<NodeInfo> voters = new ArrayList<>();
+      String spec = config.getString("LEASE_VOTERS", "");
+      if (spec.isBlank()) {
+         String host = config.getString("HOST", "127.0.0.1");
+         int startPort = config.getInt("START_PORT", 5555);
+         for (int port = startPort; port < startPort + 3; port++) {
+            voters.add(NodeInfo.newBuilder().setHost(host).setPort(port).build());
+         }
+         return voters;
+      }
+      for (String part : spec.split(",")) {
+         String p = part.trim();
+         if (p.isEmpty()) {
+            continue;
+         }
+         int colon = p.lastIndexOf(':');
+         voters.add(NodeInfo.newBuilder()
+               .setHost(p.substring(0, colon))
+               .setPort(Integer.parseInt(p.substring(colon + 1)))
+               .build());
+      }
+      return voters;
+   }
+
+   private LeaseReply reply(boolean granted) {
+      LeaseReply.Builder reply = LeaseReply.newBuilder().setGranted(granted).setTerm(term);
+      if (holder != null) {
+         reply.setHolder(holder);
+      }
+      return reply.build();
+   }
+
+   private static boolean sameNode(NodeInfo a, NodeInfo b) {
+      return a.getHost().equals(b.getHost()) && a.getPort() == b.getPort();
+   }
+
+   private static long now() {
+      return System.nanoTime() / 1_000_000;
+   }
+}
@@ -0,0 +1,66 @@
+package com.example.family;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+/**
+ * TCP soketinden satırları ham byte olarak okuyan okuyucu.
+ * BufferedReader'ın aksine satırı String'e çevirmez, böylece SET değeri
+ * soketten diske kadar byte olarak kalır.
+ */
+public class LineReader {
+
+   private static final int INITIAL_BUFFER = 8192;
+
+   private final InputStream in;
+   private byte[] buf = new byte[INITIAL_BUFFER];
+   private int pos = 0;
+   private int limit = 0;
+
+   public LineReader(InputStream in) {
+      this.in = in;
+   }
+
+   /**
+    * Bir sonraki satırı '\n' (ve varsa '\r') olmadan döner.
+    * Akış bittiyse null döner.
+    */
+   public byte[] readLine() throws IOException {
+      int scanFrom = pos;
+      while (true) {
+         for (int i = scanFrom; i < limit; i++) {
+            if (buf[i] == '\n') {
+               int end = (i > pos && buf[i - 1] == '\r') ? i - 1 : i;
+               byte[] line = Arrays.copyOfRange(buf, pos, end);
+               pos = i + 1;
+               return line;
+            }
+         }
+         scanFrom = limit;
+
+         // Tampon doluysa önce başa kaydır, yetmezse büyüt
+         if (limit == buf.length) {
+            if (pos > 0) {
+               System.arraycopy(buf, pos, buf, 0, limit - pos);
+               scanFrom -= pos;
+               limit -= pos;
+               pos = 0;
+            } else {
+               buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+         }
+
+         int n = in.read(buf, limit, buf.length - limit);
+         if (n < 0) {
+            if (limit == pos) {
+               return null;
+            }
+            byte[] line = Arrays.copyOfRange(buf, pos, limit);
+            pos = limit;
+            return line;
+         }
+         limit += n;
+      }
+   }
+}
@@ -0,0 +1,182 @@
+package com.example.family;
+
+import family.NodeInfo;
+import family.NodeLoad;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Düğümlerin yük bilgisi.
+ *
+ * Kendi yükünü (boş disk, saklanan byte, replikasyon kuyruğu, son Store
+ * gecikmeleri) FamilyView cevaplarına ekler; sağlık kontrolünde üyelerden
+ * gelen yükleri ve ölçülen RTT'yi saklar.
+ *
+ * Bir üye ancak açıkça ayrışıyorsa "yüklü" sayılır: boş diski
+ * LOAD_MIN_FREE_DISK_MB altında ya da kuyruk/gecikme/saklanan byte değeri
+ * ailenin ortancasının LOAD_SKEW katından fazla. Bilgisi olmayan ya da
+ * bilgisi LOAD_MAX_AGE_MS'den eski üye yüklü sayılmaz.
+ */
+public class LoadTracker {
+
+   // Gecikme ortalaması: yeni ölçümün ağırlığı
+   private static final double EWMA_ALPHA = 0.2;
+   // Bu değerlerin altındaki farklar gürültü sayılır
+   private static final int MIN_QUEUE_DEPTH = 16;
+   private static final long MIN_LATENCY_MICROS = 2_000;
+   private static final long MIN_STORED_BYTES = 64L * 1024 * 1024;
+   // Yerel yük en fazla bu sıklıkla ölçülür (disk sorgusu her SET'te yapılmasın)
+   private static final long LOCAL_LOAD_CACHE_MS = 1_000;
+
+   private final NodeInfo self;
+   private final MessageStore messageStore;
+   private final ReplicationManager replicationManager;
+   private final long minFreeDiskBytes;
+   private final double skew;
+   private final long maxAgeMs;
+   private final Map<NodeInfo, MemberLoad> loads = new ConcurrentHashMap<>();
+
+   private volatile double storeLatencyMicros = 0;
+   private volatile NodeLoad cachedLocal;
+   private volatile long cachedLocalAt = 0;
+
+   public LoadTracker(NodeInfo self, MessageStore messageStore, ReplicationManager replicationManager,
+         NodeConfig config) {
+      this.self = self;
+      this.messageStore = messageStore;
+      this.replicationManager = replicationManager;
+      this.minFreeDiskBytes = config.getLong("LOAD_MIN_FREE_DISK_MB", 512) * 1024 * 1024;
+      this.skew = Math.max(1.0, config.getDouble("LOAD_SKEW", 2.0));
+      this.maxAgeMs = config.getLong("LOAD_MAX_AGE_MS", 30_000);
+   }
+
+   /**
+    * Yerel bir Store'un süresini ortalamaya ekler.
+    */
+   public void recordStoreLatency(long nanos) {
+      double micros = nanos / 1_000.0;
+      double current = storeLatencyMicros;
+      storeLatencyMicros = current == 0 ? micros : current + EWMA_ALPHA * (micros - current);
+   }
+
+   /**
+    * Bu düğümün şu anki yükü (FamilyView cevaplarına eklenir).
+    */
+   public NodeLoad localLoad() {
+      long now = System.currentTimeMillis();
+      NodeLoad load = cachedLocal;
+      if (load == null || now - cachedLocalAt > LOCAL_LOAD_CACHE_MS) {
+         load = NodeLoad.newBuilder()
+               .setFreeDiskBytes(messageStore.freeDiskBytes())
+               .setStoredBytes(messageStore.stats().getBytes())
+               .setPendingReplication(replicationManager.totalQueueDepth())
+               .setStoreLatencyMicros((long) storeLatencyMicros)
+               .build();
+         cachedLocal = load;
+         cachedLocalAt = now;
+      }
+      return load;
+   }
+
+   /**
+    * Sağlık kontrolünde üyeden gelen yükü kaydeder.
+    */
+   public void update(NodeInfo member, NodeLoad load, long rttMicros) {
+      loads.put(member, new MemberLoad(load, rttMicros));
+   }
+
+   public void remove(NodeInfo member) {
+      loads.remove(member);
+   }
+
+   /**
+    * Üye yeni replikalar için kaçınılacak kadar yüklü mü.
+    */
+   public boolean isOverloaded(NodeInfo member, List<NodeInfo> family) {
+      Snapshot target = snapshotOf(member);
+      if (target == null) {
+         return false;
+      }
+      if (target.freeDiskBytes < minFreeDiskBytes) {
+         return true;
+      }
+
+      List<Long> queues = new ArrayList<>();
+      List<Long> latencies = new ArrayList<>();
+      List<Long> stored = new ArrayList<>();
+      for (NodeInfo n : family) {
+         Snapshot s = snapshotOf(n);
+         if (s != null) {
+            queues.add(s.queueDepth);
+            latencies.add(s.latencyMicros);
+            stored.add(s.storedBytes);
+         }
+      }
+      if (queues.size() < 2) {
+         return false;
+      }
+      return exceeds(target.queueDepth, median(queues), MIN_QUEUE_DEPTH)
+            || exceeds(target.latencyMicros, median(latencies), MIN_LATENCY_MICROS)
+            || exceeds(target.storedBytes, median(stored), MIN_STORED_BYTES);
+   }
+
+   private boolean exceeds(long value, long median, long floor) {
+      return value > floor && value > median * skew;
+   }
+
+   private static long median(List<Long> values) {
+      Collections.sort(values);
+      return values.get(values.size() / 2);
+   }
+
+   /**
+    * Üyenin karşılaştırmada kullanılan değerleri. Kuyruk derinliği için bu
+    * düğümün o üyeye giden kuyruğu da hesaba katılır (en güncel bilgi odur).
+    */
+   private Snapshot snapshotOf(NodeInfo member) {
+      if (isSelf(member)) {
+         NodeLoad local = localLoad();
+         return new Snapshot(local.getFreeDiskBytes(), local.getStoredBytes(), 0, local.getStoreLatencyMicros());
+      }
+      MemberLoad known = loads.get(member);
+      if (known == null || System.currentTimeMillis() - known.receivedAt > maxAgeMs) {
+         return null;
+      }
+      long queue = Math.max(known.load.getPendingReplication(), replicationManager.forMember(member).queueDepth());
+      return new Snapshot(known.load.getFreeDiskBytes(), known.load.getStoredBytes(), queue,
+            known.load.getStoreLatencyMicros() + known.rttMicros);
+   }
+
+   private boolean isSelf(NodeInfo node) {
+      return node.getHost().equals(self.getHost()) && node.getPort() == self.getPort();
+   }
+
+   private static class MemberLoad {
+      final NodeLoad load;
+      final long rttMicros;
+      final long receivedAt = System.currentTimeMillis();
+
+      MemberLoad(NodeLoad load, long rttMicros) {
+         this.load = load;
+         this.rttMicros = rttMicros;
+      }
+   }
+
+   private static class Snapshot {
+      final long freeDiskBytes;
+      final long storedBytes;
+      final long queueDepth;
+      final long latencyMicros;
+
+      Snapshot(long freeDiskBytes, long storedBytes, long queueDepth, long latencyMicros) {
+         this.freeDiskBytes = freeDiskBytes;
+         this.storedBytes = storedBytes;
+         this.queueDepth = queueDepth;
+         this.latencyMicros = latencyMicros;
+      }
+   }
+}
@@ -0,0 +1,271 @@
+package com.example.family;
+
+import family.FamilyServiceGrpc;
+import family.LocationBatch;
+import family.LocationUpdate;
+import family.NodeInfo;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntConsumer;
+import java.util.function.Supplier;
+
+/**
+ * Liderin MessageRegistry'sinin yedekte sıcak kopyası.
+ *
+ * Lider tarafı (serve): takipçi bağlanınca önce tüm girdiler, sonra değişen
+ * girdiler akıtılır. Değişiklikler id olarak birikir (aynı id tek sefer
+ * gönderilir) ve akış hazır oldukça (onReady) gönderim anında girdinin
+ * güncel hali okunur; böylece yavaş takipçi için kuyruk büyümez ve sonunda
+ * liderle aynı duruma gelir.
+ *
+ * Yedek tarafı (follow): o anki lidere akış açar, gelen girdileri kendi
+ * MessageRegistry'sine yazar. Lider değişince akış yenisine taşınır; bu
+ * üye lider olunca akış kapanır. Devralmada kayıt zaten bellektedir.
+ */
+public class LocationMirror {
+
+   private final NodeInfo self;
+   private final MessageRegistry messageRegistry;
+   private final ReplicationManager replicationManager;
+   private final int batchMax;
+
+   private final AtomicLong sentUpdates = new AtomicLong();
+   private final AtomicLong appliedUpdates = new AtomicLong();
+   private volatile boolean caughtUp = false;
+   private Thread follower;
+   // Takipçi akışlarına gönderim; onNext aynı akışa tek thread'den çağrılır
+   private final ExecutorService feedExecutor = Executors.newSingleThreadExecutor(r -> {
+      Thread t = new Thread(r, "LocationFeed");
+      t.setDaemon(true);
+      return t;
+   });
+
+   public LocationMirror(NodeInfo self, MessageRegistry messageRegistry, ReplicationManager replicationManager,
+         NodeConfig config) {
+      this.self = self;
+      this.messageRegistry = messageRegistry;
+      this.replicationManager = replicationManager;
+      this.batchMax = Math.max(1, config.getInt("STANDBY_BATCH_MAX", 1024));
+   }
+
+   /**
+    * Bir takipçiye akışı başlatır. Gönderim akış hazır oldukça yapılır;
+    * takipçi yavaşsa değişiklikler id olarak birikir, bellek büyümez.
+    */
+   public void serve(NodeInfo follower, StreamObserver<LocationBatch> responseObserver) {
+      new Feed(follower, (ServerCallStreamObserver<LocationBatch>) responseObserver).start();
+   }
+
+   /**
+    * Bir takipçiye giden akış. Kayıttaki değişiklikler ve akışın hazır
+    * olması (onReady) tek thread'li feedExecutor'da bir boşaltma turu
+    * başlatır; tur akış hazır olmayınca ya da gönderilecek kalmayınca biter.
+    */
+   private class Feed {
+      private final NodeInfo follower;
+      private final ServerCallStreamObserver<LocationBatch> call;
+      private final Set<Integer> dirty = new LinkedHashSet<>();
+      private final AtomicBoolean scheduled = new AtomicBoolean(false);
+      private final IntConsumer listener = id -> {
+         synchronized (dirty) {
+            dirty.add(id);
+         }
+         schedule();
+      };
+      // Sadece feedExecutor'da okunup yazılır
+      private boolean initialDone = false;
+
+      Feed(NodeInfo follower, ServerCallStreamObserver<LocationBatch> call) {
+         this.follower = follower;
+         this.call = call;
+      }
+
+      void start() {
+         messageRegistry.addListener(listener);
+         // Dinleyici önce eklenir; tam kopya sırasında değişenler de kaçmaz
+         Set<Integer> initial = messageRegistry.ids();
+         synchronized (dirty) {
+            dirty.addAll(initial);
+         }
+         call.setOnCancelHandler(this::stop);
+         call.setOnReadyHandler(this::schedule);
+         System.out.printf("Standby %s:%d following locations (%d entries)%n",
+               follower.getHost(), follower.getPort(), initial.size());
+         schedule();
+      }
+
+      private void schedule() {
+         if (scheduled.compareAndSet(false, true)) {
+            try {
+               feedExecutor.execute(this::drain);
+            } catch (RejectedExecutionException e) {
+               // Düğüm duruyor
+            }
+         }
+      }
+
+      private void drain() {
+         scheduled.set(false);
+         try {
+            while (!call.isCancelled() && call.isReady()) {
+               LocationBatch.Builder batch = LocationBatch.newBuilder();
+               synchronized (dirty) {
+                  Iterator<Integer> it = dirty.iterator();
+                  while (it.hasNext() && batch.getUpdatesCount() < batchMax) {
+                     batch.addUpdates(update(it.next()));
+                     it.remove();
+                  }
+                  if (!initialDone && dirty.isEmpty()) {
+                     batch.setInitialDone(true);
+                     initialDone = true;
+                  }
+               }
+               if (batch.getUpdatesCount() == 0 && !batch.getInitialDone()) {
+                  return;
+               }
+               call.onNext(batch.build());
+               sentUpdates.addAndGet(batch.getUpdatesCount());
+            }
+         } catch (Exception e) {
+            // Takipçi koptu
+            stop();
+         }
+      }
+
+      private void stop() {
+         if (messageRegistry.removeListener(listener)) {
+            System.out.printf("Standby %s:%d stopped following%n", follower.getHost(), follower.getPort());
+         }
+      }
+   }
+
+   private LocationUpdate update(int id) {
+      return LocationUpdate.newBuilder()
+            .setId(id)
+            .addAllMembers(messageRegistry.getMembers(id))
+            .setExpiresAt(messageRegistry.getExpiresAt(id))
+            .build();
+   }
+
+   /**
+    * leader'ın verdiği düğümü takip eder (null ya da bu düğümse takip etmez).
+    */
+   public void follow(Supplier<NodeInfo> leader) {
+      follower = new Thread(() -> {
+         Subscription current = null;
+         while (true) {
+            try {
+               NodeInfo target = leader.get();
+               if (target != null && sameNode(target, self)) {
+                  target = null;
+               }
+               if (current != null && (current.closed || target == null || !sameNode(target, current.target))) {
+                  current.cancel();
+                  current = null;
+               }
+               if (current == null && target != null) {
+                  current = new Subscription(target);
+               }
+               Thread.sleep(500);
+            } catch (InterruptedException e) {
+               if (current != null) {
+                  current.cancel();
+               }
+               return;
+            } catch (Exception e) {
+               System.err.println("Location follower error: " + e.getMessage());
+            }
+         }
+      }, "LocationFollower");
+      follower.setDaemon(true);
+      follower.start();
+   }
+
+   public void stop() {
+      if (follower != null) {
+         follower.interrupt();
+      }
+      feedExecutor.shutdownNow();
+   }
+
+   /**
+    * Bir lidere açılmış FollowLocations akışı.
+    */
+   private class Subscription implements ClientResponseObserver<NodeInfo, LocationBatch> {
+      final NodeInfo target;
+      volatile boolean closed = false;
+      private ClientCallStreamObserver<NodeInfo> call;
+
+      Subscription(NodeInfo target) {
+         this.target = target;
+         caughtUp = false;
+         FamilyServiceGrpc.newStub(replicationManager.channel(target)).followLocations(self, this);
+      }
+
+      void cancel() {
+         if (!closed) {
+            call.cancel("leader changed", null);
+         }
+      }
+
+      @Override
+      public void beforeStart(ClientCallStreamObserver<NodeInfo> requestStream) {
+         this.call = requestStream;
+      }
+
+      @Override
+      public void onNext(LocationBatch batch) {
+         apply(batch.getUpdatesList());
+         if (batch.getInitialDone()) {
+            caughtUp = true;
+            System.out.printf("Standby caught up with %s:%d, %d locations in memory%n",
+                  target.getHost(), target.getPort(), messageRegistry.size());
+         }
+      }
+
+      @Override
+      public void onError(Throwable t) {
+         closed = true;
+      }
+
+      @Override
+      public void onCompleted() {
+         closed = true;
+      }
+   }
+
+   private void apply(List<LocationUpdate> updates) {
+      for (LocationUpdate u : updates) {
+         if (u.getMembersCount() == 0) {
+            messageRegistry.remove(u.getId());
+         } else {
+            messageRegistry.registerMessage(u.getId(), u.getMembersList(), u.getExpiresAt());
+         }
+      }
+      appliedUpdates.addAndGet(updates.size());
+   }
+
+   /**
+    * Akış sayaçlarını yazdırır.
+    */
+   public void printStatus() {
+      System.out.println("   Standby feed: " + sentUpdates.get() + " location updates sent, "
+            + appliedUpdates.get() + " applied" + (caughtUp ? " (caught up)" : ""));
+   }
+
+   private static boolean sameNode(NodeInfo a, NodeInfo b) {
+      return a.getHost().equals(b.getHost()) && a.getPort() == b.getPort();
+   }
+}
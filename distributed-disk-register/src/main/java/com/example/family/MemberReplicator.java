@@ -0,0 +1,178 @@
+package com.example.family;
+
+import family.NodeInfo;
+import family.StorageServiceGrpc;
+import family.StoreResult;
+import family.StoredMessage;
+import io.grpc.Context;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Tek bir üyeye giden replikasyon kuyruğu.
+ * Her üyenin kendi sınırlı kuyruğu, tek gönderici thread'i ve kalıcı gRPC
+ * kanalı vardır; yavaş bir üye sadece kendi kuyruğunu doldurur.
+ * Kuyruk (adet veya byte olarak) doluysa offer null döner, çağıran BUSY
+ * cevabı verebilir.
+ */
+public class MemberReplicator {
+
+   private static final long STORE_DEADLINE_SECONDS = 30;
+
+   private final NodeInfo member;
+   private final ManagedChannel channel;
+   private final BlockingQueue<Task> queue;
+   private final long maxQueuedBytes;
+   private final int chunkBytes;
+   private final AtomicLong queuedBytes = new AtomicLong();
+   private final Thread sender;
+   private volatile boolean running = true;
+
+   public MemberReplicator(NodeInfo member, int capacity, long maxQueuedBytes, int chunkBytes) {
+      this.member = member;
+      this.queue = new ArrayBlockingQueue<>(capacity);
+      this.maxQueuedBytes = maxQueuedBytes;
+      this.chunkBytes = chunkBytes;
+      this.channel = ManagedChannelBuilder
+            .forAddress(member.getHost(), member.getPort())
+            .usePlaintext()
+            .intercept(Tracing.clientInterceptor())
+            .build();
+
+      this.sender = new Thread(this::runSender, "Replicator-" + member.getHost() + ":" + member.getPort());
+      this.sender.setDaemon(true);
+      this.sender.start();
+   }
+
+   public NodeInfo getMember() {
+      return member;
+   }
+
+   /** Bu üyeye giden kalıcı kanal (okumalar da kullanır). */
+   public ManagedChannel getChannel() {
+      return channel;
+   }
+
+   public int queueDepth() {
+      return queue.size();
+   }
+
+   /**
+    * Mesajı kuyruğa ekler. Kuyruk doluysa null döner.
+    * Dönen future, üye kaydı onayladığında true ile tamamlanır.
+    */
+   public CompletableFuture<Boolean> offer(StoredMessage message) {
+      if (!running) {
+         return null;
+      }
+      long size = message.getSerializedSize();
+      if (queuedBytes.addAndGet(size) > maxQueuedBytes && !queue.isEmpty()) {
+         queuedBytes.addAndGet(-size);
+         return null;
+      }
+
+      Task task = new Task(message, size, Tracing.currentTraceId());
+      if (!queue.offer(task)) {
+         queuedBytes.addAndGet(-size);
+         return null;
+      }
+      return task.future;
+   }
+
+   private void runSender() {
+      while (running) {
+         Task task;
+         try {
+            task = queue.poll(1, TimeUnit.SECONDS);
+         } catch (InterruptedException e) {
+            break;
+         }
+         if (task == null) {
+            continue;
+         }
+         queuedBytes.addAndGet(-task.size);
+         // Gönderim, kuyruğa ekleyen isteğin iz numarasıyla yapılır
+         Context traced = Tracing.withTraceId(task.traceId);
+         Context previous = traced.attach();
+         try {
+            task.future.complete(send(task.message));
+         } finally {
+            traced.detach(previous);
+         }
+      }
+      failPending();
+   }
+
+   /**
+    * Üyeye gRPC Store isteği gönderir.
+    * Parça boyutundan büyük değerler StoreStream ile parça parça gider.
+    */
+   private boolean send(StoredMessage msg) {
+      int messageId = msg.getId();
+      try {
+         StoreResult result;
+         if (msg.getValue().size() > chunkBytes) {
+            result = ChunkedTransfer.storeStream(StorageServiceGrpc.newStub(channel), msg, chunkBytes);
+         } else {
+            result = StorageServiceGrpc.newBlockingStub(channel)
+                  .withDeadlineAfter(STORE_DEADLINE_SECONDS, TimeUnit.SECONDS)
+                  .store(msg);
+         }
+
+         if (result.getSuccess()) {
+            System.out.printf("Replicated id=%d to %s:%d%s%n",
+                  messageId, member.getHost(), member.getPort(), result.getStale() ? " (newer version kept)" : "");
+            return true;
+         } else {
+            System.err.printf("Store failed at %s:%d: %s%n",
+                  member.getHost(), member.getPort(), result.getError());
+            return false;
+         }
+
+      } catch (Exception e) {
+         System.err.printf("Failed to store at %s:%d: %s%n",
+               member.getHost(), member.getPort(), e.getMessage());
+         return false;
+      }
+   }
+
+   private void failPending() {
+      List<Task> pending = new ArrayList<>();
+      queue.drainTo(pending);
+      for (Task task : pending) {
+         queuedBytes.addAndGet(-task.size);
+         task.future.complete(false);
+      }
+   }
+
+   /**
+    * Göndericiyi durdurur, bekleyen işleri başarısız sayar ve kanalı kapatır.
+    */
+   public void shutdown() {
+      running = false;
+      sender.interrupt();
+      failPending();
+      channel.shutdownNow();
+   }
+
+   private static class Task {
+      final StoredMessage message;
+      final long size;
+      final long traceId;
+      final CompletableFuture<Boolean> future = new CompletableFuture<>();
+
+      Task(StoredMessage message, long size, long traceId) {
+         this.message = message;
+         this.size = size;
+         this.traceId = traceId;
+      }
+   }
+}
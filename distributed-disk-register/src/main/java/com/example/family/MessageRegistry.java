@@ -4,21 +4,90 @@ import family.NodeInfo;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.IntConsumer;
 
 /**
  * Mesaj ID → Hangi üyelerde saklandığı bilgisini tutan registry.
  * Lider bu bilgiyi kullanarak GET isteklerinde doğru üyeye yönlendirir.
+ * Süreli (EX) mesajların girdileri süre dolunca zamanlama çarkı ile silinir.
+ * Değişen girdilerin id'leri dinleyicilere bildirilir (yedek lider akışı).
  */
 public class MessageRegistry {
 
    // mesaj_id → [üye listesi]
    private final Map<Integer, List<NodeInfo>> messageLocations = new ConcurrentHashMap<>();
 
+   // mesaj_id → bitiş zamanı (sadece süreli mesajlar)
+   private final Map<Integer, Long> expiries = new ConcurrentHashMap<>();
+   private final TimingWheel expiryWheel;
+
+   private final List<IntConsumer> listeners = new CopyOnWriteArrayList<>();
+
+   public MessageRegistry(TimingWheel expiryWheel) {
+      this.expiryWheel = expiryWheel;
+   }
+
    /**
     * Mesajın hangi üyelerde saklandığını kaydeder.
     */
    public void registerMessage(int messageId, List<NodeInfo> members) {
       messageLocations.put(messageId, new ArrayList<>(members));
+      expiries.remove(messageId);
+      changed(messageId);
+   }
+
+   /**
+    * Mesajı süreli olarak kaydeder; expiresAt (epoch ms) geçince girdi silinir.
+    */
+   public void registerMessage(int messageId, List<NodeInfo> members, long expiresAt) {
+      registerMessage(messageId, members);
+      if (expiresAt > 0) {
+         expiries.put(messageId, expiresAt);
+         expiryWheel.schedule(expiresAt, () -> {
+            // Bu arada yeniden SET edildiyse (farklı süre ya da süresiz) dokunma
+            if (expiries.remove(messageId, expiresAt)) {
+               messageLocations.remove(messageId);
+               changed(messageId);
+            }
+         });
+         changed(messageId);
+      }
+   }
+
+   /**
+    * Girdiyi siler.
+    */
+   public void remove(int messageId) {
+      messageLocations.remove(messageId);
+      expiries.remove(messageId);
+      changed(messageId);
+   }
+
+   /**
+    * Mesajın saklandığı listeye bir üye ekler (replika onayı geldiğinde).
+    */
+   public void addLocation(int messageId, NodeInfo member) {
+      messageLocations.compute(messageId, (id, members) -> {
+         List<NodeInfo> updated = members == null ? new ArrayList<>() : new ArrayList<>(members);
+         if (!updated.contains(member)) {
+            updated.add(member);
+         }
+         return updated;
+      });
+      changed(messageId);
+   }
+
+   /**
+    * Üyeyi mesajın saklandığı listeden çıkarır (kopya silindiğinde).
+    */
+   public void removeLocation(int messageId, NodeInfo member) {
+      messageLocations.computeIfPresent(messageId, (id, members) -> {
+         List<NodeInfo> updated = new ArrayList<>(members);
+         updated.remove(member);
+         return updated;
+      });
+      changed(messageId);
    }
 
    /**
@@ -28,6 +97,39 @@ public class MessageRegistry {
       return messageLocations.getOrDefault(messageId, Collections.emptyList());
    }
 
+   /**
+    * Süreli girdinin bitiş zamanı; süresizse 0.
+    */
+   public long getExpiresAt(int messageId) {
+      return expiries.getOrDefault(messageId, 0L);
+   }
+
+   /**
+    * Şu anki tüm girdi id'leri.
+    */
+   public Set<Integer> ids() {
+      return new HashSet<>(messageLocations.keySet());
+   }
+
+   /**
+    * Girdi değiştiğinde id ile çağrılacak dinleyici ekler. Dinleyici
+    * değişikliği yapan thread'de çağrılır, hızlı dönmelidir.
+    */
+   public void addListener(IntConsumer listener) {
+      listeners.add(listener);
+   }
+
+   /** Dinleyici kayıtlıysa çıkarır ve true döner. */
+   public boolean removeListener(IntConsumer listener) {
+      return listeners.remove(listener);
+   }
+
+   private void changed(int messageId) {
+      for (IntConsumer listener : listeners) {
+         listener.accept(messageId);
+      }
+   }
+
    /**
     * Toplam kayıtlı mesaj sayısı.
     */
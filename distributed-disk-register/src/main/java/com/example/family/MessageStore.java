@@ -1,75 +1,755 @@
 package com.example.family;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import family.Codec;
+import family.NodeBloom;
+import family.ShardBloom;
+import family.StoredMessage;
+
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
 
 /**
  * Disk tabanlı mesaj deposu.
- * Her mesaj messages/ klasöründe ayrı bir dosyada saklanır.
- * Örn: SET 42 "test" → messages/42.msg
+ * Mesajlar id'ye göre SHARDS adet parçaya (StoreShard) dağıtılır; her
+ * parçanın kendi klasörü, indeksi ve tek yazıcı thread'i vardır. Parçalar
+ * DATA_DIRS ile verilen klasörlere (ayrı diskler olabilir) sırayla yerleşir.
+ * Parça içinde kayıtlar DIR_FANOUT alt klasöre dağılır.
+ * Örn: SET 42 "test" → messages/shard-3/a7/42.msg
+ *
+ * Dosya formatı: MAGIC + uzunluk önekli başlık (değersiz StoredMessage:
+ * codec, raw_length, version) + kodlanmış değer. MAGIC ile başlamayan eski
+ * dosyalar ham (RAW) değer olarak okunur.
+ *
+ * Yazmalar önce geçici dosyaya yapılır ve bitince atomik olarak yerine
+ * taşınır; böylece büyük değerler parça parça yazılabilir.
+ *
+ * Yerine taşıma, parçanın yazıcı thread'inde mevcut kaydın sürümü ile
+ * karşılaştırılarak yapılır: daha eski sürüm yeninin üzerine yazılmaz.
+ * Okuyucular her zaman tam bir dosya görür (eski ya da yeni).
+ *
+ * Başlığında expires_at olan kayıtlar o andan itibaren yokmuş gibi
+ * davranır ve zamanlama çarkı ile diskten silinir.
+ *
+ * Her parçanın Bloom filtresi bloom() ile diğer düğümlere duyurulur.
+ *
+ * snapshot() yazımları durdurmadan tüm parçaların aynı andaki halini
+ * <data dir>/snapshots/ altında hard link'lerle tutar; yedekleme ve yeni
+ * üyenin bir eşten kurulması bunu akıtarak yapılır.
  */
 public class MessageStore {
 
-   private final Path messagesDir;
+   private static final byte[] MAGIC = { 0x00, 'D', 'D', 'R' };
+   private static final String SHARD_PREFIX = "shard-";
+   private static final String SNAPSHOTS_DIR = "snapshots";
 
-   public MessageStore() {
-      // messages/ klasörünü oluştur
-      this.messagesDir = Paths.get("messages");
-      try {
-         Files.createDirectories(messagesDir);
-         System.out.println("📁 Messages directory: " + messagesDir.toAbsolutePath());
-      } catch (IOException e) {
-         System.err.println("Failed to create messages directory: " + e.getMessage());
+   /** Yazım sonucu. */
+   public enum WriteResult {
+      APPLIED, // Kayıt yazıldı (veya aynı sürüm zaten vardı)
+      STALE,   // Diskte daha yeni sürüm var, yazım uygulanmadı
+      FAILED   // G/Ç hatası
+   }
+
+   private final StoreShard[] shards;
+   // Yeniden başlayan düğümün sayacı eski bir sürümle çakışmasın diye
+   private final long bloomEpoch = ThreadLocalRandom.current().nextLong(1L << 40) << 20;
+   private final AtomicLong snapshotCounter = new AtomicLong();
+   // Kesimler sırayla alınır; iç içe geçen iki kesim parçaları farklı mandallarda bekletirdi
+   private final Object snapshotLock = new Object();
+   private final long snapshotCutTimeoutMs;
+   // GetBloom cevabındaki filtrelerin toplam sınırı (gRPC mesaj sınırı 4 MB)
+   private final long bloomMaxBytes;
+
+   public MessageStore(NodeConfig config, TimingWheel expiryWheel) {
+      List<Path> dataDirs = new ArrayList<>();
+      for (String dir : config.getString("DATA_DIRS", "messages").split(",")) {
+         if (!dir.isBlank()) {
+            dataDirs.add(Paths.get(dir.trim()));
+         }
+      }
+      int shardCount = Math.max(1, config.getInt("SHARDS", Runtime.getRuntime().availableProcessors()));
+      int fanout = Math.max(0, Math.min(256, config.getInt("DIR_FANOUT", 256)));
+      int bloomBitsPerKey = Math.max(1, config.getInt("BLOOM_BITS_PER_KEY", 10));
+      this.snapshotCutTimeoutMs = Math.max(1, config.getLong("SNAPSHOT_CUT_TIMEOUT_MS", 5_000));
+      this.bloomMaxBytes = Math.max(0, config.getLong("BLOOM_MAX_MESSAGE_BYTES", 3L << 20));
+
+      Path[] shardDirs = new Path[shardCount];
+      for (int i = 0; i < shardCount; i++) {
+         shardDirs[i] = dataDirs.get(i % dataDirs.size()).resolve(SHARD_PREFIX + i);
+      }
+
+      // Düz messages/ klasöründen ya da farklı shard/fanout ayarından kalan kayıtlar yerine taşınır
+      for (Path dataDir : dataDirs) {
+         relocateMisplaced(dataDir, shardDirs, fanout);
+         // Önceki çalışmadan yarım kalmış anlık görüntüler
+         deleteRecursively(dataDir.resolve(SNAPSHOTS_DIR));
+      }
+
+      this.shards = new StoreShard[shardCount];
+      for (int i = 0; i < shardCount; i++) {
+         try {
+            shards[i] = new StoreShard(i, shardDirs[i], fanout, expiryWheel, bloomBitsPerKey);
+         } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open shard " + shardDirs[i], e);
+         }
       }
+      System.out.println("📁 Messages directories: " + dataDirs + " (" + shardCount + " shards, "
+            + size() + " messages)");
    }
 
    /**
     * Mesajı diske kaydeder.
-    * Dosya adı: messages/<id>.msg
+    * Dosya adı: <data dir>/shard-<n>/<bucket>/<id>.msg
+    * ByteString'in iç tamponları doğrudan kanala yazılır, kopya yapılmaz.
     */
-   public void set(int id, String message) {
-      Path file = messagesDir.resolve(id + ".msg");
-      try (BufferedWriter writer = Files.newBufferedWriter(file)) {
-         writer.write(message);
-         System.out.println("Stored to disk: " + file.getFileName());
+   public WriteResult set(StoredMessage message) {
+      int id = message.getId();
+      try (RecordWriter writer = openWriter(message)) {
+         writer.append(message.getValue());
+         WriteResult result = writer.commit();
+         if (result == WriteResult.STALE) {
+            System.out.println("Stale write ignored: " + id + ".msg (v" + message.getVersion() + ")");
+         } else {
+            System.out.println("Stored to disk: " + id + ".msg (" + message.getCodec() + ")");
+         }
+         return result;
       } catch (IOException e) {
          System.err.println("Failed to write message " + id + ": " + e.getMessage());
+         return WriteResult.FAILED;
       }
    }
 
    /**
-    * Mesajı diskten okur. Bulunamazsa null döner.
+    * Parça parça yazma başlatır. Başlıktaki değer (varsa) yazılmaz,
+    * veri append ile eklenir ve commit ile görünür hale gelir.
     */
-   public String get(int id) {
-      Path file = messagesDir.resolve(id + ".msg");
-      if (!Files.exists(file)) {
-         return null;
+   public RecordWriter openWriter(StoredMessage header) throws IOException {
+      return shardFor(header.getId()).openWriter(header);
+   }
+
+   /**
+    * Kaydın sürümünü döner; kayıt yoksa -1.
+    */
+   public long versionOf(int id) throws IOException {
+      return shardFor(id).versionOf(id);
+   }
+
+   /**
+    * Yerel kayıtların en büyük sürümü; kayıt yoksa 0.
+    */
+   public long maxVersion() {
+      long max = 0;
+      for (StoreShard shard : shards) {
+         max = Math.max(max, shard.maxVersion());
+      }
+      return max;
+   }
+
+   /**
+    * Kaydı, diskteki sürümü verilen sürüm ise siler. Daha yeni bir sürüm
+    * yazıldıysa ya da G/Ç hatasında false döner.
+    */
+   public boolean deleteIfVersion(int id, long version) {
+      try {
+         boolean deleted = shardFor(id).deleteIfVersion(id, version);
+         if (deleted) {
+            System.out.println("Deleted from disk: " + id + ".msg (v" + version + ")");
+         }
+         return deleted;
+      } catch (IOException e) {
+         System.err.println("Failed to delete message " + id + ": " + e.getMessage());
+         return false;
       }
-      try (BufferedReader reader = Files.newBufferedReader(file)) {
-         StringBuilder sb = new StringBuilder();
-         String line;
-         while ((line = reader.readLine()) != null) {
-            if (sb.length() > 0)
-               sb.append("\n");
-            sb.append(line);
+   }
+
+   /**
+    * Mesajı diskten okur. Bulunamazsa null döner.
+    * Değer diskteki (kodlanmış) haliyle döner, çözmek için ValueCodec.decode kullanılır.
+    */
+   public StoredMessage get(int id) {
+      Tracing.StoreEvent event = Tracing.storeBegin();
+      try (RecordReader reader = shardFor(id).openReader(id)) {
+         if (reader == null) {
+            Tracing.storeEnd(event, "get", id, 0, "NOT_FOUND");
+            return null;
          }
-         return sb.toString();
+         // Okunan dizi başka yerde kullanılmadığı için kopyasız sarılır
+         byte[] value = reader.getContent().readNBytes((int) reader.getContentLength());
+         Tracing.storeEnd(event, "get", id, value.length, "FOUND");
+         return reader.getHeader().toBuilder()
+               .setValue(UnsafeByteOperations.unsafeWrap(value))
+               .build();
       } catch (IOException e) {
+         Tracing.storeEnd(event, "get", id, 0, "FAILED");
          System.err.println("Failed to read message " + id + ": " + e.getMessage());
          return null;
       }
    }
 
    /**
-    * Toplam mesaj sayısını döner.
+    * Mesajı parça parça okumak için açar. Bulunamazsa null döner.
+    */
+   public RecordReader openReader(int id) throws IOException {
+      // Akışla okumada ölçülen, kaydın bulunup açılmasıdır; değer sonra okunur
+      Tracing.StoreEvent event = Tracing.storeBegin();
+      RecordReader reader = shardFor(id).openReader(id);
+      Tracing.storeEnd(event, "open", id, reader == null ? 0 : reader.getContentLength(),
+            reader == null ? "NOT_FOUND" : "FOUND");
+      return reader;
+   }
+
+   /**
+    * [from, to] aralığındaki yerel kayıtları id sırasıyla döner.
+    * Parçaların sıralı indeksleri birleştirilir; değerler ancak iteratör
+    * ilerledikçe diskten okunur. Bu arada silinen kayıtlar atlanır.
+    */
+   public Iterator<StoredMessage> scan(int from, int to) {
+      List<Iterator<Integer>> sources = new ArrayList<>();
+      for (StoreShard shard : shards) {
+         sources.add(shard.ids(from, to));
+      }
+      Iterator<Integer> ids = new SortedMerge<>(sources, Comparator.naturalOrder());
+
+      return new Iterator<StoredMessage>() {
+         private StoredMessage nextMessage = advance();
+
+         private StoredMessage advance() {
+            while (ids.hasNext()) {
+               StoredMessage message = get(ids.next());
+               if (message != null) {
+                  return message;
+               }
+            }
+            return null;
+         }
+
+         @Override
+         public boolean hasNext() {
+            return nextMessage != null;
+         }
+
+         @Override
+         public StoredMessage next() {
+            if (nextMessage == null) {
+               throw new NoSuchElementException();
+            }
+            StoredMessage result = nextMessage;
+            nextMessage = advance();
+            return result;
+         }
+      };
+   }
+
+   /**
+    * Parça yazıcılarını kapatır; sonrasında yazım kabul edilmez.
+    */
+   public void close() {
+      for (StoreShard shard : shards) {
+         shard.close();
+      }
+   }
+
+   /**
+    * Toplam mesaj sayısını döner (parça indekslerinden, diske gitmeden).
     */
    public int size() {
+      int total = 0;
+      for (StoreShard shard : shards) {
+         total += shard.size();
+      }
+      return total;
+   }
+
+   /**
+    * Depo istatistikleri; parçaların artımlı tuttuğu değerlerden toplanır.
+    */
+   public Stats stats() {
+      int count = 0;
+      long bytes = 0;
+      int largest = 0;
+      for (StoreShard shard : shards) {
+         count += shard.size();
+         bytes += shard.totalBytes();
+         largest = Math.max(largest, shard.largestValue());
+      }
+      return new Stats(count, bytes, largest);
+   }
+
+   /**
+    * Veri klasörlerinin bulunduğu disklerdeki en az boş alan (byte).
+    */
+   public long freeDiskBytes() {
+      long free = Long.MAX_VALUE;
+      for (StoreShard shard : shards) {
+         try {
+            free = Math.min(free, Files.getFileStore(shard.getDir()).getUsableSpace());
+         } catch (IOException e) {
+            // Ölçülemeyen disk karşılaştırmaya katılmaz
+         }
+      }
+      return free;
+   }
+
+   /**
+    * Ham kayıt dosyası yazıcısı (anlık görüntüden geri yükleme için).
+    * Kayıt yine sürüm kontrolüyle yerine konur.
+    */
+   public RecordWriter openRawWriter(int id) throws IOException {
+      return shardFor(id).openRawWriter(id);
+   }
+
+   /**
+    * Tüm parçaların aynı andaki halinin anlık görüntüsünü başlatır.
+    * Parçalar kısa bir an için (indeks kopyası kadar) birlikte durur; dosyalar
+    * okunurken bağlanır. Görüntü kapatılınca diskten silinir.
+    *
+    * Aynı anda tek kesim alınır. Parçalar SNAPSHOT_CUT_TIMEOUT_MS içinde
+    * buluşamazsa görüntü iptal edilir ve yazıcılar devam eder.
+    */
+   public Snapshot snapshot() throws IOException {
+      synchronized (snapshotLock) {
+         String name = System.currentTimeMillis() + "-" + snapshotCounter.incrementAndGet();
+         CountDownLatch cut = new CountDownLatch(shards.length);
+         List<Future<StoreShard.ShardSnapshot>> started = new ArrayList<>();
+         for (StoreShard shard : shards) {
+            Path dir = shard.getDir().getParent().resolve(SNAPSHOTS_DIR).resolve(name)
+                  .resolve(shard.getDir().getFileName());
+            started.add(shard.beginSnapshot(dir, cut, snapshotCutTimeoutMs));
+         }
+
+         // Tüm parçalar beklenir; biri başarısızsa başlamış olanlar da kapatılır
+         List<StoreShard.ShardSnapshot> parts = new ArrayList<>();
+         Throwable failure = null;
+         boolean interrupted = false;
+         for (Future<StoreShard.ShardSnapshot> f : started) {
+            // Kesim süresiyle sınırlı; kesilse de parça alınır ki açık kalmasın
+            while (true) {
+               try {
+                  parts.add(f.get());
+                  break;
+               } catch (InterruptedException e) {
+                  interrupted = true;
+               } catch (ExecutionException e) {
+                  failure = e.getCause();
+                  break;
+               }
+            }
+         }
+         if (interrupted) {
+            Thread.currentThread().interrupt();
+            new Snapshot(parts).close();
+            throw new InterruptedIOException("interrupted while starting snapshot");
+         }
+         if (failure != null) {
+            new Snapshot(parts).close();
+            throw new IOException("failed to start snapshot", failure);
+         }
+         return new Snapshot(parts);
+      }
+   }
+
+   /**
+    * Parçaların Bloom filtreleri; sadece sürümü istekte bulunanın
+    * elindekinden farklı olanlar. Filtreler toplam bloomMaxBytes'a kadar
+    * eklenir; sığmayan parçalar filtresiz döner ve sonraki istekte
+    * gönderilir. Tek parçası sınırdan büyük olan filtre hiç gönderilmez,
+    * koordinatör o parçayı bilinmiyor sayar.
+    */
+   public NodeBloom bloom(List<Long> knownGenerations) {
+      NodeBloom.Builder result = NodeBloom.newBuilder().setShardCount(shards.length);
+      long budget = bloomMaxBytes;
+      for (int i = 0; i < shards.length; i++) {
+         long generation = bloomEpoch + shards[i].bloomGeneration();
+         long known = i < knownGenerations.size() ? knownGenerations.get(i) : 0;
+         if (generation == known) {
+            continue;
+         }
+         ShardBloom.Builder changed = ShardBloom.newBuilder().setShard(i);
+         BloomFilter filter = shards[i].bloom();
+         if (filter.sizeInBytes() <= budget) {
+            budget -= filter.sizeInBytes();
+            changed.setGeneration(generation).setFilter(filter.toProto());
+         }
+         result.addChanged(changed);
+      }
+      return result.build();
+   }
+
+   private StoreShard shardFor(int id) {
+      return shards[shardIndex(id, shards.length)];
+   }
+
+   static int shardIndex(int id, int shardCount) {
+      // Ardışık id'ler farklı parçalara dağılsın
+      int h = id * 0x9E3779B9;
+      return Math.floorMod(h ^ (h >>> 16), shardCount);
+   }
+
+   /**
+    * Veri klasörünün kökündeki (eski düz düzen), yanlış parçadaki ya da
+    * yanlış alt klasördeki kayıtları doğru yere taşır. Hedefte kayıt varsa
+    * yüksek sürümlü olan kalır.
+    */
+   private static void relocateMisplaced(Path dataDir, Path[] shardDirs, int fanout) {
+      if (!Files.isDirectory(dataDir)) {
+         return;
+      }
+      List<Path> candidates = new ArrayList<>();
+      try (Stream<Path> entries = Files.list(dataDir)) {
+         for (Path entry : (Iterable<Path>) entries::iterator) {
+            if (entry.getFileName().toString().startsWith(SHARD_PREFIX) && Files.isDirectory(entry)) {
+               try (Stream<Path> inShard = Files.walk(entry, 2)) {
+                  inShard.filter(p -> p.toString().endsWith(".msg")).forEach(candidates::add);
+               }
+            } else if (entry.toString().endsWith(".msg")) {
+               candidates.add(entry);
+            }
+         }
+      } catch (IOException e) {
+         System.err.println("Failed to scan " + dataDir + ": " + e.getMessage());
+         return;
+      }
+
+      int moved = 0;
+      for (Path file : candidates) {
+         Integer id = idOf(file);
+         if (id == null) {
+            continue;
+         }
+         Path target = StoreShard.recordPath(shardDirs[shardIndex(id, shardDirs.length)], id, fanout);
+         if (file.equals(target)) {
+            continue;
+         }
+         try {
+            Files.createDirectories(target.getParent());
+            if (Files.exists(target) && versionAt(target, id) >= versionAt(file, id)) {
+               Files.delete(file);
+            } else {
+               Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            moved++;
+         } catch (IOException e) {
+            System.err.println("Failed to relocate " + file + ": " + e.getMessage());
+         }
+      }
+      if (moved > 0) {
+         System.out.println("📁 Relocated " + moved + " messages into shards under " + dataDir);
+      }
+   }
+
+   private static long versionAt(Path file, int id) throws IOException {
+      try (RecordReader reader = readRecord(file, id)) {
+         return reader == null ? -1 : reader.getHeader().getVersion();
+      }
+   }
+
+   /** "<id>.msg" dosya adından id; uymuyorsa null. */
+   static Integer idOf(Path file) {
+      String name = file.getFileName().toString();
+      try {
+         return Integer.parseInt(name.substring(0, name.length() - ".msg".length()));
+      } catch (NumberFormatException | IndexOutOfBoundsException e) {
+         return null;
+      }
+   }
+
+   /**
+    * Kayıt dosyasını açar ve başlığını okur. Dosya yoksa null döner.
+    */
+   static RecordReader readRecord(Path file, int id) throws IOException {
+      FileChannel channel;
       try {
-         return (int) Files.list(messagesDir)
-               .filter(p -> p.toString().endsWith(".msg"))
-               .count();
+         channel = FileChannel.open(file, StandardOpenOption.READ);
+      } catch (NoSuchFileException e) {
+         return null;
+      }
+
+      // Boyut açılan kanaldan alınır; dosya bu arada yenisiyle değişse bile tutarlı kalır
+      InputStream in = Channels.newInputStream(channel);
+      try {
+         long fileSize = channel.size();
+         byte[] magic = in.readNBytes(MAGIC.length);
+         if (!Arrays.equals(magic, MAGIC)) {
+            // Başlıksız eski kayıt: baştan itibaren ham değer
+            channel.position(0);
+            StoredMessage header = StoredMessage.newBuilder()
+                  .setId(id)
+                  .setCodec(Codec.RAW)
+                  .setRawLength((int) fileSize)
+                  .build();
+            return new RecordReader(header, in, fileSize);
+         }
+
+         int firstByte = in.read();
+         if (firstByte < 0) {
+            throw new EOFException("truncated record header: " + file.getFileName());
+         }
+         int headerSize = CodedInputStream.readRawVarint32(firstByte, in);
+         StoredMessage header = StoredMessage.parseFrom(in.readNBytes(headerSize));
+         long offset = MAGIC.length + CodedOutputStream.computeUInt32SizeNoTag(headerSize) + headerSize;
+         return new RecordReader(header, in, fileSize - offset);
       } catch (IOException e) {
-         return 0;
+         in.close();
+         throw e;
+      }
+   }
+
+   static byte[] encodeHeader(StoredMessage message) throws IOException {
+      StoredMessage header = message.toBuilder().clearValue().build();
+      int headerSize = header.getSerializedSize();
+      byte[] bytes = new byte[MAGIC.length + CodedOutputStream.computeUInt32SizeNoTag(headerSize) + headerSize];
+      System.arraycopy(MAGIC, 0, bytes, 0, MAGIC.length);
+      CodedOutputStream out = CodedOutputStream.newInstance(bytes, MAGIC.length, bytes.length - MAGIC.length);
+      out.writeUInt32NoTag(headerSize);
+      header.writeTo(out);
+      out.flush();
+      return bytes;
+   }
+
+   static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+      while (buffer.hasRemaining()) {
+         channel.write(buffer);
+      }
+   }
+
+   /**
+    * Depo istatistikleri: kayıt sayısı, diskteki toplam byte ve en büyük
+    * (çözülmüş) değerin boyutu.
+    */
+   public static class Stats {
+
+      private final int count;
+      private final long bytes;
+      private final int largestValue;
+
+      Stats(int count, long bytes, int largestValue) {
+         this.count = count;
+         this.bytes = bytes;
+         this.largestValue = largestValue;
+      }
+
+      public int getCount() {
+         return count;
+      }
+
+      public long getBytes() {
+         return bytes;
+      }
+
+      public int getLargestValue() {
+         return largestValue;
+      }
+   }
+
+   /**
+    * Geçici dosyaya parça parça yazan yazıcı. commit edilmeden kapatılırsa
+    * geçici dosya silinir ve eski değer olduğu gibi kalır.
+    */
+   public static class RecordWriter implements Closeable {
+
+      private final StoreShard shard;
+      private final StoredMessage header; // Ham yazımda null; commit'te dosyadan okunur
+      private final int id;
+      private final Path tmp;
+      private final FileChannel channel;
+      private final Tracing.StoreEvent event = Tracing.storeBegin();
+      private boolean committed = false;
+
+      RecordWriter(StoreShard shard, StoredMessage header, Path tmp, FileChannel channel) {
+         this(shard, header, header.getId(), tmp, channel);
+      }
+
+      RecordWriter(StoreShard shard, StoredMessage header, int id, Path tmp, FileChannel channel) {
+         this.shard = shard;
+         this.header = header;
+         this.id = id;
+         this.tmp = tmp;
+         this.channel = channel;
+      }
+
+      public void append(ByteString data) throws IOException {
+         for (ByteBuffer buffer : data.asReadOnlyByteBufferList()) {
+            writeFully(channel, buffer);
+         }
+      }
+
+      /**
+       * Kaydı görünür yapar. Diskte daha yeni sürüm varsa STALE döner
+       * ve geçici dosya silinir.
+       */
+      public WriteResult commit() throws IOException {
+         long fileBytes = channel.position();
+         channel.close();
+         StoredMessage installed = header != null ? header : rawHeader();
+         WriteResult result = shard.install(installed, tmp, fileBytes);
+         committed = true;
+         // Geçici dosyaya yazma + kurulum (tek yazıcı thread'ini bekleme dahil)
+         Tracing.storeEnd(event, "write", id, fileBytes, result);
+         return result;
+      }
+
+      @Override
+      public void close() throws IOException {
+         if (!committed) {
+            channel.close();
+            Files.deleteIfExists(tmp);
+         }
+      }
+
+      /** Ham yazılmış dosyanın başlığı. */
+      private StoredMessage rawHeader() throws IOException {
+         try (RecordReader reader = readRecord(tmp, id)) {
+            if (reader == null) {
+               throw new NoSuchFileException(tmp.toString());
+            }
+            return reader.getHeader();
+         }
+      }
+   }
+
+   /**
+    * Depo anlık görüntüsü. files() görüntüdeki kayıt dosyalarını döner;
+    * close() görüntü klasörünü siler.
+    */
+   public static class Snapshot implements Closeable {
+
+      private final List<StoreShard.ShardSnapshot> parts;
+
+      Snapshot(List<StoreShard.ShardSnapshot> parts) {
+         this.parts = parts;
+      }
+
+      /** Görüntüdeki kayıt sayısı. */
+      public int size() {
+         int total = 0;
+         for (StoreShard.ShardSnapshot part : parts) {
+            total += part.size();
+         }
+         return total;
+      }
+
+      /**
+       * Kayıt dosyaları, parça parça. Görüntü alındıktan sonra dışarıdan
+       * silinmiş kayıtlar atlanır.
+       */
+      public Iterator<Path> files() {
+         List<Iterator<Path>> iterators = new ArrayList<>();
+         for (StoreShard.ShardSnapshot part : parts) {
+            iterators.add(part.files());
+         }
+         Iterator<Iterator<Path>> outer = iterators.iterator();
+         return new Iterator<Path>() {
+            private Iterator<Path> current = Collections.emptyIterator();
+            private Path nextFile = advance();
+
+            private Path advance() {
+               while (true) {
+                  while (!current.hasNext()) {
+                     if (!outer.hasNext()) {
+                        return null;
+                     }
+                     current = outer.next();
+                  }
+                  Path p = current.next();
+                  if (p != null) {
+                     return p;
+                  }
+               }
+            }
+
+            @Override
+            public boolean hasNext() {
+               return nextFile != null;
+            }
+
+            @Override
+            public Path next() {
+               if (nextFile == null) {
+                  throw new NoSuchElementException();
+               }
+               Path result = nextFile;
+               nextFile = advance();
+               return result;
+            }
+         };
+      }
+
+      @Override
+      public void close() {
+         for (StoreShard.ShardSnapshot part : parts) {
+            part.finish();
+            deleteRecursively(part.getDir().getParent());
+         }
+      }
+   }
+
+   private static void deleteRecursively(Path root) {
+      if (!Files.exists(root)) {
+         return;
+      }
+      try (Stream<Path> paths = Files.walk(root)) {
+         paths.sorted(Comparator.reverseOrder()).forEach(p -> {
+            try {
+               Files.deleteIfExists(p);
+            } catch (IOException ignored) {
+            }
+         });
+      } catch (IOException e) {
+         System.err.println("Failed to delete " + root + ": " + e.getMessage());
+      }
+   }
+
+   /**
+    * Kaydın başlığını ve kodlanmış değer akışını sunan okuyucu.
+    */
+   public static class RecordReader implements Closeable {
+
+      private final StoredMessage header;
+      private final InputStream content;
+      private final long contentLength;
+
+      private RecordReader(StoredMessage header, InputStream content, long contentLength) {
+         this.header = header;
+         this.content = content;
+         this.contentLength = contentLength;
+      }
+
+      /** Değersiz başlık (id, codec, raw_length, version, expires_at). */
+      public StoredMessage getHeader() {
+         return header;
+      }
+
+      /** Kodlanmış değer akışı. */
+      public InputStream getContent() {
+         return content;
+      }
+
+      public long getContentLength() {
+         return contentLength;
+      }
+
+      @Override
+      public void close() throws IOException {
+         content.close();
       }
    }
 }
@@ -0,0 +1,99 @@
+package com.example.family;
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * node.conf dosyasını okuyan genel ayar sınıfı.
+ * Format: her satırda KEY=VALUE, '#' ile başlayan satırlar yorumdur.
+ */
+public class NodeConfig {
+
+   private static final String CONFIG_FILE = "node.conf";
+
+   private final Map<String, String> values;
+
+   public NodeConfig() {
+      this.values = readValues(Paths.get(CONFIG_FILE));
+      System.out.println("⚙️ Node config loaded: " + values.size() + " entries");
+   }
+
+   public NodeConfig(Map<String, String> values) {
+      this.values = new HashMap<>(values);
+   }
+
+   /**
+    * Bu ayarların üzerine verilen değerleri yazan yeni ayar nesnesi
+    * (aynı JVM'de farklı port ve klasörlerle düğüm açmak için).
+    */
+   public NodeConfig with(Map<String, String> overrides) {
+      Map<String, String> merged = new HashMap<>(values);
+      merged.putAll(overrides);
+      return new NodeConfig(merged);
+   }
+
+   private Map<String, String> readValues(Path configPath) {
+      Map<String, String> result = new HashMap<>();
+
+      if (!Files.exists(configPath)) {
+         System.out.println("⚠️ node.conf not found, using defaults");
+         return result;
+      }
+
+      try (BufferedReader reader = Files.newBufferedReader(configPath)) {
+         String line;
+         while ((line = reader.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+               continue;
+            }
+            int eq = line.indexOf('=');
+            if (eq > 0) {
+               result.put(line.substring(0, eq).trim(), line.substring(eq + 1).trim());
+            }
+         }
+      } catch (IOException e) {
+         System.err.println("Error reading node.conf: " + e.getMessage());
+      }
+
+      return result;
+   }
+
+   public String getString(String key, String defaultValue) {
+      String value = values.get(key);
+      return (value == null || value.isEmpty()) ? defaultValue : value;
+   }
+
+   public int getInt(String key, int defaultValue) {
+      try {
+         return Integer.parseInt(getString(key, String.valueOf(defaultValue)));
+      } catch (NumberFormatException e) {
+         System.err.println("Invalid value for " + key + ", using default: " + defaultValue);
+         return defaultValue;
+      }
+   }
+
+   public long getLong(String key, long defaultValue) {
+      try {
+         return Long.parseLong(getString(key, String.valueOf(defaultValue)));
+      } catch (NumberFormatException e) {
+         System.err.println("Invalid value for " + key + ", using default: " + defaultValue);
+         return defaultValue;
+      }
+   }
+
+   public double getDouble(String key, double defaultValue) {
+      try {
+         return Double.parseDouble(getString(key, String.valueOf(defaultValue)));
+      } catch (NumberFormatException e) {
+         System.err.println("Invalid value for " + key + ", using default: " + defaultValue);
+         return defaultValue;
+      }
+   }
+
+   public boolean getBoolean(String key, boolean defaultValue) {
+      return Boolean.parseBoolean(getString(key, String.valueOf(defaultValue)));
+   }
+}
@@ -5,314 +5,220 @@ import family.*;
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.Server;
-import io.grpc.ServerBuilder;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
-import java.io.PrintWriter;
 import java.io.IOException;
 import java.net.ServerSocket;
-import java.net.Socket;
 import java.time.LocalDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.*;
 
+/**
+ * Bir aile üyesi. main() node.conf ile tek düğüm açar; ClusterHarness aynı
+ * JVM'de farklı port ve klasörlerle birden fazla düğüm açıp kapatabilir.
+ */
 public class NodeMain {
 
-    private static final int START_PORT = 5555;
     private static final int PRINT_INTERVAL_SECONDS = 10;
 
-    // Mesaj deposu - disk tabanlı
-    private static final MessageStore messageStore = new MessageStore();
+    private final NodeConfig nodeConfig;
+    private final String host;
+    private final int startPort;
+    private final int leaderClientPort;
+    private final int port;
+    private final NodeInfo self;
 
-    // 4. Aşama - Tolerance config ve message registry
-    private static ToleranceConfig toleranceConfig;
-    private static MessageRegistry messageRegistry;
+    // Mesaj deposu - disk tabanlı, parçalı (shard)
+    private MessageStore messageStore;
+    private TimingWheel expiryWheel;
 
-    // Round-robin için index
-    private static int roundRobinIndex = 0;
+    // 4. Aşama - Tolerance config ve message registry
+    private ToleranceConfig toleranceConfig;
+    private MessageRegistry messageRegistry;
+
+    // Üye başına replikasyon kuyrukları
+    private ReplicationManager replicationManager;
+    private HintedHandoff hintedHandoff;
+    private LoadTracker loadTracker;
+    private ChatInbox chatInbox;
+    private Broadcaster broadcaster;
+    private AdmissionControl admissionControl;
+    private Coordinator coordinator;
+    private Server server;
+
+    // Lider kirası ve yedek liderin konum kaydı kopyası
+    private LeaderLease leaderLease;
+    private LocationMirror locationMirror;
+
+    // Durum yazıcıları ve sağlık kontrolü; stop() ile kapatılır
+    private final List<ScheduledExecutorService> schedulers = new CopyOnWriteArrayList<>();
 
     public static void main(String[] args) throws Exception {
-        String host = "127.0.0.1";
-        int port = findFreePort(START_PORT);
+        NodeMain node = new NodeMain(new NodeConfig());
+        node.start();
+        node.awaitTermination();
+    }
 
-        NodeInfo self = NodeInfo.newBuilder()
+    /**
+     * PORT verilmişse o port, yoksa START_PORT'tan başlayan ilk boş port kullanılır.
+     */
+    public NodeMain(NodeConfig nodeConfig) {
+        this.nodeConfig = nodeConfig;
+        this.host = nodeConfig.getString("HOST", "127.0.0.1");
+        this.startPort = nodeConfig.getInt("START_PORT", 5555);
+        this.leaderClientPort = nodeConfig.getInt("LEADER_CLIENT_PORT", 6666);
+        int fixedPort = nodeConfig.getInt("PORT", 0);
+        this.port = fixedPort > 0 ? fixedPort : findFreePort(startPort);
+        this.self = NodeInfo.newBuilder()
                 .setHost(host)
                 .setPort(port)
                 .build();
-
-        NodeRegistry registry = new NodeRegistry();
-        FamilyServiceImpl service = new FamilyServiceImpl(registry, self);
-        StorageServiceImpl storageService = new StorageServiceImpl(messageStore);
-
-        // 4. Aşama - Tolerance ve message registry başlat
-        toleranceConfig = new ToleranceConfig();
-        messageRegistry = new MessageRegistry();
-
-        Server server = ServerBuilder
-                .forPort(port)
-                .addService(service)
-                .addService(storageService)
-                .build()
-                .start();
-
-        System.out.printf("Node started on %s:%d%n", host, port);
-
-        // Eğer bu ilk node ise (port 5555), TCP 6666'da text dinlesin
-        if (port == START_PORT) {
-            startLeaderTextListener(registry, self);
-            startStatusPrinter(); // Lider mesaj durumunu yazdırsın
-        }
-
-        discoverExistingNodes(host, port, registry, self);
-        startFamilyPrinter(registry, self);
-        startHealthChecker(registry, self);
-
-        server.awaitTermination();
     }
 
-    private static void startLeaderTextListener(NodeRegistry registry, NodeInfo self) {
-        new Thread(() -> {
-            try (ServerSocket serverSocket = new ServerSocket(6666)) {
-                System.out.printf("Leader listening for text on TCP %s:%d%n", self.getHost(), 6666);
-
-                while (true) {
-                    Socket client = serverSocket.accept();
-                    new Thread(() -> handleClientTextConnection(client, registry, self)).start();
-                }
-
-            } catch (IOException e) {
-                System.err.println("Error in leader text listener: " + e.getMessage());
-            }
-        }, "LeaderTextListener").start();
+    public NodeInfo getSelf() {
+        return self;
     }
 
-    private static void handleClientTextConnection(Socket client,
-            NodeRegistry registry,
-            NodeInfo self) {
-        System.out.println("New TCP client connected: " + client.getRemoteSocketAddress());
-        try (BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream()));
-                PrintWriter writer = new PrintWriter(client.getOutputStream(), true)) {
-
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String text = line.trim();
-                if (text.isEmpty())
-                    continue;
-
-                System.out.println("📝 Received from TCP: " + text);
-                Command cmd = Command.parse(text);
+    public void start() throws IOException {
+        int chunkBytes = nodeConfig.getInt("STREAM_CHUNK_BYTES", 64 * 1024);
+        // Süreli (EX) kayıtların silinmesi için ortak zamanlama çarkı
+        expiryWheel = new TimingWheel(nodeConfig.getLong("EXPIRY_TICK_MS", 100));
+        messageStore = new MessageStore(nodeConfig, expiryWheel);
+        expiryWheel.start();
+        bootstrapFromPeer(nodeConfig.getString("BOOTSTRAP_FROM", ""));
 
-                switch (cmd.getType()) {
-                    case SET:
-                        handleSet(cmd, registry, self, writer);
-                        break;
-
-                    case GET:
-                        handleGet(cmd, registry, self, writer);
-                        break;
+        NodeRegistry registry = new NodeRegistry();
+        VersionClock versionClock = new VersionClock(self, nodeConfig);
+        // Diskteki kayıtlar (eski sürüm düzeniyle yazılmış olanlar dahil) yeni yazımları eskitmesin
+        versionClock.observe(messageStore.maxVersion());
+        replicationManager = new ReplicationManager(nodeConfig, chunkBytes);
+        loadTracker = new LoadTracker(self, messageStore, replicationManager, nodeConfig);
+        chatInbox = new ChatInbox(nodeConfig);
+        broadcaster = new Broadcaster(self, registry, replicationManager, chatInbox, nodeConfig);
 
-                    case UNKNOWN:
-                    default:
-                        writer.println("ERROR: Unknown command. Use SET <id> <message> or GET <id>");
-                        System.out.println("❓ Unknown command: " + text);
-                        break;
-                }
-            }
+        // 4. Aşama - Tolerance ve message registry başlat
+        int tolerance = nodeConfig.getInt("TOLERANCE", 0);
+        toleranceConfig = tolerance > 0 ? new ToleranceConfig(tolerance) : new ToleranceConfig();
+        messageRegistry = new MessageRegistry(expiryWheel);
+        leaderLease = new LeaderLease(self, replicationManager, nodeConfig);
+        locationMirror = new LocationMirror(self, messageRegistry, replicationManager, nodeConfig);
+
+        FamilyServiceImpl service = new FamilyServiceImpl(registry, self, loadTracker, broadcaster, chatInbox,
+                leaderLease, locationMirror);
+        StorageServiceImpl storageService = new StorageServiceImpl(messageStore, chunkBytes, versionClock,
+                loadTracker);
+        hintedHandoff = new HintedHandoff(self, nodeConfig, messageStore, messageRegistry, registry,
+                replicationManager);
+        hintedHandoff.start(nodeConfig.getLong("HINT_REPLAY_INTERVAL_MS", 5_000));
+
+        // Ağ thread'leri, küçük çağrılar ve disk işi yapan çağrılar ayrı havuzlarda
+        server = GrpcServerFactory.start(port, nodeConfig, service, storageService);
 
-        } catch (IOException e) {
-            System.err.println("TCP client handler error: " + e.getMessage());
-        } finally {
-            try {
-                client.close();
-            } catch (IOException ignored) {
-            }
-        }
-    }
+        System.out.printf("Node started on %s:%d%n", host, port);
 
-    /**
-     * 4. Aşama - SET komutu işleme
-     * 1. Lider kendine kaydeder
-     * 2. Tolerance sayısı kadar üyeye gRPC ile gönderir
-     * 3. Hangi üyelerde saklandığını kaydeder
-     */
-    private static void handleSet(Command cmd, NodeRegistry registry, NodeInfo self, PrintWriter writer) {
-        int messageId = cmd.getMessageId();
-        String messageText = cmd.getMessageText();
-        int tolerance = toleranceConfig.getTolerance();
-
-        // Üyeleri al (kendimiz hariç)
-        List<NodeInfo> allMembers = registry.snapshot();
-        List<NodeInfo> otherMembers = new ArrayList<>();
-        for (NodeInfo n : allMembers) {
-            if (!(n.getHost().equals(self.getHost()) && n.getPort() == self.getPort())) {
-                otherMembers.add(n);
+        // İstemci bağlantıları için hız sınırı ve adil kuyruk
+        admissionControl = new AdmissionControl(nodeConfig);
+        coordinator = new Coordinator(self, registry, messageStore, messageRegistry,
+                toleranceConfig, new ValueCodec(nodeConfig), replicationManager, hintedHandoff, versionClock,
+                loadTracker, broadcaster, admissionControl, nodeConfig);
+
+        // Her düğüm kendi istemci portunda SET/GET karşılar (6667, 6668, ...).
+        // TCP 6666 liderindir: kirayı tutan düğüm açar, kaybeden kapatır.
+        if (nodeConfig.getBoolean("ANY_NODE_COORDINATOR", true)) {
+            int clientPort = nodeConfig.getInt("CLIENT_PORT_BASE", leaderClientPort) + (port - startPort);
+            if (clientPort != leaderClientPort) {
+                coordinator.startTextListener(clientPort);
             }
         }
 
-        // Tolerance sayısı kadar üye seç (round-robin)
-        List<NodeInfo> selectedMembers = selectMembers(otherMembers, tolerance);
-
-        // Seçilen üyelere gRPC ile gönder
-        List<NodeInfo> successfulMembers = new ArrayList<>();
-        for (NodeInfo member : selectedMembers) {
-            if (sendStoreToMember(member, messageId, messageText)) {
-                successfulMembers.add(member);
-            }
+        int standbyPort = nodeConfig.getInt("STANDBY_PORT", 0);
+        boolean candidate = port == startPort || port == standbyPort;
+        if (candidate) {
+            startStatusPrinter(); // Lider (ve yedeği) mesaj durumunu yazdırsın
         }
 
-        // En az 1 üyeye gönderildiyse veya hiç üye yoksa, lider de kaydeder
-        if (successfulMembers.size() >= 1 || otherMembers.isEmpty()) {
-            messageStore.set(messageId, messageText);
-
-            // Hangi üyelerde saklandığını kaydet
-            List<NodeInfo> allStoredAt = new ArrayList<>(successfulMembers);
-            allStoredAt.add(self); // Lider de sakladı
-            messageRegistry.registerMessage(messageId, allStoredAt);
-
-            writer.println("OK");
-            System.out.println("SET successful: id=" + messageId +
-                    ", replicated to " + successfulMembers.size() + " members");
-        } else {
-            writer.println("ERROR: Could not replicate to enough members");
-            System.out.println("SET failed: id=" + messageId + ", replication failed");
+        discoverExistingNodes(registry);
+        if (standbyPort > port) {
+            // Yeniden açılan eski lider, yerine geçen yedeği de bulsun
+            joinThrough(standbyPort, registry);
         }
-    }
-
-    /**
-     * Round-robin ile tolerance sayısı kadar üye seç
-     */
-    private static List<NodeInfo> selectMembers(List<NodeInfo> members, int count) {
-        List<NodeInfo> selected = new ArrayList<>();
-        if (members.isEmpty())
-            return selected;
-
-        int toSelect = Math.min(count, members.size());
-        for (int i = 0; i < toSelect; i++) {
-            int index = (roundRobinIndex + i) % members.size();
-            selected.add(members.get(index));
+        startFamilyPrinter(registry);
+        startHealthChecker(registry);
+
+        // Lider seçimi: ilk düğüm hemen, yedek bir kira süresi bekleyip aday olur
+        leaderLease.start(candidate, port == startPort ? 0 : nodeConfig.getLong("LEASE_MS", 3_000),
+                new LeaderLease.Listener() {
+                    private boolean listening = false;
+
+                    @Override
+                    public void leading() {
+                        // Port eski liderde kaldıysa bir sonraki yenilemede tekrar denenir
+                        if (!listening && coordinator.startTextListener(leaderClientPort)) {
+                            listening = true;
+                            System.out.printf("👑 Serving TCP %d as leader, %d locations already in memory%n",
+                                    leaderClientPort, messageRegistry.size());
+                        }
+                    }
+
+                    @Override
+                    public void deposed() {
+                        listening = false;
+                        coordinator.stopTextListener(leaderClientPort);
+                    }
+                });
+        if (port == standbyPort) {
+            locationMirror.follow(leaderLease::currentLeader);
         }
-        roundRobinIndex = (roundRobinIndex + toSelect) % Math.max(1, members.size());
-
-        return selected;
     }
 
-    /**
-     * Bir üyeye gRPC Store isteği gönder
-     */
-    private static boolean sendStoreToMember(NodeInfo member, int messageId, String text) {
-        ManagedChannel channel = null; // gRPC channel
-        try {
-            channel = ManagedChannelBuilder
-                    .forAddress(member.getHost(), member.getPort())
-                    .usePlaintext()
-                    .build();
-
-            StorageServiceGrpc.StorageServiceBlockingStub stub = StorageServiceGrpc.newBlockingStub(channel);
-
-            StoredMessage msg = StoredMessage.newBuilder()
-                    .setId(messageId)
-                    .setText(text)
-                    .build(); // Protobuf mesaji olusturur
-
-            StoreResult result = stub.store(msg);
-
-            if (result.getSuccess()) {
-                System.out.printf("Replicated id=%d to %s:%d%n",
-                        messageId, member.getHost(), member.getPort());
-                return true;
-            } else {
-                System.err.printf("Store failed at %s:%d: %s%n",
-                        member.getHost(), member.getPort(), result.getError());
-                return false;
-            }
-
-        } catch (Exception e) {
-            System.err.printf("Failed to store at %s:%d: %s%n",
-                    member.getHost(), member.getPort(), e.getMessage());
-            return false;
-        } finally {
-            if (channel != null)
-                channel.shutdownNow();
-        }
+    public void awaitTermination() throws InterruptedException {
+        server.awaitTermination();
     }
 
     /**
-     * 4. Aşama - GET komutu işleme
-     * 1. Önce liderin diskinde ara
-     * 2. Yoksa mesajın tutulduğu üyelerden gRPC ile al
+     * Düğümü süreç içinde öldürür: istemci bağlantıları ve gRPC çağrıları
+     * yarıda kesilir, arka plan thread'leri durur. Diğer üyeler bunu
+     * çökmüş bir üye gibi görür.
      */
-    private static void handleGet(Command cmd, NodeRegistry registry, NodeInfo self, PrintWriter writer) {
-        int messageId = cmd.getMessageId();
-
-        // Önce kendi diskinde ara
-        String message = messageStore.get(messageId);
-        if (message != null) {
-            writer.println(message);
-            System.out.println("GET successful (local): id=" + messageId);
-            return;
+    public void stop() {
+        for (ScheduledExecutorService scheduler : schedulers) {
+            scheduler.shutdownNow();
         }
-
-        // Yoksa üyelerden al
-        List<NodeInfo> members = messageRegistry.getMembers(messageId);
-        for (NodeInfo member : members) {
-            // Kendimizi atla (zaten yukarıda baktık)
-            if (member.getHost().equals(self.getHost()) && member.getPort() == self.getPort()) {
-                continue;
-            }
-
-            String retrieved = retrieveFromMember(member, messageId);
-            if (retrieved != null && !retrieved.isEmpty()) {
-                writer.println(retrieved);
-                System.out.println(
-                        "GET successful (from " + member.getHost() + ":" + member.getPort() + "): id=" + messageId);
-                return;
-            }
-        }
-
-        writer.println("NOT_FOUND");
-        System.out.println("GET failed: id=" + messageId + " not found");
-    }
-
-    /**
-     * Bir üyeden gRPC Retrieve isteği ile mesaj al
-     */
-    private static String retrieveFromMember(NodeInfo member, int messageId) {
-        ManagedChannel channel = null;
+        leaderLease.stop();
+        locationMirror.stop();
+        coordinator.stop();
+        server.shutdownNow();
+        hintedHandoff.stop();
+        broadcaster.stop();
+        chatInbox.stop();
+        replicationManager.shutdown();
+        expiryWheel.stop();
         try {
-            channel = ManagedChannelBuilder
-                    .forAddress(member.getHost(), member.getPort())
-                    .usePlaintext()
-                    .build();
-
-            StorageServiceGrpc.StorageServiceBlockingStub stub = StorageServiceGrpc.newBlockingStub(channel);
-
-            MessageId id = MessageId.newBuilder().setId(messageId).build();
-            StoredMessage result = stub.retrieve(id);
-
-            return result.getText();
-
-        } catch (Exception e) {
-            System.err.printf("Failed to retrieve from %s:%d: %s%n",
-                    member.getHost(), member.getPort(), e.getMessage());
-            return null;
-        } finally {
-            if (channel != null)
-                channel.shutdownNow();
+            server.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
+        messageStore.close();
+        System.out.printf("Node %s:%d stopped%n", host, port);
     }
 
     /**
      * Lider periyodik olarak mesaj durumunu yazdırır
      */
-    private static void startStatusPrinter() {
+    private void startStatusPrinter() {
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        schedulers.add(scheduler);
         scheduler.scheduleAtFixedRate(() -> {
             System.out.println("--------------------------------------");
-            System.out.println("Leader Status - " + LocalDateTime.now());
-            System.out.println("   Local messages: " + messageStore.size());
+            System.out.println((leaderLease.isLeader() ? "Leader" : "Standby") + " Status - " + LocalDateTime.now()
+                    + " (lease term " + leaderLease.term() + ")");
+            MessageStore.Stats stats = messageStore.stats();
+            System.out.println("   Local messages: " + stats.getCount()
+                    + " (" + stats.getBytes() + " bytes on disk, largest value " + stats.getLargestValue() + " bytes)");
             messageRegistry.printStatus();
+            replicationManager.printStatus();
+            admissionControl.printStatus();
+            locationMirror.printStatus();
+            System.out.println("   Pending hints: " + hintedHandoff.pendingHints());
             System.out.println("--------------------------------------");
         }, 15, 30, TimeUnit.SECONDS);
     }
@@ -328,34 +234,63 @@ public class NodeMain {
         }
     }
 
-    private static void discoverExistingNodes(String host, int selfPort,
-            NodeRegistry registry, NodeInfo self) {
-        for (int port = START_PORT; port < selfPort; port++) {
-            ManagedChannel channel = null;
-            try {
-                channel = ManagedChannelBuilder
-                        .forAddress(host, port)
-                        .usePlaintext()
-                        .build();
+    /**
+     * Depo boşsa verilen eşin (host:port) anlık görüntüsünü akıtıp kurar;
+     * kayıtlar tek tek Store çağrısıyla gelmez.
+     */
+    private void bootstrapFromPeer(String peer) {
+        if (peer.isBlank() || messageStore.size() > 0) {
+            return;
+        }
+        String[] hostPort = peer.trim().split(":");
+        ManagedChannel channel = ManagedChannelBuilder
+                .forAddress(hostPort[0], Integer.parseInt(hostPort[1]))
+                .usePlaintext()
+                .build();
+        try {
+            long started = System.currentTimeMillis();
+            long records = SnapshotTransfer.restoreInto(messageStore, channel);
+            System.out.printf("📦 Bootstrapped %d records from %s in %d ms%n",
+                    records, peer, System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            System.err.println("Bootstrap from " + peer + " failed: " + e.getMessage());
+        } finally {
+            channel.shutdownNow();
+        }
+    }
+
+    private void discoverExistingNodes(NodeRegistry registry) {
+        for (int p = startPort; p < port; p++) {
+            joinThrough(p, registry);
+        }
+    }
 
-                FamilyServiceGrpc.FamilyServiceBlockingStub stub = FamilyServiceGrpc.newBlockingStub(channel);
+    private void joinThrough(int port, NodeRegistry registry) {
+        ManagedChannel channel = null;
+        try {
+            channel = ManagedChannelBuilder
+                    .forAddress(host, port)
+                    .usePlaintext()
+                    .build();
 
-                FamilyView view = stub.join(self);
-                registry.addAll(view.getMembersList());
+            FamilyServiceGrpc.FamilyServiceBlockingStub stub = FamilyServiceGrpc.newBlockingStub(channel);
 
-                System.out.printf("Joined through %s:%d, family size now: %d%n",
-                        host, port, registry.snapshot().size());
+            FamilyView view = stub.join(self);
+            registry.addAll(view.getMembersList());
 
-            } catch (Exception ignored) {
-            } finally {
-                if (channel != null)
-                    channel.shutdownNow();
-            }
+            System.out.printf("Joined through %s:%d, family size now: %d%n",
+                    host, port, registry.snapshot().size());
+
+        } catch (Exception ignored) {
+        } finally {
+            if (channel != null)
+                channel.shutdownNow();
         }
     }
 
-    private static void startFamilyPrinter(NodeRegistry registry, NodeInfo self) {
+    private void startFamilyPrinter(NodeRegistry registry) {
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        schedulers.add(scheduler);
 
         scheduler.scheduleAtFixedRate(() -> {
             List<NodeInfo> members = registry.snapshot();
@@ -368,12 +303,15 @@ public class NodeMain {
                 boolean isMe = n.getHost().equals(self.getHost()) && n.getPort() == self.getPort();
                 System.out.printf(" - %s:%d%s%n", n.getHost(), n.getPort(), isMe ? " (me)" : "");
             }
+            broadcaster.printStatus();
+            chatInbox.printStatus();
             System.out.println("======================================");
         }, 3, PRINT_INTERVAL_SECONDS, TimeUnit.SECONDS);
     }
 
-    private static void startHealthChecker(NodeRegistry registry, NodeInfo self) {
+    private void startHealthChecker(NodeRegistry registry) {
         ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+        schedulers.add(scheduler);
 
         scheduler.scheduleAtFixedRate(() -> {
             List<NodeInfo> members = registry.snapshot();
@@ -391,12 +329,17 @@ public class NodeMain {
                             .build();
 
                     FamilyServiceGrpc.FamilyServiceBlockingStub stub = FamilyServiceGrpc.newBlockingStub(channel);
-                    stub.getFamily(Empty.newBuilder().build());
+                    long started = System.nanoTime();
+                    FamilyView view = stub.getFamily(Empty.newBuilder().build());
+                    // Cevaptaki yük ve ölçülen RTT yerleşimde kullanılır
+                    loadTracker.update(n, view.getLoad(), (System.nanoTime() - started) / 1_000);
 
                 } catch (Exception e) {
                     System.out.printf("Node %s:%d unreachable, removing from family%n",
                             n.getHost(), n.getPort());
                     registry.remove(n);
+                    replicationManager.remove(n);
+                    loadTracker.remove(n);
                 } finally {
                     if (channel != null)
                         channel.shutdownNow();
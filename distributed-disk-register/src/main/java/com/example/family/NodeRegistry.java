@@ -23,6 +23,10 @@ public class NodeRegistry {
         return List.copyOf(nodes);
     }
 
+    public boolean contains(NodeInfo node) {
+        return nodes.contains(node);
+    }
+
     public void remove(NodeInfo node) {
         nodes.remove(node);
     }
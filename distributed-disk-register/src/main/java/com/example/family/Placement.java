@@ -0,0 +1,83 @@
+package com.example.family;
+
+import family.NodeInfo;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Ortak yerleşim: bir mesajın hangi düğümlerde tutulacağını id'den
+ * hesaplar (rendezvous / highest-random-weight hashing).
+ *
+ * Aynı üye listesini gören her düğüm aynı sonucu bulur, bu yüzden herhangi
+ * bir düğüm SET/GET koordinatörü olabilir. Bir üye ayrıldığında sadece o
+ * üyenin tuttuğu mesajların yeri değişir.
+ *
+ * Yazımlar için sıralamanın ilk count + slack düğümü arasından yüklü
+ * olanlar atlanabilir. Okumalar sıralamanın en az o kadarına baktığı için
+ * kayıt yine bulunur.
+ */
+public class Placement {
+
+   /**
+    * Mesajın tutulacağı ilk count düğümü öncelik sırasıyla döner.
+    */
+   public List<NodeInfo> replicasFor(int messageId, List<NodeInfo> members, int count) {
+      List<NodeInfo> ranked = rank(messageId, members);
+      return new ArrayList<>(ranked.subList(0, Math.min(count, ranked.size())));
+   }
+
+   /**
+    * Sıralamanın ilk count + slack düğümünden, yüklü olmayanları sırayla
+    * seçer. Yeterli düğüm kalmazsa atlananlar sırayla eklenir; slack sıfırsa
+    * sonuç replicasFor ile aynıdır.
+    */
+   public List<NodeInfo> replicasFor(int messageId, List<NodeInfo> members, int count, int slack,
+         Predicate<NodeInfo> overloaded) {
+      List<NodeInfo> window = replicasFor(messageId, members, count + Math.max(0, slack));
+      List<NodeInfo> chosen = new ArrayList<>();
+      List<NodeInfo> skipped = new ArrayList<>();
+      for (NodeInfo n : window) {
+         if (chosen.size() == count) {
+            break;
+         }
+         if (slack > 0 && skipped.size() < slack && overloaded.test(n)) {
+            skipped.add(n);
+         } else {
+            chosen.add(n);
+         }
+      }
+      for (NodeInfo n : skipped) {
+         if (chosen.size() == count) {
+            break;
+         }
+         chosen.add(n);
+      }
+      return chosen;
+   }
+
+   /**
+    * Tüm düğümleri bu mesaj için öncelik sırasına dizer.
+    */
+   public List<NodeInfo> rank(int messageId, List<NodeInfo> members) {
+      List<NodeInfo> ranked = new ArrayList<>(members);
+      ranked.sort(Comparator.comparingLong((NodeInfo n) -> score(messageId, n)).reversed()
+            .thenComparing(NodeInfo::getHost)
+            .thenComparingInt(NodeInfo::getPort));
+      return ranked;
+   }
+
+   static long score(int messageId, NodeInfo node) {
+      long nodeHash = mix(((long) node.getHost().hashCode() << 32) ^ node.getPort());
+      return mix(nodeHash ^ (messageId * 0x9E3779B97F4A7C15L));
+   }
+
+   /** SplitMix64 karıştırıcısı. */
+   private static long mix(long z) {
+      z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+      z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+      return z ^ (z >>> 31);
+   }
+}
@@ -0,0 +1,218 @@
+package com.example.family;
+
+import com.google.protobuf.UnsafeByteOperations;
+import family.MessageId;
+import family.NodeInfo;
+import family.RecordStat;
+import family.StorageServiceGrpc;
+import family.StoredMessage;
+
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET sonrası okuma onarımı (read repair).
+ *
+ * GET'lerin READ_REPAIR_CHANCE oranında, mesajın tutulması gereken tüm
+ * replikalara paralel Stat sorulur ve sürümler karşılaştırılır. En yeni
+ * değer, eski veya eksik replikalara kendi replikasyon kuyrukları üzerinden
+ * gönderilir. Onarım arka planda yapılır, GET cevabını bekletmez; iş
+ * kuyruğu doluysa o onarım atlanır.
+ */
+public class ReadRepair {
+
+   private static final long STAT_DEADLINE_MS = 2_000;
+
+   private final NodeInfo self;
+   private final NodeRegistry registry;
+   private final MessageStore messageStore;
+   private final MessageRegistry messageRegistry;
+   private final ToleranceConfig toleranceConfig;
+   private final ReplicationManager replicationManager;
+   private final Placement placement;
+   private final double chance;
+   private final int loadSlack;
+   private final ThreadPoolExecutor executor;
+
+   public ReadRepair(NodeInfo self, NodeRegistry registry, MessageStore messageStore,
+         MessageRegistry messageRegistry, ToleranceConfig toleranceConfig,
+         ReplicationManager replicationManager, Placement placement, NodeConfig config) {
+      this.self = self;
+      this.registry = registry;
+      this.messageStore = messageStore;
+      this.messageRegistry = messageRegistry;
+      this.toleranceConfig = toleranceConfig;
+      this.replicationManager = replicationManager;
+      this.placement = placement;
+      this.chance = config.getDouble("READ_REPAIR_CHANCE", 0.1);
+      this.loadSlack = Math.max(0, Math.min(config.getInt("PLACEMENT_GET_EXTRA", 2),
+            config.getInt("PLACEMENT_LOAD_SLACK", 1)));
+      this.executor = new ThreadPoolExecutor(1, 2, 60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(256), r -> {
+               Thread t = new Thread(r, "ReadRepair");
+               t.setDaemon(true);
+               return t;
+            });
+   }
+
+   public void stop() {
+      executor.shutdownNow();
+   }
+
+   /**
+    * Yapılandırılan olasılıkla mesaj için arka planda onarım başlatır.
+    */
+   public void maybeRepair(int messageId) {
+      if (chance <= 0 || ThreadLocalRandom.current().nextDouble() >= chance) {
+         return;
+      }
+      try {
+         executor.execute(() -> repair(messageId));
+      } catch (RejectedExecutionException ignored) {
+         // Onarım kuyruğu dolu; bu GET için atlanır
+      }
+   }
+
+   private void repair(int messageId) {
+      try {
+         int copies = toleranceConfig.getTolerance() + 1;
+         // Yazımlar yüklü düğümleri atlayıp sıradakilere gidebildiği için pencere geniş tutulur
+         List<NodeInfo> window = placement.replicasFor(messageId, registry.snapshot(), copies + loadSlack);
+         List<NodeInfo> holders = window.subList(0, Math.min(copies, window.size()));
+
+         // Yerleşimdeki düğümler + bu koordinatörün bildiği (hala ailedeki) konumlar
+         Set<NodeInfo> replicas = new LinkedHashSet<>(window);
+         for (NodeInfo n : messageRegistry.getMembers(messageId)) {
+            if (registry.contains(n)) {
+               replicas.add(n);
+            }
+         }
+
+         Map<NodeInfo, Long> versions = collectVersions(messageId, replicas);
+
+         NodeInfo newestAt = null;
+         long newest = -1;
+         for (Map.Entry<NodeInfo, Long> e : versions.entrySet()) {
+            if (e.getValue() > newest) {
+               newest = e.getValue();
+               newestAt = e.getKey();
+            }
+         }
+         if (newestAt == null) {
+            return; // Hiçbir replikada yok
+         }
+
+         // Eski olanlar onarılır; yerleşimde olup kaydı olmayanlar ancak
+         // kopya sayısı eksikse (yük nedeniyle atlanmış olabilirler)
+         long present = versions.values().stream().filter(v -> v >= 0).count();
+         Set<NodeInfo> stale = new LinkedHashSet<>();
+         for (Map.Entry<NodeInfo, Long> e : versions.entrySet()) {
+            long v = e.getValue();
+            if (v >= 0 && v < newest) {
+               stale.add(e.getKey());
+            } else if (v < 0 && holders.contains(e.getKey()) && present < copies) {
+               stale.add(e.getKey());
+               present++;
+            }
+         }
+         if (stale.isEmpty()) {
+            return;
+         }
+
+         StoredMessage value = isSelf(newestAt) ? messageStore.get(messageId) : fetch(newestAt, messageId);
+         if (value == null) {
+            return;
+         }
+
+         for (NodeInfo target : stale) {
+            push(target, value);
+         }
+         System.out.printf("Read repair: id=%d v%d pushed to %d replicas%n", messageId, newest, stale.size());
+
+      } catch (Exception e) {
+         System.err.println("Read repair failed for id=" + messageId + ": " + e.getMessage());
+      }
+   }
+
+   /**
+    * Replikaların sürümlerini paralel sorar. Kaydı olmayan -1, cevap
+    * vermeyen replika haritaya hiç girmez.
+    */
+   private Map<NodeInfo, Long> collectVersions(int messageId, Set<NodeInfo> replicas) throws Exception {
+      MessageId request = MessageId.newBuilder().setId(messageId).build();
+      Map<NodeInfo, UnaryCall<RecordStat>> pending = new LinkedHashMap<>();
+      Map<NodeInfo, Long> versions = new LinkedHashMap<>();
+
+      for (NodeInfo n : replicas) {
+         if (isSelf(n)) {
+            continue;
+         }
+         UnaryCall<RecordStat> call = new UnaryCall<>();
+         StorageServiceGrpc.newStub(replicationManager.channel(n))
+               .withDeadlineAfter(STAT_DEADLINE_MS, TimeUnit.MILLISECONDS)
+               .stat(request, call);
+         pending.put(n, call);
+      }
+
+      // Yerel kayıt: yerleşimdeyse ya da burada bir kopya varsa
+      long local = messageStore.versionOf(messageId);
+      if (local >= 0 || replicas.stream().anyMatch(this::isSelf)) {
+         versions.put(self, local);
+      }
+
+      for (Map.Entry<NodeInfo, UnaryCall<RecordStat>> e : pending.entrySet()) {
+         try {
+            RecordStat stat = e.getValue().get(STAT_DEADLINE_MS, TimeUnit.MILLISECONDS);
+            versions.put(e.getKey(), stat.getFound() ? stat.getVersion() : -1L);
+         } catch (Exception unreachable) {
+            // Ulaşılamayan replika karşılaştırmaya katılmaz
+         }
+      }
+      return versions;
+   }
+
+   private StoredMessage fetch(NodeInfo member, int messageId) throws Exception {
+      ChunkedTransfer.RemoteValue remote = ChunkedTransfer.retrieveStream(
+            StorageServiceGrpc.newBlockingStub(replicationManager.channel(member)), messageId);
+      if (remote == null) {
+         return null;
+      }
+      try (InputStream in = remote.getContent()) {
+         return remote.getHeader().toBuilder()
+               .setValue(UnsafeByteOperations.unsafeWrap(in.readAllBytes()))
+               .build();
+      }
+   }
+
+   private void push(NodeInfo target, StoredMessage value) {
+      int messageId = value.getId();
+      if (isSelf(target)) {
+         if (messageStore.set(value) != MessageStore.WriteResult.FAILED) {
+            messageRegistry.addLocation(messageId, self);
+         }
+         return;
+      }
+      CompletableFuture<Boolean> future = replicationManager.forMember(target).offer(value);
+      if (future != null) {
+         future.thenAccept(ok -> {
+            if (ok) {
+               messageRegistry.addLocation(messageId, target);
+            }
+         });
+      }
+   }
+
+   private boolean isSelf(NodeInfo node) {
+      return node.getHost().equals(self.getHost()) && node.getPort() == self.getPort();
+   }
+}
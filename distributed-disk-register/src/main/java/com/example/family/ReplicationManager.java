@@ -0,0 +1,81 @@
+package com.example.family;
+
+import family.NodeInfo;
+import io.grpc.ManagedChannel;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Üye başına MemberReplicator'ları tutar.
+ * Replikatör üye ilk kez seçildiğinde oluşturulur, üye aileden
+ * çıkarıldığında kapatılır.
+ */
+public class ReplicationManager {
+
+   private final Map<String, MemberReplicator> replicators = new ConcurrentHashMap<>();
+   private final int queueCapacity;
+   private final long maxQueuedBytes;
+   private final int chunkBytes;
+
+   public ReplicationManager(NodeConfig config, int chunkBytes) {
+      this.queueCapacity = config.getInt("REPLICATION_QUEUE_CAPACITY", 1024);
+      this.maxQueuedBytes = config.getLong("REPLICATION_QUEUE_MAX_BYTES", 64L * 1024 * 1024);
+      this.chunkBytes = chunkBytes;
+   }
+
+   public MemberReplicator forMember(NodeInfo member) {
+      return replicators.computeIfAbsent(key(member),
+            k -> new MemberReplicator(member, queueCapacity, maxQueuedBytes, chunkBytes));
+   }
+
+   /** Üyeye giden kalıcı kanal. */
+   public ManagedChannel channel(NodeInfo member) {
+      return forMember(member).getChannel();
+   }
+
+   /**
+    * Üye aileden çıktığında kuyruğunu kapatır.
+    */
+   public void remove(NodeInfo member) {
+      MemberReplicator replicator = replicators.remove(key(member));
+      if (replicator != null) {
+         replicator.shutdown();
+      }
+   }
+
+   /**
+    * Tüm replikatörleri ve kanallarını kapatır.
+    */
+   public void shutdown() {
+      for (String key : replicators.keySet()) {
+         MemberReplicator replicator = replicators.remove(key);
+         if (replicator != null) {
+            replicator.shutdown();
+         }
+      }
+   }
+
+   /** Tüm üye kuyruklarındaki toplam iş. */
+   public int totalQueueDepth() {
+      int total = 0;
+      for (MemberReplicator r : replicators.values()) {
+         total += r.queueDepth();
+      }
+      return total;
+   }
+
+   /**
+    * Kuyruk derinliklerini yazdırır (debug için).
+    */
+   public void printStatus() {
+      System.out.println("Replication Queues:");
+      for (MemberReplicator r : replicators.values()) {
+         System.out.println("   " + key(r.getMember()) + " → " + r.queueDepth() + " pending");
+      }
+   }
+
+   private static String key(NodeInfo member) {
+      return member.getHost() + ":" + member.getPort();
+   }
+}
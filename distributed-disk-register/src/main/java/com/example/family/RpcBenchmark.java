@@ -0,0 +1,146 @@
+package com.example.family;
+
+import com.google.protobuf.UnsafeByteOperations;
+import family.Codec;
+import family.Empty;
+import family.FamilyServiceGrpc;
+import family.StorageServiceGrpc;
+import family.StoredMessage;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Karışık RPC yükü altında gecikme ölçümü.
+ *
+ * storeThreads thread sürekli büyük Store (varsayılan 1 MB) gönderirken
+ * pingThreads thread GetFamily çağırır; sonunda ping ve Store
+ * gecikmelerinin yüzdelikleri yazdırılır. Sunucunun GRPC_TUNED ayarı
+ * açıkken ve kapalıyken çalıştırılarak yürütme modelinin etkisi görülür.
+ *
+ * Yazılan kayıtlar yüksek id aralığına (1_000_000_000+) gider ve 60 saniye
+ * sonra kendiliğinden silinir (expires_at).
+ *
+ * Kullanım: --target=127.0.0.1:5555 --seconds=20 --storeThreads=8
+ *           --pingThreads=2 --valueBytes=1048576
+ */
+public class RpcBenchmark {
+
+   private static final int ID_BASE = 1_000_000_000;
+
+   public static void main(String[] args) throws Exception {
+      String target = "127.0.0.1:5555";
+      int seconds = 20;
+      int storeThreads = 8;
+      int pingThreads = 2;
+      int valueBytes = 1024 * 1024;
+      for (String a : args) {
+         if (a.startsWith("--target="))
+            target = a.substring("--target=".length());
+         else if (a.startsWith("--seconds="))
+            seconds = Integer.parseInt(a.substring("--seconds=".length()));
+         else if (a.startsWith("--storeThreads="))
+            storeThreads = Integer.parseInt(a.substring("--storeThreads=".length()));
+         else if (a.startsWith("--pingThreads="))
+            pingThreads = Integer.parseInt(a.substring("--pingThreads=".length()));
+         else if (a.startsWith("--valueBytes="))
+            valueBytes = Integer.parseInt(a.substring("--valueBytes=".length()));
+      }
+
+      String[] hostPort = target.split(":");
+      ManagedChannel channel = ManagedChannelBuilder
+            .forAddress(hostPort[0], Integer.parseInt(hostPort[1]))
+            .usePlaintext()
+            .maxInboundMessageSize(16 * 1024 * 1024)
+            .build();
+
+      byte[] value = new byte[valueBytes];
+      ThreadLocalRandom.current().nextBytes(value);
+      long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+      AtomicLong nextId = new AtomicLong();
+      AtomicLong errors = new AtomicLong();
+      List<Long> pingLatencies = Collections.synchronizedList(new ArrayList<>());
+      List<Long> storeLatencies = Collections.synchronizedList(new ArrayList<>());
+
+      List<Thread> threads = new ArrayList<>();
+      for (int i = 0; i < storeThreads; i++) {
+         threads.add(new Thread(() -> {
+            StorageServiceGrpc.StorageServiceBlockingStub stub = StorageServiceGrpc.newBlockingStub(channel);
+            while (System.nanoTime() < deadline) {
+               StoredMessage msg = StoredMessage.newBuilder()
+                     .setId(ID_BASE + (int) (nextId.getAndIncrement() % 100_000))
+                     .setValue(UnsafeByteOperations.unsafeWrap(value))
+                     .setCodec(Codec.RAW)
+                     .setRawLength(value.length)
+                     .setVersion(System.currentTimeMillis() << 22)
+                     .setExpiresAt(System.currentTimeMillis() + 60_000)
+                     .build();
+               long started = System.nanoTime();
+               try {
+                  stub.withDeadlineAfter(30, TimeUnit.SECONDS).store(msg);
+                  storeLatencies.add(System.nanoTime() - started);
+               } catch (Exception e) {
+                  errors.incrementAndGet();
+               }
+            }
+         }, "bench-store-" + i));
+      }
+      for (int i = 0; i < pingThreads; i++) {
+         threads.add(new Thread(() -> {
+            FamilyServiceGrpc.FamilyServiceBlockingStub stub = FamilyServiceGrpc.newBlockingStub(channel);
+            while (System.nanoTime() < deadline) {
+               long started = System.nanoTime();
+               try {
+                  stub.withDeadlineAfter(10, TimeUnit.SECONDS).getFamily(Empty.newBuilder().build());
+                  pingLatencies.add(System.nanoTime() - started);
+               } catch (Exception e) {
+                  errors.incrementAndGet();
+               }
+               try {
+                  Thread.sleep(5);
+               } catch (InterruptedException e) {
+                  return;
+               }
+            }
+         }, "bench-ping-" + i));
+      }
+
+      for (Thread t : threads) {
+         t.start();
+      }
+      for (Thread t : threads) {
+         t.join();
+      }
+      channel.shutdownNow();
+
+      System.out.printf("Target %s, %d s, %d store threads x %d bytes, %d ping threads%n",
+            target, seconds, storeThreads, valueBytes, pingThreads);
+      print("GetFamily", pingLatencies);
+      print("Store", storeLatencies);
+      System.out.printf("Store throughput: %.1f MB/s, errors: %d%n",
+            storeLatencies.size() * (double) valueBytes / (1024 * 1024) / seconds, errors.get());
+   }
+
+   private static void print(String name, List<Long> latencies) {
+      List<Long> sorted = new ArrayList<>(latencies);
+      Collections.sort(sorted);
+      if (sorted.isEmpty()) {
+         System.out.println(name + ": no samples");
+         return;
+      }
+      System.out.printf("%-10s n=%-6d p50=%.2f ms  p95=%.2f ms  p99=%.2f ms  max=%.2f ms%n", name, sorted.size(),
+            percentile(sorted, 0.50), percentile(sorted, 0.95), percentile(sorted, 0.99),
+            sorted.get(sorted.size() - 1) / 1e6);
+   }
+
+   private static double percentile(List<Long> sorted, double p) {
+      int index = (int) Math.min(sorted.size() - 1, Math.round(p * (sorted.size() - 1)));
+      return sorted.get(index) / 1e6;
+   }
+}
@@ -0,0 +1,109 @@
+package com.example.family;
+
+import com.google.protobuf.ByteString;
+import family.Empty;
+import family.SnapshotChunk;
+import family.SnapshotPart;
+import family.StorageServiceGrpc;
+import io.grpc.ManagedChannel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
+/**
+ * Bir üyenin Snapshot akışını alan taraf.
+ *
+ * restoreInto kayıtları yerel depoya sürüm kontrolüyle yerleştirir (yeni
+ * üyenin bir eşten kurulması); backupTo ise ham kayıt dosyalarını bir
+ * klasöre yazar. Yedek klasörü DATA_DIRS olarak verilirse düğüm açılırken
+ * kayıtları parçalarına dağıtır.
+ */
+public class SnapshotTransfer {
+
+   private SnapshotTransfer() {
+   }
+
+   /**
+    * Akıştaki kayıtları depoya yazar. Uygulanan kayıt sayısını döner;
+    * depodaki daha yeni sürümler korunur.
+    */
+   public static long restoreInto(MessageStore store, ManagedChannel channel) throws IOException {
+      long applied = 0;
+      MessageStore.RecordWriter writer = null;
+      try {
+         Iterator<SnapshotChunk> chunks = StorageServiceGrpc.newBlockingStub(channel)
+               .snapshot(Empty.newBuilder().build());
+         while (chunks.hasNext()) {
+            for (SnapshotPart part : chunks.next().getPartsList()) {
+               if (writer == null) {
+                  writer = store.openRawWriter(part.getId());
+               }
+               writer.append(part.getData());
+               if (part.getLast()) {
+                  if (writer.commit() == MessageStore.WriteResult.APPLIED) {
+                     applied++;
+                  }
+                  writer = null;
+               }
+            }
+         }
+      } finally {
+         if (writer != null) {
+            writer.close();
+         }
+      }
+      return applied;
+   }
+
+   /**
+    * Akıştaki kayıt dosyalarını klasöre <id>.msg olarak yazar (geçici dosya
+    * + yeniden adlandırma ile). Yazılan kayıt sayısını döner.
+    */
+   public static long backupTo(Path dir, ManagedChannel channel) throws IOException {
+      Files.createDirectories(dir);
+      long written = 0;
+      FileChannel out = null;
+      Path tmp = null;
+      try {
+         Iterator<SnapshotChunk> chunks = StorageServiceGrpc.newBlockingStub(channel)
+               .snapshot(Empty.newBuilder().build());
+         while (chunks.hasNext()) {
+            for (SnapshotPart part : chunks.next().getPartsList()) {
+               if (out == null) {
+                  tmp = dir.resolve(part.getId() + ".msg.tmp");
+                  out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                        StandardOpenOption.TRUNCATE_EXISTING);
+               }
+               write(out, part.getData());
+               if (part.getLast()) {
+                  out.close();
+                  out = null;
+                  Files.move(tmp, dir.resolve(part.getId() + ".msg"), StandardCopyOption.ATOMIC_MOVE,
+                        StandardCopyOption.REPLACE_EXISTING);
+                  written++;
+               }
+            }
+         }
+      } finally {
+         if (out != null) {
+            out.close();
+            Files.deleteIfExists(tmp);
+         }
+      }
+      return written;
+   }
+
+   private static void write(FileChannel out, ByteString data) throws IOException {
+      for (ByteBuffer buffer : data.asReadOnlyByteBufferList()) {
+         while (buffer.hasRemaining()) {
+            out.write(buffer);
+         }
+      }
+   }
+}
@@ -0,0 +1,56 @@
+package com.example.family;
+
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * Sıralı iteratörleri tek bir sıralı iteratörde birleştirir (k-yollu birleştirme).
+ * Her kaynaktan bir sonraki eleman ancak mevcut eleman tüketilince istenir;
+ * eşit elemanlar ardışık gelir, tekilleştirme çağırana kalır.
+ */
+public class SortedMerge<T> implements Iterator<T> {
+
+   private final PriorityQueue<Cursor<T>> heads;
+
+   public SortedMerge(List<? extends Iterator<T>> sources, Comparator<? super T> order) {
+      this.heads = new PriorityQueue<>(Math.max(1, sources.size()),
+            (a, b) -> order.compare(a.head, b.head));
+      for (Iterator<T> source : sources) {
+         if (source.hasNext()) {
+            heads.add(new Cursor<>(source.next(), source));
+         }
+      }
+   }
+
+   @Override
+   public boolean hasNext() {
+      return !heads.isEmpty();
+   }
+
+   @Override
+   public T next() {
+      Cursor<T> cursor = heads.poll();
+      if (cursor == null) {
+         throw new NoSuchElementException();
+      }
+      T result = cursor.head;
+      if (cursor.source.hasNext()) {
+         cursor.head = cursor.source.next();
+         heads.add(cursor);
+      }
+      return result;
+   }
+
+   private static class Cursor<T> {
+      T head;
+      final Iterator<T> source;
+
+      Cursor(T head, Iterator<T> source) {
+         this.head = head;
+         this.source = source;
+      }
+   }
+}
@@ -1,11 +1,29 @@
 package com.example.family;
 
+import com.google.protobuf.UnsafeByteOperations;
+import family.BloomRequest;
+import family.Empty;
 import family.MessageId;
+import family.NodeBloom;
+import family.RecordStat;
+import family.ScanRequest;
+import family.SnapshotChunk;
+import family.SnapshotPart;
 import family.StorageServiceGrpc;
 import family.StoredMessage;
 import family.StoreResult;
+import family.ValueChunk;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+
 /**
  * 3. Aşama - StorageService implementasyonu.
  * Üyeler bu servis üzerinden mesaj saklama/okuma yapabilir.
@@ -13,27 +31,34 @@ import io.grpc.stub.StreamObserver;
 public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBase {
 
    private final MessageStore messageStore;
+   private final int chunkBytes;
+   private final VersionClock versionClock;
+   private final LoadTracker loadTracker;
 
-   public StorageServiceImpl(MessageStore messageStore) {
+   public StorageServiceImpl(MessageStore messageStore, int chunkBytes, VersionClock versionClock,
+         LoadTracker loadTracker) {
       this.messageStore = messageStore;
+      this.chunkBytes = chunkBytes;
+      this.versionClock = versionClock;
+      this.loadTracker = loadTracker;
    }
 
    /**
     * Mesajı diske kaydeder.
+    * Diskte daha yeni sürüm varsa yazım uygulanmaz, stale=true döner.
     */
    @Override
    public void store(StoredMessage request, StreamObserver<StoreResult> responseObserver) {
       try {
-         messageStore.set(request.getId(), request.getText());
-
-         StoreResult result = StoreResult.newBuilder()
-               .setSuccess(true)
-               .build();
+         versionClock.observe(request.getVersion());
+         long started = System.nanoTime();
+         MessageStore.WriteResult written = messageStore.set(request);
+         loadTracker.recordStoreLatency(System.nanoTime() - started);
 
-         responseObserver.onNext(result);
+         responseObserver.onNext(toResult(written));
          responseObserver.onCompleted();
 
-         System.out.println("📥 gRPC Store: id=" + request.getId());
+         System.out.println("📥 gRPC Store: id=" + request.getId() + ", " + written);
 
       } catch (Exception e) {
          StoreResult result = StoreResult.newBuilder()
@@ -46,22 +71,278 @@ public class StorageServiceImpl extends StorageServiceGrpc.StorageServiceImplBas
       }
    }
 
+   private static StoreResult toResult(MessageStore.WriteResult written) {
+      switch (written) {
+         case APPLIED:
+            return StoreResult.newBuilder().setSuccess(true).build();
+         case STALE:
+            // Daha yeni sürüm zaten var; replika güncel sayılır
+            return StoreResult.newBuilder().setSuccess(true).setStale(true).build();
+         default:
+            return StoreResult.newBuilder().setSuccess(false).setError("write failed").build();
+      }
+   }
+
    /**
     * Mesajı diskten okur.
     */
    @Override
    public void retrieve(MessageId request, StreamObserver<StoredMessage> responseObserver) {
-      String text = messageStore.get(request.getId());
+      // Değer kodlanmış haliyle döner, lider çözer
+      StoredMessage stored = messageStore.get(request.getId());
 
-      StoredMessage message = StoredMessage.newBuilder()
-            .setId(request.getId())
-            .setText(text != null ? text : "")
-            .build();
+      StoredMessage message = stored != null
+            ? stored
+            : StoredMessage.newBuilder().setId(request.getId()).build();
 
       responseObserver.onNext(message);
       responseObserver.onCompleted();
 
       System.out.println("📤 gRPC Retrieve: id=" + request.getId() +
-            ", found=" + (text != null));
+            ", found=" + (stored != null));
+   }
+
+   /**
+    * Büyük değeri parça parça alır ve her parçayı geldiği anda diske yazar.
+    * Bir parça yazılmadan sonraki istenmez (gRPC akış kontrolü).
+    */
+   @Override
+   public StreamObserver<ValueChunk> storeStream(StreamObserver<StoreResult> responseObserver) {
+      return new StreamObserver<ValueChunk>() {
+         private MessageStore.RecordWriter writer;
+         private int messageId = -1;
+         private boolean failed = false;
+
+         @Override
+         public void onNext(ValueChunk chunk) {
+            if (failed) {
+               return;
+            }
+            try {
+               if (writer == null) {
+                  messageId = chunk.getHeader().getId();
+                  versionClock.observe(chunk.getHeader().getVersion());
+                  writer = messageStore.openWriter(chunk.getHeader());
+               }
+               writer.append(chunk.getData());
+            } catch (IOException e) {
+               failed = true;
+               closeWriter();
+               responseObserver.onNext(StoreResult.newBuilder()
+                     .setSuccess(false)
+                     .setError(e.getMessage())
+                     .build());
+               responseObserver.onCompleted();
+            }
+         }
+
+         @Override
+         public void onError(Throwable t) {
+            closeWriter();
+            System.err.println("StoreStream aborted: id=" + messageId + ": " + t.getMessage());
+         }
+
+         @Override
+         public void onCompleted() {
+            if (failed) {
+               return;
+            }
+            try {
+               if (writer == null) {
+                  throw new IOException("empty stream");
+               }
+               long started = System.nanoTime();
+               MessageStore.WriteResult written = writer.commit();
+               loadTracker.recordStoreLatency(System.nanoTime() - started);
+               responseObserver.onNext(toResult(written));
+               System.out.println("📥 gRPC StoreStream: id=" + messageId + ", " + written);
+            } catch (IOException e) {
+               closeWriter();
+               responseObserver.onNext(StoreResult.newBuilder()
+                     .setSuccess(false)
+                     .setError(e.getMessage())
+                     .build());
+            }
+            responseObserver.onCompleted();
+         }
+
+         private void closeWriter() {
+            if (writer != null) {
+               try {
+                  writer.close();
+               } catch (IOException ignored) {
+               }
+            }
+         }
+      };
+   }
+
+   /**
+    * Kaydın var olup olmadığını ve sürümünü döner (değer okunmaz).
+    */
+   @Override
+   public void stat(MessageId request, StreamObserver<RecordStat> responseObserver) {
+      try {
+         long version = messageStore.versionOf(request.getId());
+         responseObserver.onNext(RecordStat.newBuilder()
+               .setFound(version >= 0)
+               .setVersion(Math.max(0, version))
+               .build());
+         responseObserver.onCompleted();
+      } catch (IOException e) {
+         responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+      }
+   }
+
+   /**
+    * Parçaların Bloom filtrelerini döner; koordinatörler bu üyede olmayan
+    * kayıtlar için Retrieve/Stat yapmaz.
+    */
+   @Override
+   public void getBloom(BloomRequest request, StreamObserver<NodeBloom> responseObserver) {
+      responseObserver.onNext(messageStore.bloom(request.getKnownGenerationsList()));
+      responseObserver.onCompleted();
+   }
+
+   /**
+    * Aralıktaki yerel kayıtları id sırasıyla akıtır.
+    * Alıcı hazır olmadığında durur, hazır olunca kaldığı yerden devam eder.
+    */
+   @Override
+   public void scan(ScanRequest request, StreamObserver<StoredMessage> responseObserver) {
+      ServerCallStreamObserver<StoredMessage> serverObserver =
+            (ServerCallStreamObserver<StoredMessage>) responseObserver;
+      Iterator<StoredMessage> records = messageStore.scan(request.getFrom(), request.getTo());
+      int limit = request.getLimit() > 0 ? request.getLimit() : Integer.MAX_VALUE;
+
+      serverObserver.setOnReadyHandler(new Runnable() {
+         private int sent = 0;
+         private boolean done = false;
+
+         @Override
+         public void run() {
+            while (!done && serverObserver.isReady()) {
+               if (sent >= limit || !records.hasNext()) {
+                  done = true;
+                  serverObserver.onCompleted();
+                  System.out.println("📤 gRPC Scan: [" + request.getFrom() + ", " + request.getTo()
+                        + "] sent=" + sent);
+                  return;
+               }
+               serverObserver.onNext(records.next());
+               sent++;
+            }
+         }
+      });
+   }
+
+   /**
+    * Deponun anlık görüntüsünü alır ve kayıt dosyalarını ham haliyle,
+    * chunkBytes'lık mesajlar halinde akıtır. Küçük kayıtlar aynı mesajda
+    * toplanır, büyükler bölünür. Alıcı hazır değilken okuma durur.
+    * Akış bitince ya da iptal edilince görüntü silinir.
+    */
+   @Override
+   public void snapshot(Empty request, StreamObserver<SnapshotChunk> responseObserver) {
+      ServerCallStreamObserver<SnapshotChunk> serverObserver =
+            (ServerCallStreamObserver<SnapshotChunk>) responseObserver;
+      MessageStore.Snapshot snapshot;
+      try {
+         snapshot = messageStore.snapshot();
+      } catch (IOException e) {
+         responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+         return;
+      }
+      System.out.println("📸 Snapshot started: " + snapshot.size() + " records");
+
+      Iterator<Path> files = snapshot.files();
+      serverObserver.setOnCancelHandler(snapshot::close);
+      serverObserver.setOnReadyHandler(new Runnable() {
+         private FileChannel current;
+         private int currentId;
+         private long records = 0;
+         private long bytes = 0;
+         private boolean done = false;
+
+         @Override
+         public void run() {
+            try {
+               while (!done && serverObserver.isReady()) {
+                  SnapshotChunk chunk = nextChunk();
+                  if (chunk.getPartsCount() > 0) {
+                     serverObserver.onNext(chunk);
+                  }
+                  if (current == null && !files.hasNext()) {
+                     done = true;
+                     snapshot.close();
+                     serverObserver.onCompleted();
+                     System.out.println("📸 Snapshot sent: " + records + " records, " + bytes + " bytes");
+                  }
+               }
+            } catch (Exception e) {
+               done = true;
+               closeCurrent();
+               snapshot.close();
+               serverObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+            }
+         }
+
+         private SnapshotChunk nextChunk() throws IOException {
+            SnapshotChunk.Builder chunk = SnapshotChunk.newBuilder();
+            int size = 0;
+            while (size < chunkBytes) {
+               if (current == null) {
+                  if (!files.hasNext()) {
+                     break;
+                  }
+                  Path file = files.next();
+                  currentId = MessageStore.idOf(file);
+                  current = FileChannel.open(file, StandardOpenOption.READ);
+               }
+               ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(chunkBytes - size,
+                     Math.max(0, current.size() - current.position())));
+               while (buffer.hasRemaining() && current.read(buffer) >= 0) {
+                  // Tampon dolana ya da dosya bitene kadar
+               }
+               buffer.flip();
+               boolean last = current.position() >= current.size();
+               chunk.addParts(SnapshotPart.newBuilder()
+                     .setId(currentId)
+                     .setData(UnsafeByteOperations.unsafeWrap(buffer))
+                     .setLast(last));
+               size += buffer.remaining();
+               bytes += buffer.remaining();
+               if (last) {
+                  closeCurrent();
+                  records++;
+               }
+            }
+            return chunk.build();
+         }
+
+         private void closeCurrent() {
+            if (current != null) {
+               try {
+                  current.close();
+               } catch (IOException ignored) {
+               }
+               current = null;
+            }
+         }
+      });
+   }
+
+   /**
+    * Mesajı diskten parça parça okuyup akış olarak döner.
+    * Mesaj yoksa hiç parça gönderilmez.
+    */
+   @Override
+   public void retrieveStream(MessageId request, StreamObserver<ValueChunk> responseObserver) {
+      try {
+         ChunkedTransfer.sendRecord(messageStore, request.getId(), responseObserver, chunkBytes);
+         System.out.println("📤 gRPC RetrieveStream: id=" + request.getId());
+      } catch (IOException e) {
+         responseObserver.onError(Status.INTERNAL.withDescription(e.getMessage()).asRuntimeException());
+      }
    }
 }
@@ -0,0 +1,538 @@
+package com.example.family;
+
+import family.StoredMessage;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * MessageStore'un bir parçası (shard): kendi klasörü, id → sürüm indeksi
+ * ve tek yazıcı thread'i vardır.
+ *
+ * Değer verisi geçici dosyaya çağıran thread'de yazılır; sürüm kontrolü,
+ * yerine taşıma ve indeks güncellemesi shard'ın yazıcı thread'inde sırayla
+ * yapılır. Böylece aynı shard'daki yazımlar kilitsiz sıraya girer, farklı
+ * shard'lar birbirini beklemez.
+ *
+ * Kayıtlar id'nin özetine göre DIR_FANOUT alt klasöre dağılır
+ * (shard-0/3f/42.msg), tek klasörde milyonlarca dosya birikmez.
+ * Sayı, toplam byte ve en büyük değer indeks güncellenirken tutulur.
+ * İndeks id sırasına göre tutulur (skip list), aralık okumaları buradan yapılır.
+ *
+ * Süreli (EX) kayıtlar süreleri dolduğu anda okunamaz hale gelir; dosya ve
+ * indeks girdisi zamanlama çarkı tetiklediğinde yazıcı thread'inde silinir.
+ *
+ * Parçanın id'leri ayrıca bir Bloom filtresinde tutulur; koordinatörler bu
+ * filtreyle kaydın bu üyede olamayacağını sormadan bilir. Filtre dolunca ya
+ * da çok kayıt silinince indeksten yeniden kurulur.
+ *
+ * Anlık görüntü (snapshot) yazıcı thread'inde indeksin kopyası alınarak
+ * başlar; dosyalar sonra arka planda hard link ile görüntü klasörüne
+ * bağlanır. Henüz bağlanmamış bir kayıt değiştirilmeden ya da silinmeden
+ * önce yazıcı thread'i eski dosyayı görüntüye bağlar (copy-on-write), böylece
+ * görüntü yazımları durdurmadan başladığı anı gösterir.
+ */
+public class StoreShard {
+
+   private static final int MIN_BLOOM_CAPACITY = 1024;
+
+   private final int index;
+   private final Path dir;
+   private final int fanout;
+   private final ConcurrentNavigableMap<Integer, IndexEntry> entries = new ConcurrentSkipListMap<>();
+   private final AtomicLong tempCounter = new AtomicLong(System.nanoTime());
+   private final ExecutorService writer;
+   private final TimingWheel expiryWheel;
+   private final int bloomBitsPerKey;
+
+   // İstatistikler; sadece yazıcı thread'i (ve açılıştaki yükleme) günceller
+   private final TreeMap<Integer, Integer> rawLengthCounts = new TreeMap<>();
+   // Kayıt sayısı; skip list'in size()'ı tüm listeyi gezer
+   private volatile int count = 0;
+   private volatile long totalBytes = 0;
+   private volatile int largestValue = 0;
+
+   // Bloom filtresi; sadece yazıcı thread'i (ve açılıştaki yükleme) değiştirir
+   private volatile BloomFilter bloom;
+   private volatile long bloomGeneration = 0;
+   private int bloomCapacity;
+   private int removedSinceBuild = 0;
+
+   // Bağlanması süren anlık görüntüler
+   private final List<ShardSnapshot> activeSnapshots = new CopyOnWriteArrayList<>();
+
+   public StoreShard(int index, Path dir, int fanout, TimingWheel expiryWheel, int bloomBitsPerKey)
+         throws IOException {
+      this.index = index;
+      this.dir = dir;
+      this.fanout = fanout;
+      this.expiryWheel = expiryWheel;
+      this.bloomBitsPerKey = bloomBitsPerKey;
+      this.bloomCapacity = MIN_BLOOM_CAPACITY;
+      this.bloom = BloomFilter.forCapacity(bloomCapacity, bloomBitsPerKey);
+      this.writer = Executors.newSingleThreadExecutor(r -> {
+         Thread t = new Thread(r, "StoreShard-" + index);
+         t.setDaemon(true);
+         return t;
+      });
+      Files.createDirectories(dir);
+      for (int b = 0; b < fanout; b++) {
+         Files.createDirectories(dir.resolve(bucketName(b)));
+      }
+      deleteLeftoverTempFiles();
+      loadIndex();
+   }
+
+   /**
+    * Yazıcıyı kapatır; kuyruktaki yazımlar bitene kadar kısa süre bekler.
+    */
+   public void close() {
+      writer.shutdown();
+      try {
+         writer.awaitTermination(5, TimeUnit.SECONDS);
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }
+   }
+
+   public int getIndex() {
+      return index;
+   }
+
+   public Path getDir() {
+      return dir;
+   }
+
+   public int size() {
+      return count;
+   }
+
+   /** Diskteki kayıtların toplam boyutu (başlık dahil). */
+   public long totalBytes() {
+      return totalBytes;
+   }
+
+   /** En büyük çözülmüş değerin byte uzunluğu. */
+   public int largestValue() {
+      return largestValue;
+   }
+
+   public BloomFilter bloom() {
+      return bloom;
+   }
+
+   /** Filtre her değiştiğinde artar. */
+   public long bloomGeneration() {
+      return bloomGeneration;
+   }
+
+   /**
+    * Kaydın sürümünü indeksten döner; kayıt yoksa ya da süresi dolduysa -1.
+    */
+   public long versionOf(int id) {
+      IndexEntry entry = entries.get(id);
+      return entry == null || entry.isExpired(System.currentTimeMillis()) ? -1 : entry.version;
+   }
+
+   /** İndeksteki en büyük sürüm (süresi dolmuşlar dahil); boşsa 0. */
+   public long maxVersion() {
+      long max = 0;
+      for (IndexEntry entry : entries.values()) {
+         max = Math.max(max, entry.version);
+      }
+      return max;
+   }
+
+   public MessageStore.RecordWriter openWriter(StoredMessage header) throws IOException {
+      int id = header.getId();
+      Path tmp = dir.resolve(id + "." + tempCounter.incrementAndGet() + ".tmp");
+      FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      try {
+         MessageStore.writeFully(channel, ByteBuffer.wrap(MessageStore.encodeHeader(header)));
+      } catch (IOException e) {
+         channel.close();
+         Files.deleteIfExists(tmp);
+         throw e;
+      }
+      return new MessageStore.RecordWriter(this, header, tmp, channel);
+   }
+
+   /**
+    * Ham kayıt dosyası (başlık + kodlanmış değer) yazmak için açar; başlık
+    * commit sırasında dosyadan okunur. Anlık görüntüden geri yüklerken kullanılır.
+    */
+   public MessageStore.RecordWriter openRawWriter(int id) throws IOException {
+      Path tmp = dir.resolve(id + "." + tempCounter.incrementAndGet() + ".tmp");
+      FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+      return new MessageStore.RecordWriter(this, null, id, tmp, channel);
+   }
+
+   /**
+    * [from, to] aralığındaki id'leri artan sırada döner.
+    * İteratör zayıf tutarlıdır: yürürken yapılan yazımları görebilir.
+    */
+   public Iterator<Integer> ids(int from, int to) {
+      return entries.subMap(from, true, to, true).keySet().iterator();
+   }
+
+   /**
+    * Kaydı okumak için açar. İndekste yoksa diske gitmeden null döner.
+    */
+   public MessageStore.RecordReader openReader(int id) throws IOException {
+      IndexEntry entry = entries.get(id);
+      if (entry == null || entry.isExpired(System.currentTimeMillis())) {
+         return null;
+      }
+      return MessageStore.readRecord(fileFor(id), id);
+   }
+
+   /**
+    * Geçici dosyayı yazıcı thread'inde, diskteki kayıttan eski değilse
+    * yerine taşır.
+    */
+   MessageStore.WriteResult install(StoredMessage header, Path tmp, long fileBytes) throws IOException {
+      Future<MessageStore.WriteResult> result = writer.submit(() -> installNow(header, tmp, fileBytes));
+      try {
+         return result.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("interrupted while installing " + header.getId());
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+      }
+   }
+
+   private MessageStore.WriteResult installNow(StoredMessage header, Path tmp, long fileBytes) throws IOException {
+      int id = header.getId();
+      // Süresi dolmuş olsa da mevcut sürüm geçerlidir; eski bir yazım onu geri getirmez
+      IndexEntry current = entries.get(id);
+      if (current != null && current.version > header.getVersion()) {
+         Files.deleteIfExists(tmp);
+         return MessageStore.WriteResult.STALE;
+      }
+      preserveForSnapshots(id);
+      Files.move(tmp, fileFor(id), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      index(id, new IndexEntry(header.getVersion(), fileBytes, header.getRawLength(), header.getExpiresAt()));
+      return MessageStore.WriteResult.APPLIED;
+   }
+
+   /**
+    * Süresi dolan kaydı yazıcı thread'inde siler. Kayıt bu arada yeni bir
+    * sürümle değiştiyse dokunulmaz.
+    */
+   private void expire(int id, long version) {
+      writer.execute(() -> {
+         IndexEntry entry = entries.get(id);
+         if (entry == null || entry.version != version || !entry.isExpired(System.currentTimeMillis())) {
+            return;
+         }
+         try {
+            preserveForSnapshots(id);
+            Files.deleteIfExists(fileFor(id));
+            unindex(id, entry);
+            System.out.println("⌛ Expired: " + id + ".msg");
+         } catch (IOException e) {
+            System.err.println("Failed to delete expired message " + id + ": " + e.getMessage());
+         }
+      });
+   }
+
+   /**
+    * Kaydı, diskteki sürüm verilen sürüm ise yazıcı thread'inde siler.
+    * Bu arada daha yeni bir sürüm yazıldıysa dokunulmaz ve false döner.
+    */
+   boolean deleteIfVersion(int id, long version) throws IOException {
+      Future<Boolean> result = writer.submit(() -> {
+         IndexEntry entry = entries.get(id);
+         if (entry == null || entry.version != version) {
+            return false;
+         }
+         preserveForSnapshots(id);
+         Files.deleteIfExists(fileFor(id));
+         unindex(id, entry);
+         return true;
+      });
+      try {
+         return result.get();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new InterruptedIOException("interrupted while deleting " + id);
+      } catch (ExecutionException e) {
+         Throwable cause = e.getCause();
+         throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+      }
+   }
+
+   /**
+    * İndeksi ve istatistikleri günceller (eski kaydın katkısı düşülür).
+    */
+   private void index(int id, IndexEntry entry) {
+      IndexEntry previous = entries.put(id, entry);
+      long bytes = totalBytes + entry.bytes;
+      if (previous == null) {
+         count++;
+      } else {
+         bytes -= previous.bytes;
+         rawLengthCounts.computeIfPresent(previous.rawLength, (k, c) -> c == 1 ? null : c - 1);
+      }
+      rawLengthCounts.merge(entry.rawLength, 1, Integer::sum);
+      totalBytes = bytes;
+      largestValue = rawLengthCounts.isEmpty() ? 0 : rawLengthCounts.lastKey();
+
+      if (previous == null) {
+         if (count > bloomCapacity) {
+            rebuildBloom();
+         } else {
+            bloom.add(id);
+            bloomGeneration++;
+         }
+      }
+
+      if (entry.expiresAt > 0) {
+         expiryWheel.schedule(entry.expiresAt, () -> expire(id, entry.version));
+      }
+   }
+
+   private void unindex(int id, IndexEntry entry) {
+      if (!entries.remove(id, entry)) {
+         return;
+      }
+      count--;
+      rawLengthCounts.computeIfPresent(entry.rawLength, (k, c) -> c == 1 ? null : c - 1);
+      totalBytes = totalBytes - entry.bytes;
+      largestValue = rawLengthCounts.isEmpty() ? 0 : rawLengthCounts.lastKey();
+
+      // Silinenler filtrede kalır; yanlış pozitifler artınca yeniden kurulur
+      if (++removedSinceBuild > bloomCapacity / 2) {
+         rebuildBloom();
+      }
+   }
+
+   /**
+    * Filtreyi indeksteki id'lerden, büyüme payıyla yeniden kurar.
+    */
+   private void rebuildBloom() {
+      int capacity = Math.max(MIN_BLOOM_CAPACITY, count * 2);
+      BloomFilter rebuilt = BloomFilter.forCapacity(capacity, bloomBitsPerKey);
+      for (Integer id : entries.keySet()) {
+         rebuilt.add(id);
+      }
+      bloom = rebuilt;
+      bloomCapacity = capacity;
+      removedSinceBuild = 0;
+      bloomGeneration++;
+   }
+
+   /**
+    * Kayıt değişmeden önce, onu henüz bağlamamış görüntülere eski dosyayı bağlar.
+    */
+   private void preserveForSnapshots(int id) throws IOException {
+      for (ShardSnapshot snapshot : activeSnapshots) {
+         snapshot.link(id);
+      }
+   }
+
+   /**
+    * Yazıcı thread'inde indeksin o anki halini görüntü olarak dondurur.
+    * Tüm parçalar dondurana kadar (cut) hiçbir parça yeni yazım uygulamaz;
+    * bu süre sadece bellekteki kopya kadardır.
+    */
+   Future<ShardSnapshot> beginSnapshot(Path snapshotDir, CountDownLatch cut, long cutTimeoutMs) {
+      return writer.submit(() -> {
+         ShardSnapshot snapshot;
+         try {
+            long now = System.currentTimeMillis();
+            List<Integer> ids = new ArrayList<>(count);
+            for (Map.Entry<Integer, IndexEntry> e : entries.entrySet()) {
+               if (!e.getValue().isExpired(now)) {
+                  ids.add(e.getKey());
+               }
+            }
+            snapshot = new ShardSnapshot(snapshotDir, ids);
+            activeSnapshots.add(snapshot);
+         } finally {
+            cut.countDown();
+         }
+         // Diğer parçalar kesime gelene kadar yazım yapılmaz; gelmeyen parça
+         // yazıcıyı süresiz bekletmez, görüntü iptal edilir
+         if (!cut.await(cutTimeoutMs, TimeUnit.MILLISECONDS)) {
+            snapshot.finish();
+            throw new IOException("snapshot cut timed out on shard " + index);
+         }
+         return snapshot;
+      });
+   }
+
+   Path fileFor(int id) {
+      return recordPath(dir, id, fanout);
+   }
+
+   /**
+    * Kaydın shard klasörü içindeki yeri: <shard>/<bucket>/<id>.msg
+    * (fanout 0 ise düz: <shard>/<id>.msg).
+    */
+   static Path recordPath(Path shardDir, int id, int fanout) {
+      if (fanout <= 0) {
+         return shardDir.resolve(id + ".msg");
+      }
+      // Shard seçiminden farklı bitler kullanılır, yoksa bir shard'ın tüm kayıtları aynı klasöre düşer
+      long h = (id & 0xFFFFFFFFL) * 0xC2B2AE3D27D4EB4FL;
+      int bucket = (int) Math.floorMod(h >>> 40, (long) fanout);
+      return shardDir.resolve(bucketName(bucket)).resolve(id + ".msg");
+   }
+
+   private static String bucketName(int bucket) {
+      return String.format("%02x", bucket);
+   }
+
+   private void loadIndex() throws IOException {
+      try (Stream<Path> files = Files.walk(dir, 2)) {
+         files.filter(p -> p.getFileName().toString().endsWith(".msg")).forEach(p -> {
+            Integer id = MessageStore.idOf(p);
+            if (id == null) {
+               return;
+            }
+            try (MessageStore.RecordReader reader = MessageStore.readRecord(p, id)) {
+               if (reader != null) {
+                  StoredMessage header = reader.getHeader();
+                  index(id, new IndexEntry(header.getVersion(), Files.size(p), header.getRawLength(),
+                        header.getExpiresAt()));
+               }
+            } catch (IOException e) {
+               System.err.println("Skipping unreadable record " + p + ": " + e.getMessage());
+            }
+         });
+      }
+   }
+
+   private void deleteLeftoverTempFiles() throws IOException {
+      try (Stream<Path> files = Files.list(dir)) {
+         files.filter(p -> p.toString().endsWith(".tmp")).forEach(p -> {
+            try {
+               Files.deleteIfExists(p);
+            } catch (IOException ignored) {
+            }
+         });
+      }
+   }
+
+   /**
+    * Bir parçanın anlık görüntüsü: dondurulan id listesi ve henüz
+    * bağlanmamış olanlar. Kayıtlar sırayla okunurken bağlanır.
+    */
+   class ShardSnapshot {
+
+      private final Path dir;
+      private final List<Integer> ids;
+      private final Set<Integer> pending = ConcurrentHashMap.newKeySet();
+
+      ShardSnapshot(Path dir, List<Integer> ids) throws IOException {
+         this.dir = dir;
+         this.ids = ids;
+         this.pending.addAll(ids);
+         Files.createDirectories(dir);
+      }
+
+      int size() {
+         return ids.size();
+      }
+
+      Path getDir() {
+         return dir;
+      }
+
+      /**
+       * Kaydı (bağlanmadıysa) görüntüye bağlar; hard link desteklenmezse
+       * kopyalar. Dosya dışarıdan silinmişse null döner.
+       */
+      synchronized Path link(int id) throws IOException {
+         Path target = dir.resolve(id + ".msg");
+         if (!pending.remove(id)) {
+            return Files.exists(target) ? target : null;
+         }
+         Path source = fileFor(id);
+         try {
+            Files.createLink(target, source);
+         } catch (NoSuchFileException e) {
+            return null;
+         } catch (UnsupportedOperationException | FileSystemException e) {
+            Files.copy(source, target, StandardCopyOption.REPLACE_EXISTING);
+         }
+         return target;
+      }
+
+      /**
+       * Görüntüdeki dosyalar; her biri istendiği anda bağlanır.
+       * Bu sırada değişen ya da silinen kayıtlar görüntüye önceden bağlanmıştır.
+       * Dışarıdan silinmiş kayıtlar için null döner.
+       */
+      Iterator<Path> files() {
+         Iterator<Integer> it = ids.iterator();
+         return new Iterator<Path>() {
+            @Override
+            public boolean hasNext() {
+               return it.hasNext();
+            }
+
+            @Override
+            public Path next() {
+               if (!it.hasNext()) {
+                  throw new NoSuchElementException();
+               }
+               try {
+                  return link(it.next());
+               } catch (IOException e) {
+                  throw new UncheckedIOException(e);
+               }
+            }
+         };
+      }
+
+      /** Görüntü bittiğinde yazımlar artık onu beklemez. */
+      void finish() {
+         activeSnapshots.remove(this);
+      }
+   }
+
+   private static class IndexEntry {
+      final long version;
+      final long bytes;
+      final int rawLength;
+      final long expiresAt; // epoch ms, 0 = süresiz
+
+      IndexEntry(long version, long bytes, int rawLength, long expiresAt) {
+         this.version = version;
+         this.bytes = bytes;
+         this.rawLength = rawLength;
+         this.expiresAt = expiresAt;
+      }
+
+      boolean isExpired(long nowMs) {
+         return expiresAt > 0 && expiresAt <= nowMs;
+      }
+   }
+}
@@ -0,0 +1,173 @@
+package com.example.family;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hiyerarşik zamanlama çarkı (hierarchical timing wheel).
+ *
+ * Her seviyede 64 yuva vardır; 0. seviyenin bir yuvası bir tick, 1.
+ * seviyenin bir yuvası 64 tick, ... kadar zamanı kapsar. Görev eklemek
+ * O(1)'dir, her tick'te sadece o anki yuva işlenir. Üst seviyedeki bir yuva
+ * sırası gelince alt seviyelere dağıtılır (cascade). Böylece süresi dolan
+ * kayıtlar tüm kayıtları taramadan bulunur.
+ *
+ * Görevler tek bir "ExpirySweeper" thread'inde çalışır; uzun iş yapmamalıdır.
+ */
+public class TimingWheel {
+
+   private static final int SLOT_BITS = 6;
+   private static final int SLOTS = 1 << SLOT_BITS;
+   private static final int LEVELS = 4;
+   private static final long MAX_TICKS = 1L << (SLOT_BITS * LEVELS);
+
+   private final long tickMs;
+   private final List<List<Entry>> slots = new ArrayList<>();
+   private long currentTick;
+   private int pending = 0;
+   private ScheduledExecutorService sweeper;
+
+   public TimingWheel(long tickMs) {
+      this(tickMs, System.currentTimeMillis());
+   }
+
+   /** Çarkı verilen andan (epoch ms) başlatır; testler zamanı advance ile sürer. */
+   TimingWheel(long tickMs, long nowMs) {
+      this.tickMs = Math.max(1, tickMs);
+      this.currentTick = nowMs / this.tickMs;
+      for (int i = 0; i < LEVELS * SLOTS; i++) {
+         slots.add(new ArrayList<>());
+      }
+   }
+
+   /**
+    * Çarkı ilerleten thread'i başlatır.
+    */
+   public void start() {
+      sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+         Thread t = new Thread(r, "ExpirySweeper");
+         t.setDaemon(true);
+         return t;
+      });
+      sweeper.scheduleAtFixedRate(() -> {
+         try {
+            advance(System.currentTimeMillis());
+         } catch (Exception e) {
+            System.err.println("Timing wheel tick failed: " + e.getMessage());
+         }
+      }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+   }
+
+   /**
+    * Çarkı durdurur; bekleyen görevler çalışmaz.
+    */
+   public void stop() {
+      if (sweeper != null) {
+         sweeper.shutdownNow();
+      }
+   }
+
+   /**
+    * Görevi verilen zamanda (epoch ms) çalışmak üzere ekler.
+    * Zamanı geçmişse bir sonraki tick'te çalışır.
+    */
+   public synchronized void schedule(long deadlineMs, Runnable task) {
+      place(new Entry((deadlineMs + tickMs - 1) / tickMs, task));
+      pending++;
+   }
+
+   public synchronized int pending() {
+      return pending;
+   }
+
+   private void place(Entry entry) {
+      long delta = entry.dueTick - currentTick;
+      if (delta <= 0) {
+         // Geçmiş: bir sonraki tick'in yuvası
+         slot(0, currentTick + 1).add(entry);
+         return;
+      }
+      if (delta >= MAX_TICKS) {
+         // Çarkın kapsamından uzak: en üst seviyenin en son yuvasına, sırası gelince yeniden yerleşir
+         slot(LEVELS - 1, currentTick + MAX_TICKS - 1).add(entry);
+         return;
+      }
+      int level = 0;
+      while (delta >= 1L << (SLOT_BITS * (level + 1))) {
+         level++;
+      }
+      slot(level, entry.dueTick).add(entry);
+   }
+
+   private List<Entry> slot(int level, long tick) {
+      int index = (int) ((tick >>> (SLOT_BITS * level)) & (SLOTS - 1));
+      return slots.get(level * SLOTS + index);
+   }
+
+   /**
+    * Geçen her tick için: gerekiyorsa üst seviyeleri aşağı dağıtır, sonra
+    * 0. seviyenin yuvasındaki görevleri çalıştırır.
+    */
+   void advance(long nowMs) {
+      long nowTick = nowMs / tickMs;
+      while (true) {
+         List<Entry> due;
+         synchronized (this) {
+            if (currentTick >= nowTick) {
+               return;
+            }
+            currentTick++;
+            for (int level = 1; level < LEVELS; level++) {
+               if ((currentTick & ((1L << (SLOT_BITS * level)) - 1)) != 0) {
+                  break;
+               }
+               List<Entry> upper = slot(level, currentTick);
+               List<Entry> moving = new ArrayList<>(upper);
+               upper.clear();
+               for (Entry e : moving) {
+                  if (e.dueTick <= currentTick) {
+                     // Tam bu tick'e düşen: place bir sonraki tick'e koyardı, aşağıda işlenecek yuvaya girer
+                     slot(0, currentTick).add(e);
+                  } else {
+                     place(e);
+                  }
+               }
+            }
+
+            List<Entry> current = slot(0, currentTick);
+            due = new ArrayList<>(current.size());
+            List<Entry> notYet = new ArrayList<>();
+            for (Entry e : current) {
+               (e.dueTick <= currentTick ? due : notYet).add(e);
+            }
+            current.clear();
+            for (Entry e : notYet) {
+               place(e);
+            }
+            pending -= due.size();
+         }
+
+         // Görevler kilit dışında çalışır; yeni görev ekleyebilirler
+         for (Entry e : due) {
+            try {
+               e.task.run();
+            } catch (Exception ex) {
+               System.err.println("Expiry task failed: " + ex.getMessage());
+            }
+         }
+      }
+   }
+
+   private static class Entry {
+      final long dueTick;
+      final Runnable task;
+
+      Entry(long dueTick, Runnable task) {
+         this.dueTick = dueTick;
+         this.task = task;
+      }
+   }
+}
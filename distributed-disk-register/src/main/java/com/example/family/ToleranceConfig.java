@@ -19,6 +19,14 @@ public class ToleranceConfig {
       System.out.println("⚙️ Tolerance config loaded: " + tolerance);
    }
 
+   /**
+    * Dosya yerine verilen değerle (ör. TOLERANCE ayarı) oluşturur.
+    */
+   public ToleranceConfig(int tolerance) {
+      this.tolerance = Math.max(1, tolerance);
+      System.out.println("⚙️ Tolerance set: " + this.tolerance);
+   }
+
    private int readTolerance() {
       Path configPath = Paths.get(CONFIG_FILE);
 
@@ -0,0 +1,259 @@
+package com.example.family;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Context;
+import io.grpc.Contexts;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener;
+import io.grpc.ForwardingServerCall;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * İstek yaşam döngüsü için Java Flight Recorder olayları.
+ *
+ * Her TCP komutu bir iz (trace) numarası alır. Numara gRPC Context'inde
+ * taşınır; istemci önleyicisi (interceptor) onu x-family-trace başlığına
+ * yazar, sunucu önleyicisi üyede aynı Context'e koyar. Böylece liderin
+ * aşamaları, RPC'ler ve üyedeki disk okuma/yazmaları aynı traceId ile
+ * eşleşir.
+ *
+ * Olaylar ancak bir JFR kaydı açıkken yazılır; kapalıyken begin/end/
+ * shouldCommit neredeyse bedavadır ve alanlar hiç doldurulmaz. Kayıt:
+ *   java -XX:StartFlightRecording=filename=node.jfr,settings=profile ...
+ *   jfr print --events family.Stage node.jfr
+ */
+public final class Tracing {
+
+   static final Metadata.Key<String> TRACE_HEADER =
+         Metadata.Key.of("x-family-trace", Metadata.ASCII_STRING_MARSHALLER);
+   static final Context.Key<Long> TRACE_ID = Context.key("family-trace-id");
+
+   private Tracing() {
+   }
+
+   @Name("family.Request")
+   @Label("Client Command")
+   @Category({"Family", "Coordinator"})
+   @Description("Bir TCP komutunun okunmasından cevabın yazılmasına kadar")
+   @StackTrace(false)
+   public static class RequestEvent extends Event {
+      @Label("Trace Id")
+      long traceId;
+      @Label("Command")
+      String command;
+      @Label("Message Id")
+      int messageId;
+      @Label("Value Bytes")
+      long valueBytes;
+   }
+
+   @Name("family.Stage")
+   @Label("Command Stage")
+   @Category({"Family", "Coordinator"})
+   @StackTrace(false)
+   public static class StageEvent extends Event {
+      @Label("Trace Id")
+      long traceId;
+      @Label("Stage")
+      String stage;
+      @Label("Message Id")
+      int messageId;
+   }
+
+   @Name("family.RpcClient")
+   @Label("Outgoing RPC")
+   @Category({"Family", "gRPC"})
+   @StackTrace(false)
+   public static class RpcClientEvent extends Event {
+      @Label("Trace Id")
+      long traceId;
+      @Label("Method")
+      String method;
+      @Label("Target")
+      String target;
+      @Label("Status")
+      String status;
+   }
+
+   @Name("family.RpcServer")
+   @Label("Incoming RPC")
+   @Category({"Family", "gRPC"})
+   @StackTrace(false)
+   public static class RpcServerEvent extends Event {
+      @Label("Trace Id")
+      long traceId;
+      @Label("Method")
+      String method;
+      @Label("Status")
+      String status;
+   }
+
+   @Name("family.StoreIo")
+   @Label("Store I/O")
+   @Category({"Family", "Storage"})
+   @StackTrace(false)
+   public static class StoreEvent extends Event {
+      @Label("Trace Id")
+      long traceId;
+      @Label("Operation")
+      String operation;
+      @Label("Message Id")
+      int messageId;
+      @Label("Bytes")
+      long bytes;
+      @Label("Result")
+      String result;
+   }
+
+   /** Yeni, sıfırdan farklı iz numarası. */
+   public static long newTraceId() {
+      long id;
+      do {
+         id = ThreadLocalRandom.current().nextLong();
+      } while (id == 0);
+      return id;
+   }
+
+   /** Geçerli Context'teki iz numarası; yoksa 0. */
+   public static long currentTraceId() {
+      Long id = TRACE_ID.get();
+      return id == null ? 0 : id;
+   }
+
+   /** İz numarasını taşıyan Context (attach/detach ile kullanılır). */
+   public static Context withTraceId(long traceId) {
+      return Context.current().withValue(TRACE_ID, traceId);
+   }
+
+   /** Bir aşamayı başlatır; stageEnd ile biter. */
+   public static StageEvent stageBegin() {
+      StageEvent event = new StageEvent();
+      event.begin();
+      return event;
+   }
+
+   public static void stageEnd(StageEvent event, String stage, int messageId) {
+      event.end();
+      if (event.shouldCommit()) {
+         event.traceId = currentTraceId();
+         event.stage = stage;
+         event.messageId = messageId;
+         event.commit();
+      }
+   }
+
+   /** Disk işlemini başlatır; storeEnd ile biter. */
+   public static StoreEvent storeBegin() {
+      StoreEvent event = new StoreEvent();
+      event.begin();
+      return event;
+   }
+
+   public static void storeEnd(StoreEvent event, String operation, int messageId, long bytes, Object result) {
+      event.end();
+      if (event.shouldCommit()) {
+         event.traceId = currentTraceId();
+         event.operation = operation;
+         event.messageId = messageId;
+         event.bytes = bytes;
+         event.result = String.valueOf(result);
+         event.commit();
+      }
+   }
+
+   /**
+    * Giden çağrılara iz başlığını ekler ve her çağrı için RpcClientEvent yazar.
+    */
+   public static ClientInterceptor clientInterceptor() {
+      return new ClientInterceptor() {
+         @Override
+         public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(MethodDescriptor<ReqT, RespT> method,
+               CallOptions callOptions, Channel next) {
+            long traceId = currentTraceId();
+            return new ForwardingClientCall.SimpleForwardingClientCall<ReqT, RespT>(
+                  next.newCall(method, callOptions)) {
+               @Override
+               public void start(Listener<RespT> responseListener, Metadata headers) {
+                  if (traceId != 0) {
+                     headers.put(TRACE_HEADER, Long.toHexString(traceId));
+                  }
+                  RpcClientEvent event = new RpcClientEvent();
+                  event.begin();
+                  super.start(new ForwardingClientCallListener.SimpleForwardingClientCallListener<RespT>(
+                        responseListener) {
+                     @Override
+                     public void onClose(Status status, Metadata trailers) {
+                        event.end();
+                        if (event.shouldCommit()) {
+                           event.traceId = traceId;
+                           event.method = method.getFullMethodName();
+                           event.target = next.authority();
+                           event.status = status.getCode().name();
+                           event.commit();
+                        }
+                        super.onClose(status, trailers);
+                     }
+                  }, headers);
+               }
+            };
+         }
+      };
+   }
+
+   /**
+    * Gelen çağrının iz başlığını Context'e koyar ve RpcServerEvent yazar.
+    */
+   public static ServerInterceptor serverInterceptor() {
+      return new ServerInterceptor() {
+         @Override
+         public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(ServerCall<ReqT, RespT> call,
+               Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+            long traceId = parse(headers.get(TRACE_HEADER));
+            RpcServerEvent event = new RpcServerEvent();
+            event.begin();
+            ServerCall<ReqT, RespT> traced = new ForwardingServerCall.SimpleForwardingServerCall<ReqT, RespT>(call) {
+               @Override
+               public void close(Status status, Metadata trailers) {
+                  event.end();
+                  if (event.shouldCommit()) {
+                     event.traceId = traceId;
+                     event.method = call.getMethodDescriptor().getFullMethodName();
+                     event.status = status.getCode().name();
+                     event.commit();
+                  }
+                  super.close(status, trailers);
+               }
+            };
+            Context context = traceId != 0 ? withTraceId(traceId) : Context.current();
+            return Contexts.interceptCall(context, traced, headers, next);
+         }
+      };
+   }
+
+   private static long parse(String header) {
+      if (header == null) {
+         return 0;
+      }
+      try {
+         return Long.parseUnsignedLong(header, 16);
+      } catch (NumberFormatException e) {
+         return 0;
+      }
+   }
+}
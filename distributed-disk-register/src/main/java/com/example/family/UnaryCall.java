@@ -0,0 +1,34 @@
+package com.example.family;
+
+import io.grpc.stub.StreamObserver;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Tekli (unary) gRPC çağrısının cevabını bekleyen future.
+ *
+ * Async stub'a gözlemci olarak verilir; cevap gelince tamamlanır, hata
+ * (deadline dahil) gelince hatayla tamamlanır:
+ *
+ *   UnaryCall&lt;RecordStat&gt; call = new UnaryCall&lt;&gt;();
+ *   StorageServiceGrpc.newStub(channel).stat(request, call);
+ *   RecordStat stat = call.get();
+ */
+public class UnaryCall<T> extends CompletableFuture<T> implements StreamObserver<T> {
+
+   @Override
+   public void onNext(T value) {
+      complete(value);
+   }
+
+   @Override
+   public void onError(Throwable t) {
+      completeExceptionally(t);
+   }
+
+   @Override
+   public void onCompleted() {
+      // Cevapsız kapanan çağrı beklemede kalmasın
+      completeExceptionally(new IllegalStateException("call completed without a response"));
+   }
+}
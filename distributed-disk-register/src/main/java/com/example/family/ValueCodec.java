@@ -0,0 +1,178 @@
+package com.example.family;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import family.Codec;
+import family.StoredMessage;
+import net.jpountz.lz4.LZ4BlockInputStream;
+import net.jpountz.lz4.LZ4BlockOutputStream;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Değer sıkıştırma. Lider SET sırasında değeri bir kez kodlar, diske ve
+ * replikalara kodlanmış hali gider; GET sırasında lider çözer.
+ *
+ * AUTO modunda küçük değerler sıkıştırılmaz, orta boyutlar hızlı LZ4 ile,
+ * büyük değerler daha iyi oran veren DEFLATE ile sıkıştırılır. Küçülmeyen
+ * değerler RAW olarak saklanır.
+ */
+public class ValueCodec {
+
+   public enum Mode {
+      AUTO,
+      LZ4,
+      DEFLATE,
+      NONE
+   }
+
+   private static final LZ4Factory LZ4 = LZ4Factory.fastestInstance();
+   private static final int LZ4_BLOCK_SIZE = 64 * 1024;
+
+   private final Mode mode;
+   private final int minBytes;
+   private final int deflateFromBytes;
+
+   public ValueCodec(NodeConfig config) {
+      this(parseMode(config.getString("COMPRESSION", "AUTO")),
+            config.getInt("COMPRESSION_MIN_BYTES", 512),
+            config.getInt("COMPRESSION_DEFLATE_FROM_BYTES", 64 * 1024));
+   }
+
+   public ValueCodec(Mode mode, int minBytes, int deflateFromBytes) {
+      this.mode = mode;
+      this.minBytes = minBytes;
+      this.deflateFromBytes = deflateFromBytes;
+      System.out.println("⚙️ Compression: " + mode + " (min=" + minBytes + "B, deflate from="
+            + deflateFromBytes + "B)");
+   }
+
+   private static Mode parseMode(String value) {
+      try {
+         return Mode.valueOf(value.trim().toUpperCase());
+      } catch (IllegalArgumentException e) {
+         System.err.println("Unknown COMPRESSION=" + value + ", using AUTO");
+         return Mode.AUTO;
+      }
+   }
+
+   /**
+    * Ham değeri uygun codec ile kodlayıp saklanacak mesajı oluşturur.
+    */
+   public StoredMessage encode(int id, ByteString raw) {
+      Codec codec = chooseCodec(raw.size());
+      ByteString encoded = null;
+
+      if (codec == Codec.LZ4) {
+         encoded = compressLz4(raw);
+      } else if (codec == Codec.DEFLATE) {
+         encoded = compressDeflate(raw);
+      }
+
+      // Küçülmediyse ham sakla
+      if (encoded == null || encoded.size() >= raw.size()) {
+         codec = Codec.RAW;
+         encoded = raw;
+      }
+
+      return StoredMessage.newBuilder()
+            .setId(id)
+            .setValue(encoded)
+            .setCodec(codec)
+            .setRawLength(raw.size())
+            .build();
+   }
+
+   private Codec chooseCodec(int size) {
+      if (size < minBytes) {
+         return Codec.RAW;
+      }
+      switch (mode) {
+         case LZ4:
+            return Codec.LZ4;
+         case DEFLATE:
+            return Codec.DEFLATE;
+         case AUTO:
+            return size >= deflateFromBytes ? Codec.DEFLATE : Codec.LZ4;
+         case NONE:
+         default:
+            return Codec.RAW;
+      }
+   }
+
+   /**
+    * Saklanan mesajın değerini ham haline çevirir.
+    */
+   public static ByteString decode(StoredMessage message) {
+      switch (message.getCodec()) {
+         case LZ4:
+            return decompressLz4(message.getValue(), message.getRawLength());
+         case DEFLATE:
+            return decompressDeflate(message.getValue(), message.getRawLength());
+         case RAW:
+         default:
+            return message.getValue();
+      }
+   }
+
+   /**
+    * Kodlanmış değer akışını ham değer akışına çevirir; büyük değerler
+    * belleğe alınmadan parça parça çözülür.
+    */
+   public static InputStream decodingStream(Codec codec, InputStream encoded) {
+      switch (codec) {
+         case LZ4:
+            return new LZ4BlockInputStream(encoded, LZ4.fastDecompressor());
+         case DEFLATE:
+            return new InflaterInputStream(encoded);
+         case RAW:
+         default:
+            return encoded;
+      }
+   }
+
+   private static ByteString compressLz4(ByteString raw) {
+      ByteString.Output out = ByteString.newOutput(Math.max(64, raw.size() / 2));
+      try (LZ4BlockOutputStream lz4Out = new LZ4BlockOutputStream(out, LZ4_BLOCK_SIZE, LZ4.fastCompressor())) {
+         raw.writeTo(lz4Out);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+      return out.toByteString();
+   }
+
+   private static ByteString decompressLz4(ByteString encoded, int rawLength) {
+      try (InputStream in = new LZ4BlockInputStream(encoded.newInput(), LZ4.fastDecompressor())) {
+         return UnsafeByteOperations.unsafeWrap(in.readNBytes(rawLength));
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+
+   private static ByteString compressDeflate(ByteString raw) {
+      ByteString.Output out = ByteString.newOutput(Math.max(64, raw.size() / 2));
+      Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try (DeflaterOutputStream deflaterOut = new DeflaterOutputStream(out, deflater)) {
+         raw.writeTo(deflaterOut);
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      } finally {
+         deflater.end();
+      }
+      return out.toByteString();
+   }
+
+   private static ByteString decompressDeflate(ByteString encoded, int rawLength) {
+      try (InputStream in = new InflaterInputStream(encoded.newInput())) {
+         return UnsafeByteOperations.unsafeWrap(in.readNBytes(rawLength));
+      } catch (IOException e) {
+         throw new UncheckedIOException(e);
+      }
+   }
+}
@@ -0,0 +1,72 @@
+package com.example.family;
+
+import family.NodeInfo;
+
+/**
+ * Yazım sürümleri için hibrit mantıksal saat.
+ *
+ * Sürüm = [EPOCH_MS'den beri milisaniye (41 bit) | sayaç (10 bit) | düğüm etiketi (12 bit)].
+ * Toplam 63 bit olduğundan sürüm işaret bitine değmez ve long olarak
+ * karşılaştırılabilir; 41 bitlik milisaniye EPOCH_MS'den (2024-01-01)
+ * itibaren ~69 yıl, 2093 yılına kadar yeter.
+ *
+ * Aynı düğümde her çağrı bir öncekinden büyüktür; düğüm etiketi farklı
+ * koordinatörlerin aynı sürümü üretmesini engeller, bu yüzden ailede tek
+ * olmalıdır. Etiket NODE_ID ayarından, yoksa portun START_PORT'a
+ * uzaklığından alınır; farklı makinelerde aynı portu kullanan düğümlere
+ * NODE_ID verilmelidir. Üyeler gördükleri sürümleri observe ile bildirir,
+ * böylece saati geride kalan bir düğüm bile mevcut kayıtlardan büyük sürüm
+ * üretir.
+ */
+public class VersionClock {
+
+   /** Sürümlerdeki zamanın başlangıcı: 2024-01-01T00:00:00Z. */
+   static final long EPOCH_MS = 1_704_067_200_000L;
+   private static final int COUNTER_BITS = 10;
+   private static final int NODE_BITS = 12;
+   static final int MAX_NODE_TAG = (1 << NODE_BITS) - 1;
+
+   private final long nodeTag;
+   private long last = 0; // milisaniye << COUNTER_BITS | sayaç
+
+   public VersionClock(NodeInfo self, NodeConfig config) {
+      this.nodeTag = nodeTag(self, config);
+   }
+
+   /**
+    * Düğüm etiketi: NODE_ID, yoksa portun START_PORT'a uzaklığı. İkisi de
+    * 0..MAX_NODE_TAG dışındaysa adresin özeti kullanılır; bu çakışabilir.
+    */
+   static long nodeTag(NodeInfo self, NodeConfig config) {
+      int configured = config.getInt("NODE_ID", -1);
+      if (configured >= 0 && configured <= MAX_NODE_TAG) {
+         return configured;
+      }
+      if (configured > MAX_NODE_TAG) {
+         System.err.println("NODE_ID " + configured + " is out of range 0.." + MAX_NODE_TAG + ", ignored");
+      }
+      int offset = self.getPort() - config.getInt("START_PORT", 5555);
+      if (offset >= 0 && offset <= MAX_NODE_TAG) {
+         return offset;
+      }
+      System.err.println("⚠️ Version tag for " + self.getHost() + ":" + self.getPort()
+            + " derived from its address and may collide; set NODE_ID");
+      return (self.getHost() + ":" + self.getPort()).hashCode() & MAX_NODE_TAG;
+   }
+
+   /**
+    * Yeni, bu düğümde daha önce verilmemiş bir sürüm döner.
+    */
+   public synchronized long next() {
+      long physical = (System.currentTimeMillis() - EPOCH_MS) << COUNTER_BITS;
+      last = Math.max(physical, last + 1);
+      return (last << NODE_BITS) | nodeTag;
+   }
+
+   /**
+    * Başka bir düğümün verdiği sürümü görür; sonraki sürümler bundan büyük olur.
+    */
+   public synchronized void observe(long version) {
+      last = Math.max(last, version >>> NODE_BITS);
+   }
+}
@@ -0,0 +1,75 @@
+package com.example.family;
+
+import com.google.protobuf.ByteString;
+import family.BloomFilterData;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+class BloomFilterTest {
+
+   @Test
+   void neverReportsAddedIdAsMissing() {
+      Random random = new Random(42);
+      for (int keys : new int[] {0, 1, 63, 1_000, 100_000}) {
+         for (int bitsPerKey : new int[] {1, 4, 10}) {
+            BloomFilter filter = BloomFilter.forCapacity(keys, bitsPerKey);
+            Set<Integer> added = new HashSet<>();
+            // Kapasitenin iki katı: dolu filtre de yanlış negatif vermemeli
+            for (int i = 0; i < keys * 2 + 10; i++) {
+               int id = random.nextInt();
+               filter.add(id);
+               added.add(id);
+            }
+            added.add(Integer.MIN_VALUE);
+            added.add(Integer.MAX_VALUE);
+            added.add(0);
+            added.add(-1);
+            filter.add(Integer.MIN_VALUE);
+            filter.add(Integer.MAX_VALUE);
+            filter.add(0);
+            filter.add(-1);
+
+            BloomFilter copy = BloomFilter.fromProto(filter.toProto());
+            assertNotNull(copy);
+            for (int id : added) {
+               if (!filter.mightContain(id) || !copy.mightContain(id)) {
+                  fail("false negative for " + id + " (keys=" + keys + ", bitsPerKey=" + bitsPerKey + ")");
+               }
+            }
+         }
+      }
+   }
+
+   @Test
+   void falsePositiveRateNearTarget() {
+      BloomFilter filter = BloomFilter.forCapacity(50_000, 10);
+      for (int id = 0; id < 50_000; id++) {
+         filter.add(id);
+      }
+      int positives = 0;
+      int probes = 100_000;
+      for (int id = 1_000_000; id < 1_000_000 + probes; id++) {
+         if (filter.mightContain(id)) {
+            positives++;
+         }
+      }
+      // 10 bit/anahtar için beklenen ~%1
+      assertTrue(positives < probes * 0.02, "false positives: " + positives);
+   }
+
+   @Test
+   void rejectsCorruptProto() {
+      BloomFilterData valid = BloomFilter.forCapacity(100, 10).toProto();
+      assertNull(BloomFilter.fromProto(valid.toBuilder().setBitCount(valid.getBitCount() + 64).build()));
+      assertNull(BloomFilter.fromProto(valid.toBuilder().setHashCount(0).build()));
+      assertNull(BloomFilter.fromProto(valid.toBuilder().setBits(ByteString.copyFrom(new byte[7])).build()));
+   }
+}
@@ -0,0 +1,107 @@
+package com.example.family;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class CommandTest {
+
+   private static Command parse(String line) {
+      return Command.parse(line.getBytes(StandardCharsets.UTF_8));
+   }
+
+   private static void assertUnknown(String line) {
+      assertEquals(Command.Type.UNKNOWN, parse(line).getType(), "'" + line + "'");
+   }
+
+   @Test
+   void parsesWellFormedCommands() {
+      Command set = parse("SET 7 hello world");
+      assertEquals(Command.Type.SET, set.getType());
+      assertEquals(7, set.getMessageId());
+      assertEquals("hello world", set.getValue().toStringUtf8());
+      assertEquals(0, set.getTtlSeconds());
+
+      Command get = parse("get 42\r\n");
+      assertEquals(Command.Type.GET, get.getType());
+      assertEquals(42, get.getMessageId());
+
+      Command scan = parse("SCAN 1 10 3");
+      assertEquals(Command.Type.SCAN, scan.getType());
+      assertEquals(1, scan.getMessageId());
+      assertEquals(10, scan.getRangeEnd());
+      assertEquals(3, scan.getLimit());
+
+      assertEquals(-1, parse("SCAN 1 10").getLimit());
+      assertEquals("hi all", parse("BROADCAST hi all").getValue().toStringUtf8());
+   }
+
+   @Test
+   void parsesExpiry() {
+      Command set = parse("SET 1 value EX 30");
+      assertEquals("value", set.getValue().toStringUtf8());
+      assertEquals(30, set.getTtlSeconds());
+   }
+
+   @Test
+   void keepsIncompleteExpiryInValue() {
+      assertEquals("value EX", parse("SET 1 value EX").getValue().toStringUtf8());
+      assertEquals("value EX 0", parse("SET 1 value EX 0").getValue().toStringUtf8());
+      assertEquals("value EX -5", parse("SET 1 value EX -5").getValue().toStringUtf8());
+      assertEquals("value EX soon", parse("SET 1 value EX soon").getValue().toStringUtf8());
+
+      // Değerin tamamı "EX 5" ise süre değil değerdir
+      Command onlyEx = parse("SET 1 EX 5");
+      assertEquals("EX 5", onlyEx.getValue().toStringUtf8());
+      assertEquals(0, onlyEx.getTtlSeconds());
+   }
+
+   @Test
+   void rejectsMissingParts() {
+      assertUnknown("");
+      assertUnknown("   ");
+      assertUnknown("SET");
+      assertUnknown("SET 1");
+      assertUnknown("SET 1   ");
+      assertUnknown("GET");
+      assertUnknown("SCAN");
+      assertUnknown("SCAN 1");
+      assertUnknown("BROADCAST");
+      assertUnknown("BROADCAST   ");
+   }
+
+   @Test
+   void rejectsMalformedNumbers() {
+      assertUnknown("GET abc");
+      assertUnknown("GET 12x");
+      assertUnknown("GET -");
+      assertUnknown("GET +");
+      assertUnknown("GET 2147483648");
+      assertUnknown("GET 99999999999999999999");
+      assertUnknown("SET x value");
+      assertUnknown("SCAN 1 b");
+      assertUnknown("SCAN 1 5 c");
+      assertEquals(Integer.MIN_VALUE, parse("GET -2147483648").getMessageId());
+   }
+
+   @Test
+   void rejectsInvalidScanRanges() {
+      assertUnknown("SCAN 5 1");
+      assertUnknown("SCAN 1 5 0");
+      assertUnknown("SCAN 1 5 -1");
+      assertUnknown("SCAN 1 5 2 extra");
+   }
+
+   @Test
+   void rejectsUnknownVerbs() {
+      assertUnknown("DEL 1");
+      assertUnknown("SETX 1 a");
+      assertUnknown("GE 1");
+      Command nothing = Command.parse(null);
+      assertEquals(Command.Type.UNKNOWN, nothing.getType());
+      assertNull(nothing.getValue());
+   }
+}
@@ -0,0 +1,100 @@
+package com.example.family;
+
+import io.grpc.BindableService;
+import io.grpc.CallOptions;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.Server;
+import io.grpc.ServerServiceDefinition;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.netty.shaded.io.grpc.netty.NettyChannelBuilder;
+import io.grpc.stub.ClientCalls;
+import io.grpc.stub.ServerCalls;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class GrpcServerFactoryTest {
+
+   private static final MethodDescriptor.Marshaller<String> TEXT = new MethodDescriptor.Marshaller<>() {
+      @Override
+      public InputStream stream(String value) {
+         return new ByteArrayInputStream(value.getBytes(StandardCharsets.UTF_8));
+      }
+
+      @Override
+      public String parse(InputStream stream) {
+         try {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+         } catch (IOException e) {
+            throw new UncheckedIOException(e);
+         }
+      }
+   };
+
+   // Servis adı FamilyService olmadığından "storage" havuzuna gider
+   private static final MethodDescriptor<String, String> SLOW = MethodDescriptor.<String, String>newBuilder()
+         .setType(MethodDescriptor.MethodType.UNARY)
+         .setFullMethodName(MethodDescriptor.generateFullMethodName("test.Slow", "Call"))
+         .setRequestMarshaller(TEXT)
+         .setResponseMarshaller(TEXT)
+         .build();
+
+   @Test
+   void shedsNewCallsWithoutWaitingForBusyPool() throws Exception {
+      CountDownLatch release = new CountDownLatch(1);
+      BindableService slow = () -> ServerServiceDefinition.builder("test.Slow")
+            .addMethod(SLOW, ServerCalls.asyncUnaryCall((request, response) -> {
+               try {
+                  release.await();
+               } catch (InterruptedException e) {
+                  Thread.currentThread().interrupt();
+               }
+               response.onNext(request);
+               response.onCompleted();
+            }))
+            .build();
+      NodeConfig config = new NodeConfig(Map.of("GRPC_STORAGE_THREADS", "1", "GRPC_STORAGE_QUEUE", "2"));
+      Server server = GrpcServerFactory.start(0, config, slow);
+      ManagedChannel channel = NettyChannelBuilder.forAddress("127.0.0.1", server.getPort()).usePlaintext().build();
+      try {
+         // Biri tek thread'i tutar, ikisi kuyrukta bekler
+         List<UnaryCall<String>> admitted = new ArrayList<>();
+         for (int i = 0; i < 3; i++) {
+            UnaryCall<String> call = new UnaryCall<>();
+            ClientCalls.asyncUnaryCall(channel.newCall(SLOW, CallOptions.DEFAULT), "call-" + i, call);
+            admitted.add(call);
+            Thread.sleep(200);
+         }
+
+         // Havuz hâlâ meşgulken yeni çağrı beklemeden reddedilir
+         StatusRuntimeException shed = assertThrows(StatusRuntimeException.class,
+               () -> ClientCalls.blockingUnaryCall(channel, SLOW,
+                     CallOptions.DEFAULT.withDeadlineAfter(2, TimeUnit.SECONDS), "late"));
+         assertEquals(Status.Code.RESOURCE_EXHAUSTED, shed.getStatus().getCode());
+
+         // Kabul edilmiş çağrılar tamamlanır
+         release.countDown();
+         for (int i = 0; i < admitted.size(); i++) {
+            assertEquals("call-" + i, admitted.get(i).get(5, TimeUnit.SECONDS));
+         }
+      } finally {
+         release.countDown();
+         channel.shutdownNow();
+         server.shutdownNow();
+      }
+   }
+}
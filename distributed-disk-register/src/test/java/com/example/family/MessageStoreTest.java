@@ -0,0 +1,66 @@
+package com.example.family;
+
+import com.google.protobuf.ByteString;
+import family.Codec;
+import family.StoredMessage;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageStoreTest {
+
+   @TempDir
+   Path dataDir;
+
+   private MessageStore open() {
+      NodeConfig config = new NodeConfig(Map.of("DATA_DIRS", dataDir.toString(), "SHARDS", "3", "DIR_FANOUT", "4"));
+      return new MessageStore(config, new TimingWheel(100));
+   }
+
+   private static StoredMessage message(int id, long version) {
+      ByteString value = ByteString.copyFromUtf8("value-" + id + "-" + version);
+      return StoredMessage.newBuilder().setId(id).setValue(value).setCodec(Codec.RAW)
+            .setRawLength(value.size()).setVersion(version).build();
+   }
+
+   @Test
+   void countTracksInsertsOverwritesAndDeletes() {
+      MessageStore store = open();
+      try {
+         for (int id = 0; id < 100; id++) {
+            store.set(message(id, 1));
+         }
+         assertEquals(100, store.size());
+
+         // Üzerine yazma sayıyı değiştirmez
+         for (int id = 0; id < 10; id++) {
+            store.set(message(id, 2));
+         }
+         assertEquals(100, store.size());
+
+         for (int id = 90; id < 95; id++) {
+            assertTrue(store.deleteIfVersion(id, 1));
+         }
+         // Eski sürümle silme ve olmayan kayıt sayıyı değiştirmez
+         assertFalse(store.deleteIfVersion(0, 1));
+         assertFalse(store.deleteIfVersion(5_000, 1));
+         assertEquals(95, store.size());
+         assertEquals(95, store.stats().getCount());
+      } finally {
+         store.close();
+      }
+
+      MessageStore reopened = open();
+      try {
+         assertEquals(95, reopened.size());
+      } finally {
+         reopened.close();
+      }
+   }
+}
@@ -0,0 +1,81 @@
+package com.example.family;
+
+import family.NodeInfo;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PlacementTest {
+
+   private final Placement placement = new Placement();
+
+   private static List<NodeInfo> members(int count) {
+      List<NodeInfo> members = new ArrayList<>();
+      for (int i = 0; i < count; i++) {
+         members.add(NodeInfo.newBuilder().setHost("127.0.0.1").setPort(5555 + i).build());
+      }
+      return members;
+   }
+
+   @Test
+   void sameResultForAnyMemberOrder() {
+      List<NodeInfo> members = members(7);
+      List<NodeInfo> shuffled = new ArrayList<>(members);
+      Collections.shuffle(shuffled, new Random(1));
+      for (int id = 0; id < 1_000; id++) {
+         assertEquals(placement.replicasFor(id, members, 3), placement.replicasFor(id, shuffled, 3));
+      }
+   }
+
+   @Test
+   void removingMemberMovesOnlyItsMessages() {
+      List<NodeInfo> members = members(6);
+      NodeInfo leaving = members.get(2);
+      List<NodeInfo> remaining = new ArrayList<>(members);
+      remaining.remove(leaving);
+
+      for (int id = 0; id < 1_000; id++) {
+         List<NodeInfo> before = placement.replicasFor(id, members, 2);
+         List<NodeInfo> after = placement.replicasFor(id, remaining, 2);
+         if (!before.contains(leaving)) {
+            assertEquals(before, after, "id " + id);
+         } else {
+            assertFalse(after.contains(leaving));
+            before.remove(leaving);
+            assertTrue(after.containsAll(before), "id " + id);
+         }
+      }
+   }
+
+   @Test
+   void slackSkipsOverloadedWithinWindow() {
+      List<NodeInfo> members = members(5);
+      for (int id = 0; id < 200; id++) {
+         List<NodeInfo> ranked = placement.rank(id, members);
+         NodeInfo busy = ranked.get(0);
+
+         List<NodeInfo> chosen = placement.replicasFor(id, members, 2, 1, busy::equals);
+         assertEquals(List.of(ranked.get(1), ranked.get(2)), chosen);
+
+         // Herkes yüklüyse en fazla slack kadar düğüm atlanır, pencere dışına çıkılmaz
+         assertEquals(ranked.subList(1, 3), placement.replicasFor(id, members, 2, 1, n -> true));
+         assertEquals(ranked.subList(2, 4), placement.replicasFor(id, members, 2, 2, n -> true));
+         assertEquals(ranked.subList(0, 2), placement.replicasFor(id, members, 2, 0, busy::equals));
+      }
+   }
+
+   @Test
+   void fewerMembersThanReplicas() {
+      List<NodeInfo> members = members(2);
+      assertEquals(2, placement.replicasFor(9, members, 3).size());
+      assertEquals(2, placement.replicasFor(9, members, 3, 2, n -> true).size());
+      assertEquals(0, placement.replicasFor(9, List.of(), 3).size());
+   }
+}
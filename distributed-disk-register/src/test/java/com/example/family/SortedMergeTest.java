@@ -0,0 +1,65 @@
+package com.example.family;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SortedMergeTest {
+
+   private static List<Integer> drain(Iterator<Integer> it) {
+      List<Integer> out = new ArrayList<>();
+      it.forEachRemaining(out::add);
+      return out;
+   }
+
+   @Test
+   void mergesSortedSourcesKeepingDuplicates() {
+      SortedMerge<Integer> merge = new SortedMerge<>(List.of(
+            List.of(1, 4, 7, 7).iterator(),
+            List.<Integer>of().iterator(),
+            List.of(2, 4, 9).iterator(),
+            List.of(0).iterator()), Comparator.naturalOrder());
+
+      assertEquals(List.of(0, 1, 2, 4, 4, 7, 7, 9), drain(merge));
+   }
+
+   @Test
+   void emptyInput() {
+      SortedMerge<Integer> merge = new SortedMerge<>(List.<Iterator<Integer>>of(), Comparator.naturalOrder());
+      assertFalse(merge.hasNext());
+      assertThrows(NoSuchElementException.class, merge::next);
+   }
+
+   @Test
+   void pullsLazilyFromSources() {
+      List<Integer> pulled = new ArrayList<>();
+      Iterator<Integer> counting = new Iterator<>() {
+         int next = 0;
+
+         @Override
+         public boolean hasNext() {
+            return next < 1_000;
+         }
+
+         @Override
+         public Integer next() {
+            pulled.add(next);
+            return next++;
+         }
+      };
+      SortedMerge<Integer> merge = new SortedMerge<>(List.of(counting), Comparator.naturalOrder());
+
+      assertEquals(0, merge.next());
+      assertEquals(1, merge.next());
+      // Baştaki eleman hazırda tutulur, fazlası istenmez
+      assertEquals(List.of(0, 1, 2), pulled);
+   }
+}
@@ -0,0 +1,101 @@
+package com.example.family;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TimingWheelTest {
+
+   // Seviye sınırları: 64, 64^2, 64^3 tick ve bir eksik/fazlası
+   private static final long[] DELAYS = {1, 2, 63, 64, 65, 127, 128, 4095, 4096, 4097, 262_143, 262_144, 262_145};
+
+   // Hizalı ve hizasız başlangıçlar; cascade currentTick'in alt bitlerine bakar
+   private static final long[] STARTS = {0, 1, 10, 63, 64, 4095, 1_000_003};
+
+   @Test
+   void firesExactlyOnDeadlineAcrossCascadeBoundaries() {
+      for (long start : STARTS) {
+         for (long delay : DELAYS) {
+            TimingWheel wheel = new TimingWheel(1, start);
+            List<Long> fired = new ArrayList<>();
+            long deadline = start + delay;
+            wheel.schedule(deadline, () -> fired.add(deadline));
+
+            wheel.advance(deadline - 1);
+            assertEquals(List.of(), fired, "early, start=" + start + " delay=" + delay);
+            wheel.advance(deadline);
+            assertEquals(List.of(deadline), fired, "missed, start=" + start + " delay=" + delay);
+            assertEquals(0, wheel.pending());
+         }
+      }
+   }
+
+   @Test
+   void firesTasksBeyondWheelRange() {
+      long range = 1L << 24; // 4 seviye × 6 bit
+      TimingWheel wheel = new TimingWheel(1, 5);
+      List<Long> fired = new ArrayList<>();
+      wheel.schedule(5 + range + 100, () -> fired.add(1L));
+
+      wheel.advance(5 + range + 99);
+      assertEquals(0, fired.size());
+      wheel.advance(5 + range + 100);
+      assertEquals(1, fired.size());
+   }
+
+   @Test
+   void pastDeadlineFiresOnNextTick() {
+      TimingWheel wheel = new TimingWheel(10, 1_000);
+      List<Long> fired = new ArrayList<>();
+      wheel.schedule(500, () -> fired.add(1L));
+
+      wheel.advance(1_009);
+      assertEquals(0, fired.size());
+      wheel.advance(1_010);
+      assertEquals(1, fired.size());
+   }
+
+   @Test
+   void roundsDeadlineUpToTick() {
+      TimingWheel wheel = new TimingWheel(10, 0);
+      List<Long> fired = new ArrayList<>();
+      wheel.schedule(641, () -> fired.add(1L));
+
+      wheel.advance(649);
+      assertEquals(0, fired.size());
+      wheel.advance(650);
+      assertEquals(1, fired.size());
+   }
+
+   @Test
+   void firesManyTasksInDeadlineOrder() {
+      TimingWheel wheel = new TimingWheel(1, 0);
+      List<Long> fired = new ArrayList<>();
+      for (long deadline = 5_000; deadline > 0; deadline -= 7) {
+         long d = deadline;
+         wheel.schedule(d, () -> fired.add(d));
+      }
+      int scheduled = wheel.pending();
+
+      wheel.advance(5_000);
+      assertEquals(scheduled, fired.size());
+      for (int i = 1; i < fired.size(); i++) {
+         assertEquals(fired.get(i - 1) + 7, fired.get(i));
+      }
+   }
+
+   @Test
+   void taskScheduledFromTaskRuns() {
+      TimingWheel wheel = new TimingWheel(1, 0);
+      List<Long> fired = new ArrayList<>();
+      wheel.schedule(100, () -> wheel.schedule(200, () -> fired.add(200L)));
+
+      wheel.advance(199);
+      assertEquals(0, fired.size());
+      wheel.advance(200);
+      assertEquals(List.of(200L), fired);
+   }
+}